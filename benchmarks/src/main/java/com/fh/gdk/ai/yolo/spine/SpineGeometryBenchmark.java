@@ -0,0 +1,62 @@
+package com.fh.gdk.ai.yolo.spine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * 脊柱几何计算：由 68 个关键点构造 17 节 {@link Vertebrae}（中心点、倾斜角度）以及 {@link Spine} 的侧弯类型判断。
+ * <p>Vertebrae 和 Spine 的构造方法是包内可见的，因此该基准测试放在同一个包中。</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SpineGeometryBenchmark {
+
+    private static final int VERTEBRAE_COUNT = 17;
+
+    private double[][] cornerPoints;
+    private List<Vertebrae> vertebraes;
+
+    @Setup
+    public void setup() {
+        // 模拟一条 S 形的脊柱，每节椎骨 4 个角点
+        Random random = new Random(42);
+        this.cornerPoints = new double[VERTEBRAE_COUNT][];
+        for (int i = 0; i < VERTEBRAE_COUNT; i++) {
+            double cx = 500 + 60 * Math.sin(i / 3.0);
+            double cy = 200 + i * 60;
+            double tilt = Math.toRadians(15 * Math.cos(i / 3.0)) + random.nextGaussian() * 0.01;
+            double dx = 40 * Math.cos(tilt);
+            double dy = 40 * Math.sin(tilt);
+            this.cornerPoints[i] = new double[] {
+                    cx - dx, cy - dy - 25, cx + dx, cy + dy - 25,
+                    cx - dx, cy - dy + 25, cx + dx, cy + dy + 25
+            };
+        }
+        this.vertebraes = this.vertebraes();
+    }
+
+    @Benchmark
+    public List<Vertebrae> vertebraes() {
+        List<Vertebrae> result = new ArrayList<>(VERTEBRAE_COUNT);
+        for (int i = 0; i < VERTEBRAE_COUNT; i++) {
+            result.add(new Vertebrae(this.cornerPoints[i].clone()).setLabel(Spine.VERTEBRAE_NAMES[i]));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Spine spine() {
+        Spine spine = new Spine(new double[] { 400, 150, 600, 1250 });
+        spine.setVertebraes(this.vertebraes);
+        return spine;
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.fh.gdk.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.fh.gdk.ai.util.Suppression;
+import com.fh.gdk.ai.yolo.ImageMetaData;
+import com.fh.gdk.ai.yolo.PoseDecoder;
+import com.fh.gdk.ai.yolo.PosePredictResult;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Pose 输出 [56, 8400] 的解码与非极大值抑制：
+ * 原先的转换为 float[][] + 转置 + stream 实现 vs 直接在输出缓冲区上解码的 {@link PoseDecoder}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DecodeBenchmark {
+
+    private static final int ANCHORS = 8400;
+    private static final float CONF_THRESHOLD = 0.25f;
+    private static final float IOU_THRESHOLD = 0.5f;
+
+    // 置信度超过阈值的候选框数量
+    @Param({"10", "100", "1000"})
+    public int candidates;
+
+    private float[] flat;
+    private FloatBuffer output;
+    private final ImageMetaData imgMetaData = new ImageMetaData();
+    private final PoseDecoder decoder = new PoseDecoder();
+    private final Suppression suppression = Suppression.hard(IOU_THRESHOLD);
+
+    @Setup
+    public void setup() {
+        this.flat = SyntheticPoseOutput.create(ANCHORS, this.candidates, 8, 42);
+        this.output = ByteBuffer.allocateDirect(this.flat.length * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        this.output.put(this.flat).rewind();
+
+        if (this.legacy().size() != this.decode().size()) {
+            throw new IllegalStateException("PoseDecoder result differs from the legacy implementation");
+        }
+    }
+
+    @Benchmark
+    public List<PosePredictResult> legacy() {
+        // OnnxValue.getValue() 会将输出复制为多维数组
+        float[][] outputData = new float[SyntheticPoseOutput.CHANNELS][ANCHORS];
+        for (int c = 0; c < SyntheticPoseOutput.CHANNELS; c++) {
+            System.arraycopy(this.flat, c * ANCHORS, outputData[c], 0, ANCHORS);
+        }
+        float[][] transposed = new float[ANCHORS][SyntheticPoseOutput.CHANNELS];
+        for (int i = 0; i < SyntheticPoseOutput.CHANNELS; i++) {
+            for (int j = 0; j < ANCHORS; j++) {
+                transposed[j][i] = outputData[i][j];
+            }
+        }
+
+        List<PosePredictResult> poses = new ArrayList<>();
+        for (float[] res : transposed) {
+            if (res[4] > CONF_THRESHOLD) {
+                poses.add(new PosePredictResult(res, 0).setImageMetaData(this.imgMetaData));
+            }
+        }
+
+        List<PosePredictResult> bestPoses = new ArrayList<>();
+        poses.sort(Comparator.comparing(a -> a.score));
+        while (!poses.isEmpty()) {
+            PosePredictResult bestPose = poses.remove(poses.size() - 1);
+            bestPoses.add(bestPose);
+            poses = poses.stream().filter(a -> computeIOU(a.bbox, bestPose.bbox) < IOU_THRESHOLD).collect(Collectors.toList());
+        }
+        return bestPoses;
+    }
+
+    /**
+     * 同 Yolov8.computeIOU，Yolov8 的静态初始化需要 OpenCV 动态库，这里不依赖它
+     */
+    static float computeIOU(float[] box1, float[] box2) {
+        float area1 = (box1[2] - box1[0]) * (box1[3] - box1[1]);
+        float area2 = (box2[2] - box2[0]) * (box2[3] - box2[1]);
+        float left = Math.max(box1[0], box2[0]);
+        float top = Math.max(box1[1], box2[1]);
+        float right = Math.min(box1[2], box2[2]);
+        float bottom = Math.min(box1[3], box2[3]);
+        float interArea = Math.max(right - left, 0) * Math.max(bottom - top, 0);
+        float unionArea = area1 + area2 - interArea;
+        return Math.max(interArea / unionArea, 1e-8f);
+    }
+
+    @Benchmark
+    public List<PosePredictResult> decode() {
+        return this.decoder.decode(this.output, 0, SyntheticPoseOutput.CHANNELS, ANCHORS,
+                this.imgMetaData, CONF_THRESHOLD, this.suppression, 0);
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.fh.gdk.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * session.run 及取出输出的开销，使用 {@link TinyPoseModel} 生成的模型：
+ * 输出转换为 float[][][] vs getFloatBuffer() vs 预分配的输出（pinned output）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class InferenceBenchmark {
+
+    @Param({"64", "320"})
+    public int size;
+
+    private OrtEnvironment env;
+    private OrtSession session;
+    private OnnxTensor input;
+    private Map<String, OnnxTensor> inputs;
+    private FloatBuffer output;
+    private OnnxTensor outputTensor;
+    private Map<String, OnnxTensor> outputs;
+
+    @Setup
+    public void setup() throws OrtException {
+        this.env = OrtEnvironment.getEnvironment();
+        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+        options.setIntraOpNumThreads(1);
+        this.session = this.env.createSession(TinyPoseModel.create(this.size), options);
+
+        Random random = new Random(42);
+        FloatBuffer data = ByteBuffer.allocateDirect(3 * this.size * this.size * Float.BYTES)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        while (data.hasRemaining()) {
+            data.put(random.nextFloat());
+        }
+        data.rewind();
+        this.input = OnnxTensor.createTensor(this.env, data, new long[] { 1, 3, this.size, this.size });
+        this.inputs = Collections.singletonMap(TinyPoseModel.INPUT_NAME, this.input);
+
+        final int anchors = (this.size / TinyPoseModel.STRIDE) * (this.size / TinyPoseModel.STRIDE);
+        this.output = ByteBuffer.allocateDirect(TinyPoseModel.CHANNELS * anchors * Float.BYTES)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        this.outputTensor = OnnxTensor.createTensor(this.env, this.output, new long[] { 1, TinyPoseModel.CHANNELS, anchors });
+        this.outputs = Collections.singletonMap(TinyPoseModel.OUTPUT_NAME, this.outputTensor);
+    }
+
+    @TearDown
+    public void tearDown() throws OrtException {
+        this.outputTensor.close();
+        this.input.close();
+        this.session.close();
+    }
+
+    @Benchmark
+    public float[][][] runGetValue() throws OrtException {
+        try (OrtSession.Result result = this.session.run(this.inputs)) {
+            return (float[][][]) result.get(0).getValue();
+        }
+    }
+
+    @Benchmark
+    public FloatBuffer runGetFloatBuffer() throws OrtException {
+        try (OrtSession.Result result = this.session.run(this.inputs)) {
+            return ((OnnxTensor) result.get(0)).getFloatBuffer();
+        }
+    }
+
+    @Benchmark
+    public FloatBuffer runPinnedOutput() throws OrtException {
+        // 结果直接写入预分配的输出，Result 只需关闭
+        this.session.run(this.inputs, this.outputs).close();
+        return this.output;
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.fh.gdk.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OrtEnvironment;
+import com.fh.gdk.ai.util.Letterbox;
+import com.fh.gdk.ai.yolo.ImageMetaData;
+import com.fh.gdk.ai.yolo.PreprocessWorkspace;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * 预处理：{@link Letterbox#letterbox(Mat)}（每次分配）、复用目标 Mat 的 letterbox、
+ * 以及 {@link PreprocessWorkspace} 一次完成的缩放 + 通道转换 + 归一化 + 写入输入内存。
+ * 需要 OpenCV 动态库，见 pom.xml 中的说明
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LetterboxBenchmark {
+
+    @Param({"1280x720", "1920x1080"})
+    public String source;
+
+    private Mat src;
+    private Mat resized;
+    private Mat dst;
+    private Letterbox letterbox;
+    private PreprocessWorkspace workspace;
+    private final ImageMetaData imgMetaData = new ImageMetaData();
+
+    @Setup
+    public void setup() {
+        OpenCvNatives.load();
+        String[] size = this.source.split("x");
+        this.src = new Mat(Integer.parseInt(size[1]), Integer.parseInt(size[0]), CvType.CV_8UC3);
+        Core.randu(this.src, 0, 256);
+        this.resized = new Mat();
+        this.dst = new Mat();
+        this.letterbox = new Letterbox(640, 640);
+        this.workspace = new PreprocessWorkspace(OrtEnvironment.getEnvironment(), "images", OnnxJavaType.FLOAT, 3, 640, 640);
+        this.workspace.ensureCapacity(1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.workspace.close();
+        this.src.release();
+        this.resized.release();
+        this.dst.release();
+    }
+
+    @Benchmark
+    public Mat letterboxAllocating() {
+        // letterbox(Mat) 会原地修改输入，这里复制一份
+        Mat im = this.src.clone();
+        Mat out = new Letterbox(640, 640).letterbox(im);
+        im.release();
+        out.release();
+        return out;
+    }
+
+    @Benchmark
+    public Mat letterboxInto() {
+        return this.letterbox.letterbox(this.src, this.resized, this.dst);
+    }
+
+    @Benchmark
+    public ImageMetaData preprocessWorkspace() {
+        this.workspace.preprocess(0, this.src, this.imgMetaData);
+        return this.imgMetaData;
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.fh.gdk.benchmark;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.fh.gdk.ai.util.NmsEngine;
+import com.fh.gdk.ai.util.Suppression;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * 不同候选框数量下的非极大值抑制：原先基于 stream 的实现（LEGACY）vs {@link NmsEngine} 的各种抑制策略
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class NmsBenchmark {
+
+    private static final float IOU_THRESHOLD = 0.5f;
+
+    @Param({"100", "1000", "5000"})
+    public int count;
+
+    @Param({"LEGACY", "HARD", "SOFT_GAUSSIAN", "WEIGHTED_FUSION", "OKS"})
+    public String method;
+
+    private float[] boxes;
+    private float[] scores;
+    private float[] keypoints;
+    private List<float[]> bboxes;
+
+    // Soft-NMS 与加权框融合会修改输入，每次调用前恢复
+    private float[] workBoxes;
+    private float[] workScores;
+    private float[] workKeypoints;
+    private int[] keep;
+    private final NmsEngine engine = new NmsEngine();
+    private Suppression suppression;
+
+    @Setup
+    public void setup() {
+        final int kptValues = SyntheticPoseOutput.KEYPOINTS * 3;
+        float[] output = SyntheticPoseOutput.create(this.count, this.count, Math.max(1, this.count / 50), 42);
+        this.boxes = new float[this.count * 4];
+        this.scores = new float[this.count];
+        this.keypoints = new float[this.count * kptValues];
+        this.bboxes = new ArrayList<>(this.count);
+        for (int i = 0; i < this.count; i++) {
+            float cx = output[i];
+            float cy = output[this.count + i];
+            float w = output[2 * this.count + i] / 2;
+            float h = output[3 * this.count + i] / 2;
+            this.boxes[i * 4] = cx - w;
+            this.boxes[i * 4 + 1] = cy - h;
+            this.boxes[i * 4 + 2] = cx + w;
+            this.boxes[i * 4 + 3] = cy + h;
+            this.scores[i] = output[4 * this.count + i];
+            for (int v = 0; v < kptValues; v++) {
+                this.keypoints[i * kptValues + v] = output[(5 + v) * this.count + i];
+            }
+            this.bboxes.add(new float[] { cx - w, cy - h, cx + w, cy + h, this.scores[i] });
+        }
+        this.workBoxes = new float[this.boxes.length];
+        this.workScores = new float[this.scores.length];
+        this.workKeypoints = new float[this.keypoints.length];
+        this.keep = new int[this.count];
+
+        switch (this.method) {
+            case "LEGACY":
+            case "HARD":
+                this.suppression = Suppression.hard(IOU_THRESHOLD);
+                break;
+            case "SOFT_GAUSSIAN":
+                this.suppression = Suppression.softGaussian();
+                break;
+            case "WEIGHTED_FUSION":
+                this.suppression = Suppression.weightedFusion(IOU_THRESHOLD);
+                break;
+            case "OKS":
+                this.suppression = Suppression.oks(IOU_THRESHOLD);
+                break;
+            default:
+                throw new IllegalArgumentException(this.method);
+        }
+    }
+
+    @Benchmark
+    public int nms() {
+        if ("LEGACY".equals(this.method)) {
+            return this.legacy(new ArrayList<>(this.bboxes)).size();
+        }
+        System.arraycopy(this.boxes, 0, this.workBoxes, 0, this.boxes.length);
+        System.arraycopy(this.scores, 0, this.workScores, 0, this.scores.length);
+        System.arraycopy(this.keypoints, 0, this.workKeypoints, 0, this.keypoints.length);
+        return this.engine.run(this.workBoxes, this.workScores, null, this.workKeypoints, SyntheticPoseOutput.KEYPOINTS,
+                this.count, 0, false, this.suppression, this.keep);
+    }
+
+    private List<float[]> legacy(List<float[]> bboxes) {
+        List<float[]> bestBboxes = new ArrayList<>();
+        bboxes.sort(Comparator.comparing(a -> a[4]));
+        while (!bboxes.isEmpty()) {
+            float[] bestBbox = bboxes.remove(bboxes.size() - 1);
+            bestBboxes.add(bestBbox);
+            bboxes = bboxes.stream().filter(a -> DecodeBenchmark.computeIOU(a, bestBbox) < IOU_THRESHOLD).collect(Collectors.toList());
+        }
+        return bestBboxes;
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.fh.gdk.benchmark;
+
+import java.net.URL;
+
+import org.opencv.core.Core;
+
+/**
+ * 加载 OpenCV 动态库：与主工程一样优先从 classpath 中查找 libopencv_java4100.so，
+ * 找不到时从 java.library.path 加载
+ */
+final class OpenCvNatives {
+
+    private static boolean loaded = false;
+
+    private OpenCvNatives() {
+    }
+
+    static synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        URL library = OpenCvNatives.class.getClassLoader().getResource("libopencv_java4100.so");
+        if (library != null) {
+            System.load(library.getFile());
+        } else {
+            System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+        }
+        loaded = true;
+    }
+
+}
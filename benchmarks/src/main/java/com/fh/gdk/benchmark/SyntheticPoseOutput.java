@@ -0,0 +1,64 @@
+package com.fh.gdk.benchmark;
+
+import java.util.Random;
+
+/**
+ * 生成模拟的 pose 模型输出 [56, anchors]：指定数量的候选框置信度超过阈值，
+ * 它们围绕若干个人的位置分布并互相重叠，其余锚点为低置信度
+ */
+final class SyntheticPoseOutput {
+
+    static final int CHANNELS = 56;
+    static final int KEYPOINTS = 17;
+    static final float HIGH_CONF = 0.5f;
+
+    private SyntheticPoseOutput() {
+    }
+
+    /**
+     * @param anchors 锚点个数
+     * @param candidates 置信度超过 {@link #HIGH_CONF} 的锚点个数
+     * @param people 候选框围绕的人数
+     * @return 按 [通道, 锚点] 排列的输出
+     */
+    static float[] create(int anchors, int candidates, int people, long seed) {
+        Random random = new Random(seed);
+        float[] output = new float[CHANNELS * anchors];
+        // 每个人的位置、大小和关键点
+        float[][] persons = new float[people][4 + KEYPOINTS * 2];
+        for (float[] person : persons) {
+            person[0] = 50 + random.nextFloat() * 540;
+            person[1] = 50 + random.nextFloat() * 540;
+            person[2] = 40 + random.nextFloat() * 120;
+            person[3] = 80 + random.nextFloat() * 200;
+            for (int k = 0; k < KEYPOINTS; k++) {
+                person[4 + 2 * k] = person[0] + (random.nextFloat() - 0.5f) * person[2];
+                person[5 + 2 * k] = person[1] + (random.nextFloat() - 0.5f) * person[3];
+            }
+        }
+
+        final int step = Math.max(1, anchors / Math.max(1, candidates));
+        int placed = 0;
+        for (int i = 0; i < anchors; i++) {
+            boolean candidate = placed < candidates && i % step == 0;
+            float[] person = persons[random.nextInt(people)];
+            float jitter = candidate ? 0.05f : 1.0f;
+            output[i] = person[0] + (random.nextFloat() - 0.5f) * person[2] * jitter;
+            output[anchors + i] = person[1] + (random.nextFloat() - 0.5f) * person[3] * jitter;
+            output[2 * anchors + i] = person[2] * (1 + (random.nextFloat() - 0.5f) * jitter * 0.2f);
+            output[3 * anchors + i] = person[3] * (1 + (random.nextFloat() - 0.5f) * jitter * 0.2f);
+            output[4 * anchors + i] = candidate ? HIGH_CONF + random.nextFloat() * (1 - HIGH_CONF) : random.nextFloat() * 0.05f;
+            for (int k = 0; k < KEYPOINTS; k++) {
+                int c = 5 + 3 * k;
+                output[c * anchors + i] = person[4 + 2 * k] + (random.nextFloat() - 0.5f) * 6;
+                output[(c + 1) * anchors + i] = person[5 + 2 * k] + (random.nextFloat() - 0.5f) * 6;
+                output[(c + 2) * anchors + i] = random.nextFloat();
+            }
+            if (candidate) {
+                placed++;
+            }
+        }
+        return output;
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.fh.gdk.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * 创建 [1,3,H,W] 输入张量：多维数组 vs 堆上的 FloatBuffer vs 直接内存 FloatBuffer
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TensorBenchmark {
+
+    @Param({"640", "1280"})
+    public int size;
+
+    private OrtEnvironment env;
+    private long[] shape;
+    private float[][][][] array;
+    private float[] flat;
+    private FloatBuffer direct;
+
+    @Setup
+    public void setup() {
+        this.env = OrtEnvironment.getEnvironment();
+        this.shape = new long[] { 1, 3, this.size, this.size };
+        this.array = new float[1][3][this.size][this.size];
+        this.flat = new float[3 * this.size * this.size];
+        this.direct = ByteBuffer.allocateDirect(this.flat.length * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    @Benchmark
+    public long fromMultiDimensionalArray() throws OrtException {
+        try (OnnxTensor tensor = OnnxTensor.createTensor(this.env, this.array)) {
+            return tensor.getInfo().getNumElements();
+        }
+    }
+
+    @Benchmark
+    public long fromHeapBuffer() throws OrtException {
+        try (OnnxTensor tensor = OnnxTensor.createTensor(this.env, FloatBuffer.wrap(this.flat), this.shape)) {
+            return tensor.getInfo().getNumElements();
+        }
+    }
+
+    @Benchmark
+    public long fromDirectBuffer() throws OrtException {
+        try (OnnxTensor tensor = OnnxTensor.createTensor(this.env, this.direct, this.shape)) {
+            return tensor.getInfo().getNumElements();
+        }
+    }
+
+}
@@ -0,0 +1,167 @@
+package com.fh.gdk.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * 生成一个与 yolov8-pose 输入输出格式相同的极小 ONNX 模型，用于基准测试，不需要附带模型文件。
+ * <pre>
+ * images [batch, 3, size, size] -> Conv(56, kernel=8, stride=8) -> Reshape -> output0 [batch, 56, (size/8)^2]
+ * </pre>
+ * 模型直接按 protobuf 编码写出，不依赖 onnx 库。
+ */
+public final class TinyPoseModel {
+
+    public static final String INPUT_NAME = "images";
+    public static final String OUTPUT_NAME = "output0";
+    // bbox(4) + conf(1) + 17 个关键点 * 3
+    public static final int CHANNELS = 56;
+    public static final int STRIDE = 8;
+
+    // onnx TensorProto.DataType
+    private static final int FLOAT = 1;
+    private static final int INT64 = 7;
+    // onnx AttributeProto.AttributeType
+    private static final int ATTR_INTS = 7;
+
+    private TinyPoseModel() {
+    }
+
+    /**
+     * @param size 输入图片的宽高，必须是 8 的倍数
+     * @return onnx 模型数据
+     */
+    public static byte[] create(int size) {
+        if (size <= 0 || size % STRIDE != 0) {
+            throw new IllegalArgumentException("size must be a positive multiple of " + STRIDE);
+        }
+        Random random = new Random(42);
+        float[] weights = new float[CHANNELS * 3 * STRIDE * STRIDE];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = random.nextFloat() * 0.02f;
+        }
+        float[] bias = new float[CHANNELS];
+        for (int i = 0; i < bias.length; i++) {
+            bias[i] = random.nextFloat();
+        }
+
+        Proto conv = new Proto()
+                .string(1, INPUT_NAME).string(1, "W").string(1, "B")
+                .string(2, "conv_out")
+                .string(3, "conv")
+                .string(4, "Conv")
+                .message(5, intsAttribute("kernel_shape", STRIDE, STRIDE))
+                .message(5, intsAttribute("strides", STRIDE, STRIDE));
+        Proto reshape = new Proto()
+                .string(1, "conv_out").string(1, "shape")
+                .string(2, OUTPUT_NAME)
+                .string(3, "reshape")
+                .string(4, "Reshape");
+
+        Proto graph = new Proto()
+                .message(1, conv)
+                .message(1, reshape)
+                .string(2, "tiny-pose")
+                .message(5, floatTensor("W", weights, CHANNELS, 3, STRIDE, STRIDE))
+                .message(5, floatTensor("B", bias, CHANNELS))
+                .message(5, int64Tensor("shape", 0, CHANNELS, -1))
+                .message(11, valueInfo(INPUT_NAME, "batch", 3, size, size))
+                .message(12, valueInfo(OUTPUT_NAME, "batch", CHANNELS, (long) (size / STRIDE) * (size / STRIDE)));
+
+        return new Proto()
+                .varint(1, 8)
+                .string(2, "yolo-onnxruntime-java-benchmarks")
+                .message(7, graph)
+                .message(8, new Proto().string(1, "").varint(2, 13))
+                .toByteArray();
+    }
+
+    private static Proto intsAttribute(String name, long... values) {
+        Proto attribute = new Proto().string(1, name);
+        for (long value : values) {
+            attribute.varint(8, value);
+        }
+        return attribute.varint(20, ATTR_INTS);
+    }
+
+    private static Proto floatTensor(String name, float[] data, long... dims) {
+        ByteBuffer raw = ByteBuffer.allocate(data.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        raw.asFloatBuffer().put(data);
+        return tensor(name, FLOAT, raw.array(), dims);
+    }
+
+    private static Proto int64Tensor(String name, long... data) {
+        ByteBuffer raw = ByteBuffer.allocate(data.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        raw.asLongBuffer().put(data);
+        return tensor(name, INT64, raw.array(), data.length);
+    }
+
+    private static Proto tensor(String name, int dataType, byte[] raw, long... dims) {
+        Proto tensor = new Proto();
+        for (long dim : dims) {
+            tensor.varint(1, dim);
+        }
+        return tensor.varint(2, dataType).string(8, name).bytes(9, raw);
+    }
+
+    /**
+     * 第一维为动态维度 dimParam 的 float 张量
+     */
+    private static Proto valueInfo(String name, String dimParam, long... dims) {
+        Proto shape = new Proto().message(1, new Proto().string(2, dimParam));
+        for (long dim : dims) {
+            shape.message(1, new Proto().varint(1, dim));
+        }
+        Proto tensorType = new Proto().varint(1, FLOAT).message(2, shape);
+        return new Proto().string(1, name).message(2, new Proto().message(1, tensorType));
+    }
+
+    /**
+     * 最简单的 protobuf 消息编码
+     */
+    private static final class Proto {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Proto varint(int field, long value) {
+            this.tag(field, 0);
+            this.rawVarint(value);
+            return this;
+        }
+
+        Proto string(int field, String value) {
+            return this.bytes(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Proto message(int field, Proto message) {
+            return this.bytes(field, message.toByteArray());
+        }
+
+        Proto bytes(int field, byte[] value) {
+            this.tag(field, 2);
+            this.rawVarint(value.length);
+            this.out.write(value, 0, value.length);
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return this.out.toByteArray();
+        }
+
+        private void tag(int field, int wireType) {
+            this.rawVarint(((long) field << 3) | wireType);
+        }
+
+        private void rawVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                this.out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            this.out.write((int) value);
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.fh.gdk.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.fh.gdk.ai.util.ChwTranspose;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * [高度,宽度,通道] -> [通道,高度,宽度] 转换：原按通道分三次跨步读取并分配新数组的实现 vs {@link ChwTranspose}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TransposeBenchmark {
+
+    @Param({"640", "1280"})
+    public int size;
+
+    private float[] hwc;
+    private float[] chw;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        this.hwc = new float[this.size * this.size * 3];
+        for (int i = 0; i < this.hwc.length; i++) {
+            this.hwc[i] = random.nextFloat();
+        }
+        this.chw = new float[this.hwc.length];
+
+        // 校验两种实现结果一致
+        if (!Arrays.equals(this.legacyAllocating(), this.transposeAllocating())) {
+            throw new IllegalStateException("ChwTranspose result differs from the legacy implementation");
+        }
+    }
+
+    @Benchmark
+    public float[] legacyAllocating() {
+        float[] src = this.hwc;
+        float[] dst = new float[src.length];
+        int j = 0;
+        for (int ch = 0; ch < 3; ++ch) {
+            for (int i = ch; i < src.length; i += 3) {
+                dst[j] = src[i];
+                j++;
+            }
+        }
+        return dst;
+    }
+
+    @Benchmark
+    public float[] transposeAllocating() {
+        return ChwTranspose.hwc2chw(this.hwc);
+    }
+
+    @Benchmark
+    public float[] transposeIntoDestination() {
+        ChwTranspose.hwc2chw(this.hwc, 0, this.size * this.size, 3, this.chw, 0);
+        return this.chw;
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.fh.gdk.ai;
+
+/**
+ * 推理请求超过了截止时间：在队列中等待过久被拒绝，或者运行中被终止
+ */
+public class AiTimeoutException extends AiException {
+
+    private static final long serialVersionUID = 1L;
+
+    public AiTimeoutException(String message) {
+        super(message);
+    }
+
+    public AiTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.fh.gdk.ai.util;
+
+/**
+ * 图像数据 [高度,宽度,通道] -> [通道,高度,宽度] 转换。
+ * <p>结果写入调用方提供的目标数组，不再每次分配新数组，
+ * 通过 dstOffset 可以直接写入 batch 中指定图片的位置。支持 1、3、4 通道。</p>
+ */
+public final class ChwTranspose {
+
+    private ChwTranspose() {
+    }
+
+    /**
+     * @param src 源数据，按 [高度,宽度,通道] 排列
+     * @param srcOffset 源数据起始位置
+     * @param pixels 像素个数（高度 * 宽度）
+     * @param channels 通道数
+     * @param dst 目标数组，按 [通道,高度,宽度] 排列
+     * @param dstOffset 目标数组起始位置
+     */
+    public static void hwc2chw(float[] src, int srcOffset, int pixels, int channels, float[] dst, int dstOffset) {
+        checkBounds(src.length, srcOffset, dst.length, dstOffset, pixels, channels);
+        if (channels == 1) {
+            System.arraycopy(src, srcOffset, dst, dstOffset, pixels);
+            return;
+        }
+
+        // 逐个通道平面顺序写入，源数据按固定跨步读取，两者都能被硬件预取；
+        // 实测比逐像素同时写入多个平面或分块处理都快
+        final int end = srcOffset + pixels * channels;
+        int j = dstOffset;
+        for (int c = 0; c < channels; c++) {
+            for (int s = srcOffset + c; s < end; s += channels) {
+                dst[j++] = src[s];
+            }
+        }
+    }
+
+    /**
+     * 同 {@link #hwc2chw(float[], int, int, int, float[], int)}
+     */
+    public static void hwc2chw(byte[] src, int srcOffset, int pixels, int channels, byte[] dst, int dstOffset) {
+        checkBounds(src.length, srcOffset, dst.length, dstOffset, pixels, channels);
+        if (channels == 1) {
+            System.arraycopy(src, srcOffset, dst, dstOffset, pixels);
+            return;
+        }
+
+        final int end = srcOffset + pixels * channels;
+        int j = dstOffset;
+        for (int c = 0; c < channels; c++) {
+            for (int s = srcOffset + c; s < end; s += channels) {
+                dst[j++] = src[s];
+            }
+        }
+    }
+
+    /**
+     * 3 通道数据转换，返回新数组
+     */
+    public static float[] hwc2chw(float[] src) {
+        float[] chw = new float[src.length];
+        hwc2chw(src, 0, src.length / 3, 3, chw, 0);
+        return chw;
+    }
+
+    /**
+     * 3 通道数据转换，返回新数组
+     */
+    public static byte[] hwc2chw(byte[] src) {
+        byte[] chw = new byte[src.length];
+        hwc2chw(src, 0, src.length / 3, 3, chw, 0);
+        return chw;
+    }
+
+    private static void checkBounds(int srcLength, int srcOffset, int dstLength, int dstOffset, int pixels, int channels) {
+        if (channels != 1 && channels != 3 && channels != 4) {
+            throw new IllegalArgumentException("Unsupported channels: " + channels);
+        }
+        final long elements = (long) pixels * channels;
+        if (srcOffset < 0 || dstOffset < 0 || pixels < 0
+                || srcOffset + elements > srcLength || dstOffset + elements > dstLength) {
+            throw new IndexOutOfBoundsException("srcOffset=" + srcOffset + ", dstOffset=" + dstOffset
+                    + ", pixels=" + pixels + ", channels=" + channels);
+        }
+    }
+
+}
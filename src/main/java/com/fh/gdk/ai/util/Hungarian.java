@@ -0,0 +1,105 @@
+package com.fh.gdk.ai.util;
+
+import java.util.Arrays;
+
+/**
+ * 匈牙利算法（带势函数的 Kuhn-Munkres，O(n^3)），求代价矩阵的最小代价完全匹配，用于多目标跟踪的关联。
+ * <p>代价矩阵按行优先存放在一维数组中，行数与列数可以不同，不足的一边用代价为 0 的虚拟行/列补齐。
+ * 内部缓冲区在多次调用之间复用，因此同一个实例不能被多个线程同时使用。</p>
+ */
+public final class Hungarian {
+
+    private double[] u = new double[0];
+    private double[] v = new double[0];
+    private double[] minv = new double[0];
+    private int[] p = new int[0];
+    private int[] way = new int[0];
+    private boolean[] used = new boolean[0];
+
+    /**
+     * @param cost 代价矩阵，rows * cols，cost[i * cols + j] 为第 i 行分配给第 j 列的代价
+     * @param assignment 每一行分配到的列，未分配（分配给虚拟列）时为 -1，长度至少为 rows
+     * @return 分配到真实列的行数
+     */
+    public int solve(float[] cost, int rows, int cols, int[] assignment) {
+        Arrays.fill(assignment, 0, rows, -1);
+        if (rows == 0 || cols == 0) {
+            return 0;
+        }
+        final int n = Math.max(rows, cols);
+        this.ensureCapacity(n + 1);
+        Arrays.fill(this.u, 0, n + 1, 0);
+        Arrays.fill(this.v, 0, n + 1, 0);
+        Arrays.fill(this.p, 0, n + 1, 0);
+        Arrays.fill(this.way, 0, n + 1, 0);
+
+        // 下标从 1 开始，p[j] 为匹配到第 j 列的行，0 号列为虚拟的起点
+        for (int i = 1; i <= n; i++) {
+            this.p[0] = i;
+            int j0 = 0;
+            Arrays.fill(this.minv, 0, n + 1, Double.MAX_VALUE);
+            Arrays.fill(this.used, 0, n + 1, false);
+            do {
+                this.used[j0] = true;
+                final int i0 = this.p[j0];
+                double delta = Double.MAX_VALUE;
+                int j1 = 0;
+                for (int j = 1; j <= n; j++) {
+                    if (this.used[j]) {
+                        continue;
+                    }
+                    double cur = cost(cost, rows, cols, i0 - 1, j - 1) - this.u[i0] - this.v[j];
+                    if (cur < this.minv[j]) {
+                        this.minv[j] = cur;
+                        this.way[j] = j0;
+                    }
+                    if (this.minv[j] < delta) {
+                        delta = this.minv[j];
+                        j1 = j;
+                    }
+                }
+                for (int j = 0; j <= n; j++) {
+                    if (this.used[j]) {
+                        this.u[this.p[j]] += delta;
+                        this.v[j] -= delta;
+                    } else {
+                        this.minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (this.p[j0] != 0);
+            // 沿增广路径翻转匹配
+            do {
+                int j1 = this.way[j0];
+                this.p[j0] = this.p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        int assigned = 0;
+        for (int j = 1; j <= n; j++) {
+            int i = this.p[j] - 1;
+            if (i < rows && j - 1 < cols) {
+                assignment[i] = j - 1;
+                assigned++;
+            }
+        }
+        return assigned;
+    }
+
+    private static double cost(float[] cost, int rows, int cols, int i, int j) {
+        return i < rows && j < cols ? cost[i * cols + j] : 0;
+    }
+
+    private void ensureCapacity(int size) {
+        if (this.u.length < size) {
+            this.u = new double[size];
+            this.v = new double[size];
+            this.minv = new double[size];
+            this.p = new int[size];
+            this.way = new int[size];
+            this.used = new boolean[size];
+        }
+    }
+
+}
@@ -81,37 +81,15 @@ public final class ImageUtil {
      * @return 调整后的结果
      */
     public static float[] whc2cwh(float[] src) {
-        float[] chw = new float[src.length];
-        int j = 0;
-        for (int ch = 0; ch < 3; ++ch) {
-            for (int i = ch; i < src.length; i += 3) {
-                chw[j] = src[i];
-                j++;
-            }
-        }
-        return chw;
+        return ChwTranspose.hwc2chw(src);
     }
 
     public static void whc2cwh(float[] src, float[] dst, int start) {
-        int j = start;
-        for (int ch = 0; ch < 3; ++ch) {
-            for (int i = ch; i < src.length; i += 3) {
-                dst[j] = src[i];
-                j++;
-            }
-        }
+        ChwTranspose.hwc2chw(src, 0, src.length / 3, 3, dst, start);
     }
 
     public static byte[] whc2cwh(byte[] src) {
-        byte[] chw = new byte[src.length];
-        int j = 0;
-        for (int ch = 0; ch < 3; ++ch) {
-            for (int i = ch; i < src.length; i += 3) {
-                chw[j] = src[i];
-                j++;
-            }
-        }
-        return chw;
+        return ChwTranspose.hwc2chw(src);
     }
 
 }
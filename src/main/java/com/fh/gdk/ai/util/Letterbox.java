@@ -2,6 +2,7 @@ package com.fh.gdk.ai.util;
 
 import org.opencv.core.Core;
 import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
@@ -12,13 +13,22 @@ public class Letterbox {
 
     private Size newShape ;
     private final double[] color = new double[] {114, 114, 114};
-    private final Boolean auto = false;
+    private final Scalar borderValue = new Scalar(this.color);
+    // 等比缩放后的尺寸，每次调用时复用
+    private final Size unpadShape = new Size();
+    // 是否使用最小矩形：只填充到 stride 的倍数，而不是填充到 newShape
+    private Boolean auto = false;
     private final Boolean scaleUp = true;
     private Integer stride = 32;
 
     private double ratio;
     private double dw;
     private double dh;
+    // 四周填充的像素数
+    private int top;
+    private int bottom;
+    private int left;
+    private int right;
 
     public Letterbox(int w, int h) {
         this.newShape = new Size(w, h);
@@ -40,6 +50,29 @@ public class Letterbox {
         return dh;
     }
 
+    public int getTop() {
+        return top;
+    }
+
+    public int getBottom() {
+        return bottom;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getRight() {
+        return right;
+    }
+
+    /**
+     * 填充值（每个通道相同）
+     */
+    public double getPadValue() {
+        return this.color[0];
+    }
+
     public Integer getWidth() {
         return (int) this.newShape.width;
     }
@@ -56,21 +89,74 @@ public class Letterbox {
         this.stride = stride;
     }
 
+    public void setAuto(Boolean auto) {
+        this.auto = auto;
+    }
+
+    /**
+     * 填充后的实际宽度，auto 为 true 时可能小于 newShape
+     */
+    public int getPaddedWidth() {
+        return (int) this.unpadShape.width + this.left + this.right;
+    }
+
+    /**
+     * 填充后的实际高度，auto 为 true 时可能小于 newShape
+     */
+    public int getPaddedHeight() {
+        return (int) this.unpadShape.height + this.top + this.bottom;
+    }
+
     /**
      * 调整图像大小和填充图像，使满足步长约束，并记录参数
      */
     public Mat letterbox(Mat im) {
+        return this.letterbox(im, im);
+    }
+
+    /**
+     * 同 {@link #letterbox(Mat)}，但结果写入 dst，不修改原图 src
+     */
+    public Mat letterbox(Mat src, Mat dst) {
+        return this.letterbox(src, dst, dst);
+    }
+
+    /**
+     * 同 {@link #letterbox(Mat, Mat)}，等比缩放的中间结果写入 resized。
+     * <p>resized 与 dst 使用不同的 Mat 并重复使用时，缩放和填充都不会再重新分配内存。</p>
+     */
+    public Mat letterbox(Mat src, Mat resized, Mat dst) {
+        Mat im = this.resize(src, resized);
+
+        // 图像四周padding填充，至此原图与目标尺寸一致
+        // 将图像填充为正方形
+        Core.copyMakeBorder(im, dst, this.top, this.bottom, this.left, this.right, Core.BORDER_CONSTANT, this.borderValue);
+        return dst;
+    }
+
+    /**
+     * 只进行等比缩放，不填充，并记录参数。
+     * <p>填充区域交由调用方处理（例如预处理时直接写入常量值），
+     * 四周需要填充的像素数见 {@link #getTop()}、{@link #getLeft()} 等。</p>
+     *
+     * @return 缩放后的图像，如果尺寸无需改变则直接返回 src
+     */
+    public Mat resize(Mat src, Mat resized) {
+        Mat im = src;
         // 当前形状 [height, width]
-        int[] shape = { im.rows(), im.cols() };
+        final int rows = im.rows();
+        final int cols = im.cols();
         // Scale ratio (new / old)
-        double r = Math.min(this.newShape.height / shape[0], this.newShape.width / shape[1]);
+        double r = Math.min(this.newShape.height / rows, this.newShape.width / cols);
         // 仅缩小，不扩大（为了mAP）
         if (!this.scaleUp) {
             r = Math.min(r, 1.0);
         }
 
         // Compute padding
-        Size newUnpad = new Size(Math.round(shape[1] * r), Math.round(shape[0] * r));
+        Size newUnpad = this.unpadShape;
+        newUnpad.width = Math.round(cols * r);
+        newUnpad.height = Math.round(rows * r);
         // 计算距离目标尺寸的padding像素数
         double dw = this.newShape.width - newUnpad.width;
         double dh = this.newShape.height - newUnpad.height;
@@ -84,17 +170,15 @@ public class Letterbox {
         dh /= 2.0f;
 
         // 等比缩放
-        if (shape[1] != newUnpad.width || shape[0] != newUnpad.height) {
-            Imgproc.resize(im, im, newUnpad, 0, 0, Imgproc.INTER_LINEAR);
+        if (cols != newUnpad.width || rows != newUnpad.height) {
+            Imgproc.resize(im, resized, newUnpad, 0, 0, Imgproc.INTER_LINEAR);
+            im = resized;
         }
 
-        // 图像四周padding填充，至此原图与目标尺寸一致
-        int top = (int) Math.round(dh - 0.1f);
-        int bottom = (int) Math.round(dh + 0.1f);
-        int left = (int) Math.round(dw - 0.1f);
-        int right = (int) Math.round(dw + 0.1f);
-        // 将图像填充为正方形
-        Core.copyMakeBorder(im, im, top, bottom, left, right, Core.BORDER_CONSTANT, new org.opencv.core.Scalar(this.color));
+        this.top = (int) Math.round(dh - 0.1f);
+        this.bottom = (int) Math.round(dh + 0.1f);
+        this.left = (int) Math.round(dw - 0.1f);
+        this.right = (int) Math.round(dw + 0.1f);
         this.ratio = r;
         this.dh = dh;
         this.dw = dw;
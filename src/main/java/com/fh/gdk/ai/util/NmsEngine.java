@@ -0,0 +1,381 @@
+package com.fh.gdk.ai.util;
+
+import java.util.Arrays;
+
+/**
+ * 非极大值抑制引擎，所有模型的后处理共用。
+ * <p>候选框以并行的原始数组表示：boxes 按 [x_min, y_min, x_max, y_max] 每 4 个值一个框，
+ * scores 为置信度，classIds 为类别（可为 null），keypoints 为每个候选 numKeypoints 个 (x, y, conf)。
+ * 候选框按置信度排序一次（O(n log n)），之后用标记数组记录被抑制的框，不再反复重建列表。</p>
+ * <p>支持的抑制策略见 {@link Suppression}。内部缓冲区在多次调用之间复用，因此同一个实例不能被多个线程同时使用。</p>
+ */
+public final class NmsEngine {
+
+    private static final int KEYPOINT_DIMS = 3;
+
+    // 排序键：高 32 位为可排序的置信度，低 32 位为下标
+    private long[] order = new long[0];
+    // 按置信度降序排列的候选下标，以及对应的面积、是否被抑制、衰减后的置信度
+    private int[] ranked = new int[0];
+    private float[] areas = new float[0];
+    private boolean[] suppressed = new boolean[0];
+    private float[] decayed = new float[0];
+
+    // 加权框融合：每个簇的代表候选、成员数、权重和、加权的框与关键点之和、当前融合框
+    private int[] clusterRep = new int[0];
+    private int[] clusterSize = new int[0];
+    private float[] clusterWeight = new float[0];
+    private float[] clusterBoxSum = new float[0];
+    private float[] clusterBox = new float[0];
+    private float[] clusterKptSum = new float[0];
+
+    /**
+     * 执行标准非极大值抑制
+     *
+     * @param boxes 候选框 [x_min, y_min, x_max, y_max]，每 4 个值一个
+     * @param scores 置信度
+     * @param classIds 类别，为 null 或 classAware 为 false 时所有框视为同一类别
+     * @param count 候选框个数
+     * @param iouThreshold 与已保留的框的 IOU 不小于该值时被抑制
+     * @param topK 抑制之前只保留置信度最高的 topK 个候选框，<=0 表示不限制
+     * @param classAware 是否只在同一类别的框之间进行抑制
+     * @param keep 保留的候选框下标，按置信度降序写入，长度至少为 count
+     * @return 保留的候选框个数
+     */
+    public int run(float[] boxes, float[] scores, int[] classIds, int count, float iouThreshold,
+                   int topK, boolean classAware, int[] keep) {
+        final int n = this.rank(boxes, scores, count, topK);
+        return this.greedy(boxes, classAware ? classIds : null, null, 0, n, iouThreshold, null, 0, keep);
+    }
+
+    /**
+     * 不区分类别、不限制候选框数量的非极大值抑制
+     */
+    public int run(float[] boxes, float[] scores, int count, float iouThreshold, int[] keep) {
+        return this.run(boxes, scores, null, count, iouThreshold, 0, false, keep);
+    }
+
+    /**
+     * 使用指定的抑制策略。Soft-NMS 会将衰减后的置信度写回 scores，
+     * 加权框融合会将融合结果写回每个簇中置信度最高的候选的 boxes、scores 和 keypoints。
+     *
+     * @param keypoints 关键点，OKS 与加权框融合使用，其它策略可为 null
+     * @param numKeypoints 每个候选的关键点个数
+     * @return 保留的候选框个数，下标按（处理后的）置信度降序写入 keep
+     */
+    public int run(float[] boxes, float[] scores, int[] classIds, float[] keypoints, int numKeypoints, int count,
+                   int topK, boolean classAware, Suppression suppression, int[] keep) {
+        final int n = this.rank(boxes, scores, count, topK);
+        final int[] classes = classAware ? classIds : null;
+        switch (suppression.getMethod()) {
+            case HARD:
+                return this.greedy(boxes, classes, null, 0, n, suppression.getThreshold(), null, 0, keep);
+            case OKS:
+                return this.greedy(boxes, classes, keypoints, numKeypoints, n, suppression.getThreshold(),
+                        suppression.getKeypointSigmas(numKeypoints), suppression.getKeypointConfThreshold(), keep);
+            case SOFT_LINEAR:
+            case SOFT_GAUSSIAN:
+                return this.soft(boxes, scores, classes, n, suppression, keep);
+            case WEIGHTED_FUSION:
+                return this.fuse(boxes, scores, classes, keypoints, numKeypoints, n, suppression.getThreshold(), keep);
+            default:
+                throw new IllegalArgumentException("Unsupported suppression: " + suppression);
+        }
+    }
+
+    /**
+     * 按置信度降序排列候选，只保留前 topK 个，返回参与抑制的候选个数
+     */
+    private int rank(float[] boxes, float[] scores, int count, int topK) {
+        if (count <= 0) {
+            return 0;
+        }
+        this.ensureCapacity(count);
+        final long[] order = this.order;
+        for (int i = 0; i < count; i++) {
+            order[i] = ((long) sortableBits(scores[i]) << 32) | i;
+        }
+        Arrays.sort(order, 0, count);
+
+        // 排序后置信度最高的在末尾
+        final int n = topK > 0 ? Math.min(topK, count) : count;
+        final int last = count - 1;
+        for (int r = 0; r < n; r++) {
+            int i = (int) order[last - r];
+            int b = i * 4;
+            this.ranked[r] = i;
+            this.areas[r] = (boxes[b + 2] - boxes[b]) * (boxes[b + 3] - boxes[b + 1]);
+            this.suppressed[r] = false;
+        }
+        return n;
+    }
+
+    /**
+     * 贪心抑制：依次保留置信度最高的候选，丢弃与其重叠度不小于阈值的候选。
+     * keypoints 不为 null 时使用 OKS 作为重叠度，否则使用 IOU
+     */
+    private int greedy(float[] boxes, int[] classIds, float[] keypoints, int numKeypoints, int n, float threshold,
+                       float[] kptSigmas, float kptConfThreshold, int[] keep) {
+        final int[] ranked = this.ranked;
+        final float[] areas = this.areas;
+        final boolean[] suppressed = this.suppressed;
+
+        int kept = 0;
+        for (int r = 0; r < n; r++) {
+            if (suppressed[r]) {
+                continue;
+            }
+            final int i = ranked[r];
+            keep[kept++] = i;
+
+            final int bi = i * 4;
+            final float x0 = boxes[bi];
+            final float y0 = boxes[bi + 1];
+            final float x1 = boxes[bi + 2];
+            final float y1 = boxes[bi + 3];
+            final float area = areas[r];
+            for (int s = r + 1; s < n; s++) {
+                if (suppressed[s]) {
+                    continue;
+                }
+                final int j = ranked[s];
+                if (classIds != null && classIds[i] != classIds[j]) {
+                    continue;
+                }
+                final int bj = j * 4;
+                float w = Math.min(x1, boxes[bj + 2]) - Math.max(x0, boxes[bj]);
+                if (w <= 0) {
+                    continue;
+                }
+                float h = Math.min(y1, boxes[bj + 3]) - Math.max(y0, boxes[bj + 1]);
+                if (h <= 0) {
+                    continue;
+                }
+                float overlap = iou(w * h, area, areas[s]);
+                if (keypoints != null) {
+                    float oks = oks(keypoints, numKeypoints, i, j, area, kptSigmas, kptConfThreshold);
+                    if (oks >= 0) {
+                        overlap = oks;
+                    }
+                }
+                if (overlap >= threshold) {
+                    suppressed[s] = true;
+                }
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Soft-NMS：每次保留剩余候选中置信度最高的，并按 IOU 衰减其余候选的置信度，置信度低于 minScore 时丢弃
+     */
+    private int soft(float[] boxes, float[] scores, int[] classIds, int n, Suppression suppression, int[] keep) {
+        final int[] ranked = this.ranked;
+        final float[] areas = this.areas;
+        final boolean[] removed = this.suppressed;
+        final float[] decayed = this.decayed;
+        for (int r = 0; r < n; r++) {
+            decayed[r] = scores[ranked[r]];
+        }
+
+        final boolean gaussian = suppression.getMethod() == Suppression.Method.SOFT_GAUSSIAN;
+        final float threshold = suppression.getThreshold();
+        final float sigma = suppression.getSigma();
+        final float minScore = suppression.getMinScore();
+
+        int kept = 0;
+        while (true) {
+            // 选出剩余候选中衰减后置信度最高的
+            int best = -1;
+            float bestScore = -Float.MAX_VALUE;
+            for (int r = 0; r < n; r++) {
+                if (!removed[r] && decayed[r] > bestScore) {
+                    bestScore = decayed[r];
+                    best = r;
+                }
+            }
+            if (best < 0 || bestScore < minScore) {
+                break;
+            }
+            removed[best] = true;
+            final int i = ranked[best];
+            scores[i] = bestScore;
+            keep[kept++] = i;
+
+            final int bi = i * 4;
+            final float area = areas[best];
+            for (int s = 0; s < n; s++) {
+                if (removed[s]) {
+                    continue;
+                }
+                final int j = ranked[s];
+                if (classIds != null && classIds[i] != classIds[j]) {
+                    continue;
+                }
+                final int bj = j * 4;
+                float w = Math.min(boxes[bi + 2], boxes[bj + 2]) - Math.max(boxes[bi], boxes[bj]);
+                float h = Math.min(boxes[bi + 3], boxes[bj + 3]) - Math.max(boxes[bi + 1], boxes[bj + 1]);
+                if (w <= 0 || h <= 0) {
+                    continue;
+                }
+                float iou = iou(w * h, area, areas[s]);
+                if (gaussian) {
+                    decayed[s] *= (float) Math.exp(-(iou * iou) / sigma);
+                } else if (iou >= threshold) {
+                    decayed[s] *= 1 - iou;
+                }
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * 加权框融合：按置信度从高到低，将候选加入与其融合框 IOU 最大且不小于阈值的簇，没有则新建一个簇。
+     * 融合框和关键点为簇内成员按置信度的加权平均，融合后的置信度为成员置信度的平均值
+     */
+    private int fuse(float[] boxes, float[] scores, int[] classIds, float[] keypoints, int numKeypoints, int n,
+                     float iouThreshold, int[] keep) {
+        final int kptValues = keypoints != null ? numKeypoints * KEYPOINT_DIMS : 0;
+        this.ensureClusterCapacity(n, kptValues);
+        final int[] ranked = this.ranked;
+        final int[] rep = this.clusterRep;
+        final int[] size = this.clusterSize;
+        final float[] weight = this.clusterWeight;
+        final float[] boxSum = this.clusterBoxSum;
+        final float[] fused = this.clusterBox;
+        final float[] kptSum = this.clusterKptSum;
+
+        int clusters = 0;
+        for (int r = 0; r < n; r++) {
+            final int i = ranked[r];
+            final int bi = i * 4;
+            final float areaI = this.areas[r];
+
+            // 查找 IOU 最大的簇
+            int target = -1;
+            float bestIou = iouThreshold;
+            for (int c = 0; c < clusters; c++) {
+                if (classIds != null && classIds[rep[c]] != classIds[i]) {
+                    continue;
+                }
+                final int bc = c * 4;
+                float w = Math.min(fused[bc + 2], boxes[bi + 2]) - Math.max(fused[bc], boxes[bi]);
+                float h = Math.min(fused[bc + 3], boxes[bi + 3]) - Math.max(fused[bc + 1], boxes[bi + 1]);
+                if (w <= 0 || h <= 0) {
+                    continue;
+                }
+                float areaC = (fused[bc + 2] - fused[bc]) * (fused[bc + 3] - fused[bc + 1]);
+                float iou = iou(w * h, areaC, areaI);
+                if (iou >= bestIou) {
+                    bestIou = iou;
+                    target = c;
+                }
+            }
+            if (target < 0) {
+                target = clusters++;
+                rep[target] = i;
+                size[target] = 0;
+                weight[target] = 0;
+                Arrays.fill(boxSum, target * 4, target * 4 + 4, 0);
+                Arrays.fill(kptSum, target * kptValues, (target + 1) * kptValues, 0);
+            }
+
+            final float wi = scores[i];
+            size[target]++;
+            weight[target] += wi;
+            final int bc = target * 4;
+            for (int v = 0; v < 4; v++) {
+                boxSum[bc + v] += wi * boxes[bi + v];
+                fused[bc + v] = weight[target] > 0 ? boxSum[bc + v] / weight[target] : boxes[bi + v];
+            }
+            for (int v = 0, src = i * kptValues, dst = target * kptValues; v < kptValues; v++) {
+                kptSum[dst + v] += wi * keypoints[src + v];
+            }
+        }
+
+        // 融合结果写回每个簇的代表候选，并按融合后的置信度降序排列
+        for (int c = 0; c < clusters; c++) {
+            final int i = rep[c];
+            final float w = weight[c];
+            System.arraycopy(fused, c * 4, boxes, i * 4, 4);
+            scores[i] = w / size[c];
+            if (w > 0) {
+                for (int v = 0, src = c * kptValues, dst = i * kptValues; v < kptValues; v++) {
+                    keypoints[dst + v] = kptSum[src + v] / w;
+                }
+            }
+
+            int k = c;
+            while (k > 0 && scores[keep[k - 1]] < scores[i]) {
+                keep[k] = keep[k - 1];
+                k--;
+            }
+            keep[k] = i;
+        }
+        return clusters;
+    }
+
+    /**
+     * 计算候选 i 与 j 的关键点相似度，以 i 的框面积作为尺度。没有两者都可见的关键点时返回 -1
+     */
+    private static float oks(float[] keypoints, int numKeypoints, int i, int j, float area,
+                             float[] sigmas, float confThreshold) {
+        final float uniformVar = 4.0f / (numKeypoints * numKeypoints);
+        final float scale = 2 * Math.max(area, 1e-6f);
+        int ki = i * numKeypoints * KEYPOINT_DIMS;
+        int kj = j * numKeypoints * KEYPOINT_DIMS;
+        float sum = 0;
+        int visible = 0;
+        for (int k = 0; k < numKeypoints; k++, ki += KEYPOINT_DIMS, kj += KEYPOINT_DIMS) {
+            if (keypoints[ki + 2] <= confThreshold || keypoints[kj + 2] <= confThreshold) {
+                continue;
+            }
+            float dx = keypoints[ki] - keypoints[kj];
+            float dy = keypoints[ki + 1] - keypoints[kj + 1];
+            // COCO: e = d^2 / (2 * s^2 * (2 * sigma)^2)，s^2 为目标面积
+            float var = sigmas != null ? 4 * sigmas[k] * sigmas[k] : uniformVar;
+            sum += (float) Math.exp(-(dx * dx + dy * dy) / (scale * var));
+            visible++;
+        }
+        return visible > 0 ? sum / visible : -1;
+    }
+
+    private static float iou(float inter, float area1, float area2) {
+        float union = area1 + area2 - inter;
+        return union > 0 ? inter / union : 0;
+    }
+
+    private void ensureCapacity(int count) {
+        if (this.order.length < count) {
+            int capacity = Math.max(count, this.order.length * 2);
+            this.order = new long[capacity];
+            this.ranked = new int[capacity];
+            this.areas = new float[capacity];
+            this.suppressed = new boolean[capacity];
+            this.decayed = new float[capacity];
+        }
+    }
+
+    private void ensureClusterCapacity(int count, int kptValues) {
+        if (this.clusterRep.length < count) {
+            int capacity = Math.max(count, this.clusterRep.length * 2);
+            this.clusterRep = new int[capacity];
+            this.clusterSize = new int[capacity];
+            this.clusterWeight = new float[capacity];
+            this.clusterBoxSum = new float[capacity * 4];
+            this.clusterBox = new float[capacity * 4];
+        }
+        if (this.clusterKptSum.length < this.clusterRep.length * kptValues) {
+            this.clusterKptSum = new float[this.clusterRep.length * kptValues];
+        }
+    }
+
+    /**
+     * 将 float 转换为 int，转换结果按有符号 int 比较时与原数值大小顺序一致（包括负数）
+     */
+    private static int sortableBits(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7fffffff);
+    }
+
+}
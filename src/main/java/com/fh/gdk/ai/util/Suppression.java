@@ -0,0 +1,144 @@
+package com.fh.gdk.ai.util;
+
+/**
+ * 非极大值抑制策略，由 {@link NmsEngine} 执行，可以在每次推理时指定。
+ * <ul>
+ *     <li>{@link Method#HARD}：标准的非极大值抑制，IOU 不小于阈值的框直接丢弃</li>
+ *     <li>{@link Method#SOFT_LINEAR}、{@link Method#SOFT_GAUSSIAN}：Soft-NMS，重叠的框按 IOU 衰减置信度而不是直接丢弃，
+ *     人群密集、互相遮挡时可以保留更多的人</li>
+ *     <li>{@link Method#WEIGHTED_FUSION}：加权框融合（WBF），重叠的框按置信度加权平均为一个框，关键点同样加权平均</li>
+ *     <li>{@link Method#OKS}：按关键点相似度（Object Keypoint Similarity）而不是框的 IOU 进行抑制，
+ *     框大量重叠但姿态不同的人不会被误删</li>
+ * </ul>
+ */
+public final class Suppression {
+
+    public enum Method {
+        HARD,
+        SOFT_LINEAR,
+        SOFT_GAUSSIAN,
+        WEIGHTED_FUSION,
+        OKS
+    }
+
+    /**
+     * COCO 17 个人体关键点的 OKS sigma
+     */
+    public static final float[] COCO_KEYPOINT_SIGMAS = {
+            0.026f, 0.025f, 0.025f, 0.035f, 0.035f, 0.079f, 0.079f, 0.072f, 0.072f,
+            0.062f, 0.062f, 0.107f, 0.107f, 0.087f, 0.087f, 0.089f, 0.089f
+    };
+
+    // Soft-NMS 默认的高斯 sigma 与最低置信度
+    public static final float SOFT_NMS_SIGMA_DEFAULT = 0.5f;
+    public static final float SOFT_NMS_MIN_SCORE_DEFAULT = 0.001f;
+
+    // OKS 计算时只使用置信度超过该值的关键点
+    public static final float OKS_KEYPOINT_CONF_DEFAULT = 0.5f;
+
+    private final Method method;
+    private final float threshold;
+    private final float sigma;
+    private final float minScore;
+    private final float[] keypointSigmas;
+    private final float keypointConfThreshold;
+
+    private Suppression(Method method, float threshold, float sigma, float minScore,
+                        float[] keypointSigmas, float keypointConfThreshold) {
+        this.method = method;
+        this.threshold = threshold;
+        this.sigma = sigma;
+        this.minScore = minScore;
+        this.keypointSigmas = keypointSigmas;
+        this.keypointConfThreshold = keypointConfThreshold;
+    }
+
+    /**
+     * 标准非极大值抑制
+     */
+    public static Suppression hard(float iouThreshold) {
+        return new Suppression(Method.HARD, iouThreshold, 0, 0, null, 0);
+    }
+
+    /**
+     * 线性 Soft-NMS：IOU 不小于阈值的框置信度乘以 (1 - IOU)，置信度低于 minScore 后丢弃
+     */
+    public static Suppression softLinear(float iouThreshold, float minScore) {
+        return new Suppression(Method.SOFT_LINEAR, iouThreshold, 0, minScore, null, 0);
+    }
+
+    /**
+     * 高斯 Soft-NMS：所有重叠的框置信度乘以 exp(-IOU^2 / sigma)，置信度低于 minScore 后丢弃
+     */
+    public static Suppression softGaussian(float sigma, float minScore) {
+        return new Suppression(Method.SOFT_GAUSSIAN, 0, sigma, minScore, null, 0);
+    }
+
+    public static Suppression softGaussian() {
+        return softGaussian(SOFT_NMS_SIGMA_DEFAULT, SOFT_NMS_MIN_SCORE_DEFAULT);
+    }
+
+    /**
+     * 加权框融合：与融合框 IOU 不小于阈值的框合并到一起
+     */
+    public static Suppression weightedFusion(float iouThreshold) {
+        return new Suppression(Method.WEIGHTED_FUSION, iouThreshold, 0, 0, null, 0);
+    }
+
+    /**
+     * 基于关键点相似度的非极大值抑制
+     *
+     * @param oksThreshold OKS 不小于该值时被抑制
+     * @param keypointSigmas 每个关键点的 sigma，为 null 时 17 个关键点使用 COCO 的值，其它情况所有关键点使用相同的值
+     * @param keypointConfThreshold 只使用两者置信度都超过该值的关键点，没有可用的关键点时退化为框的 IOU
+     */
+    public static Suppression oks(float oksThreshold, float[] keypointSigmas, float keypointConfThreshold) {
+        return new Suppression(Method.OKS, oksThreshold, 0, 0, keypointSigmas, keypointConfThreshold);
+    }
+
+    public static Suppression oks(float oksThreshold) {
+        return oks(oksThreshold, null, OKS_KEYPOINT_CONF_DEFAULT);
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * IOU 阈值或 OKS 阈值
+     */
+    public float getThreshold() {
+        return threshold;
+    }
+
+    public float getSigma() {
+        return sigma;
+    }
+
+    public float getMinScore() {
+        return minScore;
+    }
+
+    public float getKeypointConfThreshold() {
+        return keypointConfThreshold;
+    }
+
+    /**
+     * 获取指定关键点个数对应的 OKS sigma，返回 null 表示所有关键点使用相同的 sigma (1 / numKeypoints)
+     */
+    public float[] getKeypointSigmas(int numKeypoints) {
+        if (this.keypointSigmas != null) {
+            if (this.keypointSigmas.length != numKeypoints) {
+                throw new IllegalArgumentException("Expected " + numKeypoints + " keypoint sigmas, got " + this.keypointSigmas.length);
+            }
+            return this.keypointSigmas;
+        }
+        return numKeypoints == COCO_KEYPOINT_SIGMAS.length ? COCO_KEYPOINT_SIGMAS : null;
+    }
+
+    @Override
+    public String toString() {
+        return "Suppression{" + method + ", threshold=" + threshold + ", sigma=" + sigma + ", minScore=" + minScore + "}";
+    }
+
+}
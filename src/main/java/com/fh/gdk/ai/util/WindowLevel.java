@@ -0,0 +1,59 @@
+package com.fh.gdk.ai.util;
+
+/**
+ * 灰度图像（例如 12~16 位的 X 光片）的窗宽窗位：[lower, upper] 范围内的像素值线性映射到 [0, 1]，
+ * 低于 lower 的为 0，高于 upper 的为 1。与 DICOM 的 WindowCenter / WindowWidth 含义相同（按线性函数处理）。
+ */
+public final class WindowLevel {
+
+    private final double center;
+    private final double width;
+
+    private WindowLevel(double center, double width) {
+        if (!(width > 0)) {
+            throw new IllegalArgumentException("Window width must be > 0: " + width);
+        }
+        this.center = center;
+        this.width = width;
+    }
+
+    /**
+     * @param center 窗位
+     * @param width 窗宽
+     */
+    public static WindowLevel of(double center, double width) {
+        return new WindowLevel(center, width);
+    }
+
+    /**
+     * 按像素值范围 [lower, upper] 创建
+     */
+    public static WindowLevel range(double lower, double upper) {
+        return new WindowLevel((lower + upper) / 2, upper - lower);
+    }
+
+    public double getCenter() {
+        return center;
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    public double getLower() {
+        return center - width / 2;
+    }
+
+    public double getUpper() {
+        return center + width / 2;
+    }
+
+    @Override
+    public String toString() {
+        return "WindowLevel {" +
+                "center=" + center +
+                ", width=" + width +
+                '}';
+    }
+
+}
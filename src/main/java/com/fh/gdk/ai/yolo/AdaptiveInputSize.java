@@ -0,0 +1,139 @@
+package com.fh.gdk.ai.yolo;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按图片选择推理尺寸，只适用于输入高宽为动态维度的模型（见 {@link Yolov8#setAdaptiveInputSize(AdaptiveInputSize)}）。
+ * <ul>
+ *     <li>尺寸阶梯：从若干个最长边尺寸（例如 320、480、640）中，选择不超过原图最长边的最大尺寸，原图较小时不会放大推理</li>
+ *     <li>延迟预算：记录每个尺寸的推理耗时，超过预算的尺寸不再被选择，降到更小的尺寸。
+ *     每个尺寸最初的几次推理（模型预热、创建工作区）不计入耗时；被降级的尺寸每隔一段时间重新试一次，负载下降后可以恢复</li>
+ *     <li>最小矩形：与 {@link com.fh.gdk.ai.util.Letterbox} 的 auto 模式相同，只把短边填充到 stride 的倍数，
+ *     16:9 的视频帧不再在填充区域上浪费约 40% 的计算</li>
+ * </ul>
+ * <p>每种推理宽高使用各自的预处理工作区（含输入输出绑定），坐标通过 {@link ImageMetaData} 映射回原图。
+ * 最小矩形的短边是 stride 的倍数，每一级最多有 2 × size / stride 种宽高（横竖两个方向），
+ * 模型保留的空闲工作区总数有上限，不会随宽高的种类增长。线程安全。</p>
+ */
+public final class AdaptiveInputSize {
+
+    // 每个尺寸不计入耗时的预热推理次数
+    private static final int WARMUP_SAMPLES = 3;
+    // 每选择多少次重新试一次被降级的尺寸
+    private static final int PROBE_INTERVAL = 64;
+
+    private final int[] sizes;
+    private volatile long latencyBudgetNanos = 0;
+    private volatile boolean rectangular = true;
+    // 每个尺寸最近的推理耗时（纳秒）的指数移动平均，0 表示还没有记录
+    private final AtomicLongArray averageNanos;
+    // 每个尺寸已记录的预热推理次数，达到 WARMUP_SAMPLES 后不再增加
+    private final AtomicIntegerArray samples;
+    private final AtomicLong selections = new AtomicLong();
+
+    /**
+     * @param sizes 推理尺寸阶梯（最长边），必须是模型 stride 的倍数
+     */
+    public AdaptiveInputSize(int... sizes) {
+        if (sizes.length == 0) {
+            throw new IllegalArgumentException("At least one size is required");
+        }
+        this.sizes = sizes.clone();
+        Arrays.sort(this.sizes);
+        this.averageNanos = new AtomicLongArray(this.sizes.length);
+        this.samples = new AtomicIntegerArray(this.sizes.length);
+    }
+
+    /**
+     * 单张图片的推理耗时预算，0 表示不限制
+     */
+    public AdaptiveInputSize setLatencyBudget(long budget, TimeUnit unit) {
+        this.latencyBudgetNanos = unit.toNanos(budget);
+        return this;
+    }
+
+    /**
+     * 是否使用最小矩形，false 时使用正方形，默认 true
+     */
+    public AdaptiveInputSize setRectangular(boolean rectangular) {
+        this.rectangular = rectangular;
+        return this;
+    }
+
+    /**
+     * 为原图选择尺寸阶梯中的一级
+     *
+     * @return 尺寸阶梯的下标
+     */
+    public int select(int srcWidth, int srcHeight) {
+        final int longest = Math.max(srcWidth, srcHeight);
+        final long budget = this.latencyBudgetNanos;
+        boolean probe = budget > 0 && this.selections.incrementAndGet() % PROBE_INTERVAL == 0;
+        for (int i = this.sizes.length - 1; i > 0; i--) {
+            // 比原图大一级以内的尺寸仍然可用，避免原图略小于某一级时降到小得多的尺寸
+            if (this.sizes[i - 1] >= longest) {
+                continue;
+            }
+            final long average = this.averageNanos.get(i);
+            if (budget <= 0 || average == 0 || average <= budget) {
+                return i;
+            }
+            // 重新试被降级的尺寸：清除平均耗时，由下一次记录的耗时决定是否恢复
+            if (probe) {
+                this.averageNanos.compareAndSet(i, average, 0);
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 尺寸阶梯中第 level 级对应的推理宽高
+     *
+     * @return 宽高 {width, height}
+     */
+    public int[] shape(int level, int srcWidth, int srcHeight, int stride) {
+        final int size = this.sizes[level];
+        if (!this.rectangular) {
+            return new int[] {size, size};
+        }
+        // 与 Letterbox 的 auto 模式相同：等比缩放后只填充到 stride 的倍数
+        final double r = Math.min((double) size / srcHeight, (double) size / srcWidth);
+        final int width = (int) Math.round(srcWidth * r);
+        final int height = (int) Math.round(srcHeight * r);
+        return new int[] {width + (size - width) % stride, height + (size - height) % stride};
+    }
+
+    /**
+     * 记录第 level 级的一次推理耗时
+     */
+    public void record(int level, long nanos) {
+        if (this.samples.get(level) < WARMUP_SAMPLES && this.samples.getAndIncrement(level) < WARMUP_SAMPLES) {
+            return;
+        }
+        // 权重 1/8 的指数移动平均
+        while (true) {
+            final long average = this.averageNanos.get(level);
+            final long next = average == 0 ? nanos : average + (nanos - average) / 8;
+            if (this.averageNanos.compareAndSet(level, average, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 第 level 级的平均推理耗时（纳秒），0 表示还没有记录
+     */
+    public long getAverageNanos(int level) {
+        return this.averageNanos.get(level);
+    }
+
+    public int[] getSizes() {
+        return this.sizes.clone();
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.fh.gdk.ai.yolo;
+
+import java.nio.FloatBuffer;
+import java.util.List;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.fh.gdk.ai.AiException;
+import com.fh.gdk.ai.util.Suppression;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * 目标检测，模型输出 [N, 4 + 类别数, 锚点]，类别名称取自 onnx 元数据中的 names。
+ * <p>与姿态推理共用预处理工作区、输出绑定与解码路径：每个锚点取置信度最高的类别，
+ * 只在同一类别的框之间进行非极大值抑制。Pose 模型也可以按检测模型使用，关键点会被忽略。</p>
+ */
+public class DetectYolov8 extends Yolov8 {
+
+    private final OutputDecoder<Detection> detectionDecoder = this::decodeDetections;
+
+    public DetectYolov8(String modelPath) {
+        super(modelPath);
+    }
+
+    public DetectYolov8(String modelPath, float confThreshold, float iouThreshold) {
+        super(modelPath, confThreshold, iouThreshold);
+    }
+
+    public DetectYolov8(String modelPath, float confThreshold, float iouThreshold, int gpuDeviceId) {
+        super(modelPath, confThreshold, iouThreshold, gpuDeviceId);
+    }
+
+    public DetectYolov8(byte[] modelBytes, float confThreshold, float iouThreshold, int gpuDeviceId, int intraOpNumThreads) {
+        super(modelBytes, confThreshold, iouThreshold, gpuDeviceId, intraOpNumThreads);
+    }
+
+    public List<Detection> detect(String imagePath) throws AiException {
+        return this.detect(Imgcodecs.imread(imagePath));
+    }
+
+    public List<Detection> detect(Mat inputImg) throws AiException {
+        return this.detect(inputImg, this.confThreshold, Suppression.hard(this.iouThreshold));
+    }
+
+    public List<Detection> detect(Mat inputImg, float confThreshold, float iouThreshold) throws AiException {
+        return this.detect(inputImg, confThreshold, Suppression.hard(iouThreshold));
+    }
+
+    /**
+     * 使用本次调用指定的阈值与抑制策略进行检测
+     */
+    public List<Detection> detect(Mat inputImg, float confThreshold, Suppression suppression) throws AiException {
+        return this.predict(inputImg, confThreshold, suppression, this.detectionDecoder);
+    }
+
+    public List<List<Detection>> detectBatch(List<Mat> inputImgs) throws AiException {
+        return this.detectBatch(inputImgs, this.confThreshold, Suppression.hard(this.iouThreshold));
+    }
+
+    public List<List<Detection>> detectBatch(List<Mat> inputImgs, float confThreshold, Suppression suppression) throws AiException {
+        return this.predictBatch(inputImgs, this.getInferenceWidth(), this.getInferenceHeight(),
+                confThreshold, suppression, this.detectionDecoder);
+    }
+
+    /**
+     * 使用指定的预处理工作区进行批量检测，工作区不能同时被其它线程使用
+     */
+    public List<List<Detection>> detectBatch(List<Mat> inputImgs, PreprocessWorkspace workspace,
+                                             float confThreshold, Suppression suppression) throws AiException {
+        return this.predictBatch(inputImgs, workspace, confThreshold, suppression, this.detectionDecoder);
+    }
+
+    /**
+     * 推理的第三步（见 {@link #preprocess}、{@link #run}）：解析检测输出
+     *
+     * @return 与 imgMetaDatas 一一对应的检测结果
+     */
+    public List<List<Detection>> postprocessDetections(PreprocessWorkspace workspace, OrtSession.Result output,
+                                                       ImageMetaData[] imgMetaDatas, float confThreshold,
+                                                       Suppression suppression) throws OrtException {
+        return this.postprocess(workspace, output, imgMetaDatas, confThreshold, suppression, this.detectionDecoder);
+    }
+
+    private List<Detection> decodeDetections(FloatBuffer outputData, int offset, int anchors,
+                                             PreprocessWorkspace workspace, ImageMetaData imgMetaData,
+                                             float confThreshold, Suppression suppression) {
+        return workspace.decoder.decodeDetections(outputData, offset, anchors, this.spec, imgMetaData,
+                confThreshold, suppression, this.nmsTopK);
+    }
+
+}
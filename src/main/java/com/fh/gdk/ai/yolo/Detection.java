@@ -1,15 +1,58 @@
 package com.fh.gdk.ai.yolo;
 
+/**
+ * 目标检测结果，bbox 为推理尺寸上的 [x_min, y_min, x_max, y_max]，
+ * 通过 {@link ImageMetaData} 按 (x - dw) / ratio 换算为原图坐标
+ */
 public class Detection {
 
     public final String label;
     public final float[] bbox;
     public final float confidence;
+    public final int classId;
+
+    private ImageMetaData imageMetaData;
 
     public Detection(String label, float[] bbox, float confidence) {
+        this(label, -1, bbox, confidence);
+    }
+
+    public Detection(String label, int classId, float[] bbox, float confidence) {
         this.label = label;
+        this.classId = classId;
         this.bbox = bbox;
         this.confidence = confidence;
     }
 
+    public ImageMetaData getImageMetaData() {
+        return imageMetaData;
+    }
+
+    public Detection setImageMetaData(ImageMetaData imageMetaData) {
+        this.imageMetaData = imageMetaData;
+        return this;
+    }
+
+    public float getX0() {
+        return bbox[0];
+    }
+
+    public float getY0() {
+        return bbox[1];
+    }
+
+    public float getX1() {
+        return bbox[2];
+    }
+
+    public float getY1() {
+        return bbox[3];
+    }
+
+    @Override
+    public String toString() {
+        return label + "(" + classId + ") " + confidence
+                + " [" + bbox[0] + ", " + bbox[1] + ", " + bbox[2] + ", " + bbox[3] + "]";
+    }
+
 }
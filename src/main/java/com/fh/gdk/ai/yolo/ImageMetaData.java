@@ -52,6 +52,21 @@ public class ImageMetaData {
         this.ratio = ratio;
     }
 
-
+    /**
+     * 当前图片是原图中 (offsetX, offsetY) 处的 ROI 时，返回直接映射到原图坐标的元数据：
+     * 原图坐标 = (模型坐标 - dw) / ratio + offset = (模型坐标 - (dw - offset * ratio)) / ratio
+     *
+     * @param srcWith 原图宽度
+     * @param srcHeight 原图高度
+     */
+    public ImageMetaData compose(int offsetX, int offsetY, int srcWith, int srcHeight) {
+        ImageMetaData composed = new ImageMetaData();
+        composed.setRatio(this.ratio);
+        composed.setDw(this.dw - offsetX * this.ratio);
+        composed.setDh(this.dh - offsetY * this.ratio);
+        composed.setSrcWith(srcWith);
+        composed.setSrcHeight(srcHeight);
+        return composed;
+    }
 
 }
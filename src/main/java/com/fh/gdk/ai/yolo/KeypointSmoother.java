@@ -0,0 +1,302 @@
+package com.fh.gdk.ai.yolo;
+
+import java.util.Arrays;
+
+/**
+ * 关键点时域平滑，按跟踪 ID（{@link PoseTracker}）为每个人的每个关键点维护独立的滤波器，原地修改关键点坐标。
+ * <ul>
+ *     <li>{@link Method#ONE_EURO}：One-Euro 滤波，静止时强平滑去抖，运动越快截止频率越高、延迟越小</li>
+ *     <li>{@link Method#KALMAN}：匀速运动的卡尔曼滤波，观测噪声按关键点置信度放大</li>
+ * </ul>
+ * <p>置信度不超过阈值的关键点不参与更新，输出滤波器的预测值，遮挡时不会跳到错误的位置。
+ * 参数可以按关键点分组设置，例如 {@link #COCO_FACE}、{@link #COCO_ARMS}、{@link #COCO_LEGS}。</p>
+ * <p>滤波器状态保存在基本类型数组中，空闲超过 {@link #setMaxIdleSeconds(double)} 的跟踪 ID 的状态会被新的 ID 复用，
+ * 稳定运行后每帧不分配内存。不是线程安全的。</p>
+ */
+public final class KeypointSmoother {
+
+    public enum Method {
+        ONE_EURO,
+        KALMAN
+    }
+
+    // COCO 17 个人体关键点的分组：面部（鼻子、眼睛、耳朵）、手臂（肩、肘、腕）、腿（髋、膝、踝）
+    public static final int[] COCO_FACE = {0, 1, 2, 3, 4};
+    public static final int[] COCO_ARMS = {5, 6, 7, 8, 9, 10};
+    public static final int[] COCO_LEGS = {11, 12, 13, 14, 15, 16};
+
+    public static final float ONE_EURO_MIN_CUTOFF_DEFAULT = 1.0f;
+    public static final float ONE_EURO_BETA_DEFAULT = 0.01f;
+    public static final float ONE_EURO_D_CUTOFF_DEFAULT = 1.0f;
+    public static final float KALMAN_PROCESS_NOISE_DEFAULT = 2000f;
+    public static final float KALMAN_MEASUREMENT_NOISE_DEFAULT = 4f;
+
+    private static final int KEYPOINT_DIMS = 3;
+    // 每个关键点的状态：x, y 两个轴各 (位置, 速度, P00, P01, P11)，One-Euro 只使用位置和速度
+    private static final int AXIS_STATE = 5;
+    private static final int KEYPOINT_STATE = 2 * AXIS_STATE;
+
+    private final Method method;
+    private final int numKeypoints;
+
+    // 每个关键点的参数，One-Euro 为 (minCutoff, beta)，卡尔曼为 (processNoise, measurementNoise)
+    private final float[] paramA;
+    private final float[] paramB;
+    private float dCutoff = ONE_EURO_D_CUTOFF_DEFAULT;
+    private float confThreshold = 0.5f;
+    private double maxIdleSeconds = 1.0;
+
+    // 每个跟踪 ID 占用一个槽位
+    private int slots;
+    private int[] trackIds = new int[0];
+    private double[] lastSeen = new double[0];
+    private float[] state = new float[0];
+    private boolean[] initialized = new boolean[0];
+
+    public KeypointSmoother(Method method, int numKeypoints) {
+        this.method = method;
+        this.numKeypoints = numKeypoints;
+        this.paramA = new float[numKeypoints];
+        this.paramB = new float[numKeypoints];
+        if (method == Method.ONE_EURO) {
+            Arrays.fill(this.paramA, ONE_EURO_MIN_CUTOFF_DEFAULT);
+            Arrays.fill(this.paramB, ONE_EURO_BETA_DEFAULT);
+        } else {
+            Arrays.fill(this.paramA, KALMAN_PROCESS_NOISE_DEFAULT);
+            Arrays.fill(this.paramB, KALMAN_MEASUREMENT_NOISE_DEFAULT);
+        }
+    }
+
+    /**
+     * 设置一组关键点的 One-Euro 参数
+     *
+     * @param keypoints 关键点下标，为 null 表示所有关键点
+     * @param minCutoff 静止时的截止频率（Hz），越小越平滑
+     * @param beta 截止频率随速度（像素/秒）增加的系数，越大快速运动时延迟越小
+     */
+    public KeypointSmoother setOneEuro(int[] keypoints, float minCutoff, float beta) {
+        this.checkMethod(Method.ONE_EURO);
+        return this.setParams(keypoints, minCutoff, beta);
+    }
+
+    /**
+     * 设置一组关键点的卡尔曼滤波参数
+     *
+     * @param keypoints 关键点下标，为 null 表示所有关键点
+     * @param processNoise 加速度噪声的谱密度（像素^2/秒^3），越大越相信观测值
+     * @param measurementNoise 置信度为 1 时的观测噪声方差（像素^2）
+     */
+    public KeypointSmoother setKalman(int[] keypoints, float processNoise, float measurementNoise) {
+        this.checkMethod(Method.KALMAN);
+        return this.setParams(keypoints, processNoise, measurementNoise);
+    }
+
+    /**
+     * One-Euro 对速度进行平滑的截止频率
+     */
+    public KeypointSmoother setDerivativeCutoff(float dCutoff) {
+        this.dCutoff = dCutoff;
+        return this;
+    }
+
+    /**
+     * 置信度不超过该值的关键点不参与更新
+     */
+    public KeypointSmoother setConfThreshold(float confThreshold) {
+        this.confThreshold = confThreshold;
+        return this;
+    }
+
+    /**
+     * 跟踪 ID 超过该时间没有出现后，其状态可以被新的跟踪 ID 复用
+     */
+    public KeypointSmoother setMaxIdleSeconds(double maxIdleSeconds) {
+        this.maxIdleSeconds = maxIdleSeconds;
+        return this;
+    }
+
+    private KeypointSmoother setParams(int[] keypoints, float a, float b) {
+        if (keypoints == null) {
+            Arrays.fill(this.paramA, a);
+            Arrays.fill(this.paramB, b);
+        } else {
+            for (int k : keypoints) {
+                this.paramA[k] = a;
+                this.paramB[k] = b;
+            }
+        }
+        return this;
+    }
+
+    private void checkMethod(Method expected) {
+        if (this.method != expected) {
+            throw new IllegalStateException("Smoother method is " + this.method + ", not " + expected);
+        }
+    }
+
+    /**
+     * 平滑一个跟踪结果的关键点
+     *
+     * @param timestamp 帧的时间（秒），同一个跟踪 ID 必须递增
+     */
+    public void smooth(PosePredictResult pose, double timestamp) {
+        if (pose.getTrackId() < 0) {
+            throw new IllegalArgumentException("PosePredictResult has no track id");
+        }
+        final int slot = this.slot(pose.getTrackId(), timestamp);
+        final int n = Math.min(this.numKeypoints, pose.keypoints.length);
+        final float dt = this.dt(slot, timestamp);
+        for (int k = 0; k < n; k++) {
+            this.filter(slot, k, pose.keypoints[k], 0, dt);
+        }
+        this.lastSeen[slot] = timestamp;
+    }
+
+    /**
+     * 平滑 numKeypoints 个连续存放的 (x, y, conf)
+     *
+     * @param keypoints 关键点数组，从 offset 开始原地修改
+     * @param timestamp 帧的时间（秒），同一个跟踪 ID 必须递增
+     */
+    public void smooth(int trackId, float[] keypoints, int offset, double timestamp) {
+        final int slot = this.slot(trackId, timestamp);
+        final float dt = this.dt(slot, timestamp);
+        for (int k = 0; k < this.numKeypoints; k++) {
+            this.filter(slot, k, keypoints, offset + k * KEYPOINT_DIMS, dt);
+        }
+        this.lastSeen[slot] = timestamp;
+    }
+
+    /**
+     * 丢弃一个跟踪 ID 的状态
+     */
+    public void remove(int trackId) {
+        for (int i = 0; i < this.slots; i++) {
+            if (this.trackIds[i] == trackId) {
+                this.trackIds[i] = -1;
+                this.lastSeen[i] = Double.NEGATIVE_INFINITY;
+            }
+        }
+    }
+
+    private float dt(int slot, double timestamp) {
+        double dt = timestamp - this.lastSeen[slot];
+        return dt > 0 && !Double.isInfinite(dt) ? (float) dt : 0;
+    }
+
+    private void filter(int slot, int k, float[] kpt, int offset, float dt) {
+        final int s = (slot * this.numKeypoints + k) * KEYPOINT_STATE;
+        final int init = slot * this.numKeypoints + k;
+        final float conf = kpt[offset + 2];
+        final boolean observed = conf > this.confThreshold;
+        if (!this.initialized[init]) {
+            if (observed) {
+                this.reset(s, kpt[offset], k);
+                this.reset(s + AXIS_STATE, kpt[offset + 1], k);
+                this.initialized[init] = true;
+            }
+            return;
+        }
+        if (this.method == Method.ONE_EURO) {
+            kpt[offset] = this.oneEuro(s, kpt[offset], k, dt, observed);
+            kpt[offset + 1] = this.oneEuro(s + AXIS_STATE, kpt[offset + 1], k, dt, observed);
+        } else {
+            kpt[offset] = this.kalman(s, kpt[offset], k, dt, observed ? conf : 0);
+            kpt[offset + 1] = this.kalman(s + AXIS_STATE, kpt[offset + 1], k, dt, observed ? conf : 0);
+        }
+    }
+
+    private void reset(int s, float value, int k) {
+        this.state[s] = value;
+        this.state[s + 1] = 0;
+        this.state[s + 2] = this.paramB[k];
+        this.state[s + 3] = 0;
+        this.state[s + 4] = this.paramA[k];
+    }
+
+    private float oneEuro(int s, float value, int k, float dt, boolean observed) {
+        final float prev = this.state[s];
+        if (!observed || dt <= 0) {
+            return prev;
+        }
+        final float dx = (value - prev) / dt;
+        final float dxHat = this.state[s + 1] + alpha(this.dCutoff, dt) * (dx - this.state[s + 1]);
+        final float cutoff = this.paramA[k] + this.paramB[k] * Math.abs(dxHat);
+        final float x = prev + alpha(cutoff, dt) * (value - prev);
+        this.state[s] = x;
+        this.state[s + 1] = dxHat;
+        return x;
+    }
+
+    private static float alpha(float cutoff, float dt) {
+        final float tau = (float) (1 / (2 * Math.PI * cutoff));
+        return 1 / (1 + tau / dt);
+    }
+
+    /**
+     * 单轴匀速卡尔曼滤波，conf 为 0 时只预测
+     */
+    private float kalman(int s, float value, int k, float dt, float conf) {
+        float x = this.state[s];
+        float v = this.state[s + 1];
+        float p00 = this.state[s + 2];
+        float p01 = this.state[s + 3];
+        float p11 = this.state[s + 4];
+        if (dt > 0) {
+            // 连续白噪声加速度模型
+            final float q = this.paramA[k];
+            x += v * dt;
+            p00 += dt * (2 * p01 + dt * p11) + q * dt * dt * dt / 3;
+            p01 += dt * p11 + q * dt * dt / 2;
+            p11 += q * dt;
+        }
+        if (conf > 0) {
+            final float r = this.paramB[k] / conf;
+            final float s00 = p00 + r;
+            final float k0 = p00 / s00;
+            final float k1 = p01 / s00;
+            final float innovation = value - x;
+            x += k0 * innovation;
+            v += k1 * innovation;
+            p11 -= k1 * p01;
+            p01 *= 1 - k0;
+            p00 *= 1 - k0;
+        }
+        this.state[s] = x;
+        this.state[s + 1] = v;
+        this.state[s + 2] = p00;
+        this.state[s + 3] = p01;
+        this.state[s + 4] = p11;
+        return x;
+    }
+
+    /**
+     * 查找跟踪 ID 的槽位，没有时复用空闲的槽位或者扩容
+     */
+    private int slot(int trackId, double timestamp) {
+        int idle = -1;
+        for (int i = 0; i < this.slots; i++) {
+            if (this.trackIds[i] == trackId) {
+                return i;
+            }
+            if (idle < 0 && timestamp - this.lastSeen[i] > this.maxIdleSeconds) {
+                idle = i;
+            }
+        }
+        if (idle < 0) {
+            if (this.slots == this.trackIds.length) {
+                final int capacity = Math.max(8, this.slots * 2);
+                this.trackIds = Arrays.copyOf(this.trackIds, capacity);
+                this.lastSeen = Arrays.copyOf(this.lastSeen, capacity);
+                this.state = Arrays.copyOf(this.state, capacity * this.numKeypoints * KEYPOINT_STATE);
+                this.initialized = Arrays.copyOf(this.initialized, capacity * this.numKeypoints);
+            }
+            idle = this.slots++;
+        }
+        this.trackIds[idle] = trackId;
+        this.lastSeen[idle] = Double.NEGATIVE_INFINITY;
+        Arrays.fill(this.initialized, idle * this.numKeypoints, (idle + 1) * this.numKeypoints, false);
+        return idle;
+    }
+
+}
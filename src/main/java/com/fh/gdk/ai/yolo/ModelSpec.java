@@ -0,0 +1,254 @@
+package com.fh.gdk.ai.yolo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fh.gdk.ai.AiException;
+
+/**
+ * 模型规格，在创建 session 时根据 ultralytics 导出的 onnx 自定义元数据（imgsz、stride、kpt_shape、names、task）
+ * 以及输入输出的形状解析得到。
+ * <p>元数据缺失时按输入输出形状推断：输入尺寸取自 inputShape[2]、[3]，关键点个数取自输出的通道数。
+ * 输入的高宽为动态维度（-1）时，可以在运行时选择任意 stride 倍数的推理尺寸，输出的锚点数随之变化。</p>
+ */
+public final class ModelSpec {
+
+    public static final String TASK_POSE = "pose";
+    public static final String TASK_DETECT = "detect";
+
+    public static final int DEFAULT_STRIDE = 32;
+    public static final int DEFAULT_IMAGE_SIZE = 640;
+    // 检测头的最小步长，锚点分布在 8, 16, ..., stride 各层特征图上
+    private static final int MIN_HEAD_STRIDE = 8;
+    // names 的格式：{0: 'person', 1: 'bicycle'}
+    private static final Pattern NAME_PATTERN = Pattern.compile("(\\d+)\\s*:\\s*(?:'([^']*)'|\"([^\"]*)\")");
+    private static final Pattern INT_PATTERN = Pattern.compile("-?\\d+");
+
+    private final String task;
+    // 模型固定的 batch 大小，-1 表示动态
+    private final int batch;
+    private final int channels;
+    // 默认的推理尺寸
+    private final int height;
+    private final int width;
+    private final boolean dynamicSize;
+    private final int stride;
+    private final String[] names;
+    private final int numClasses;
+    private final int numKeypoints;
+    private final int keypointDims;
+    // 每个锚点的输出值个数：bbox(4) + 类别数 + 关键点个数 * 关键点维度
+    private final int outputChannels;
+
+    private ModelSpec(String task, int batch, int channels, int height, int width, boolean dynamicSize, int stride,
+                      String[] names, int numClasses, int numKeypoints, int keypointDims, int outputChannels) {
+        this.task = task;
+        this.batch = batch;
+        this.channels = channels;
+        this.height = height;
+        this.width = width;
+        this.dynamicSize = dynamicSize;
+        this.stride = stride;
+        this.names = names;
+        this.numClasses = numClasses;
+        this.numKeypoints = numKeypoints;
+        this.keypointDims = keypointDims;
+        this.outputChannels = outputChannels;
+    }
+
+    /**
+     * @param customMetadata onnx 自定义元数据，可以为空
+     * @param inputShape 输入形状 [N, C, H, W]，动态维度为 -1
+     * @param outputShape 输出形状 [N, 4 + 类别数 + 关键点, 锚点]，动态维度为 -1
+     */
+    public static ModelSpec parse(Map<String, String> customMetadata, long[] inputShape, long[] outputShape) {
+        if (inputShape.length != 4) {
+            throw new AiException("Unsupported onnx-input-shape: " + Arrays.toString(inputShape));
+        }
+        final String task = customMetadata.get("task");
+        final int batch = (int) inputShape[0];
+        final int channels = inputShape[1] > 0 ? (int) inputShape[1] : 3;
+        final boolean dynamicSize = inputShape[2] <= 0 || inputShape[3] <= 0;
+
+        int[] imgsz = parseInts(customMetadata.get("imgsz"));
+        int height;
+        int width;
+        if (!dynamicSize) {
+            height = (int) inputShape[2];
+            width = (int) inputShape[3];
+        } else if (imgsz.length >= 2) {
+            height = imgsz[0];
+            width = imgsz[1];
+        } else if (imgsz.length == 1) {
+            height = imgsz[0];
+            width = imgsz[0];
+        } else {
+            height = DEFAULT_IMAGE_SIZE;
+            width = DEFAULT_IMAGE_SIZE;
+        }
+
+        int[] strides = parseInts(customMetadata.get("stride"));
+        final int stride = strides.length > 0 && strides[0] > 0 ? strides[0] : DEFAULT_STRIDE;
+
+        String[] names = parseNames(customMetadata.get("names"));
+        final int modelChannels = outputShape.length == 3 && outputShape[1] > 0 ? (int) outputShape[1] : -1;
+        int numClasses = names.length > 0 ? names.length : 1;
+        int numKeypoints = 0;
+        int keypointDims = 3;
+        int[] kptShape = parseInts(customMetadata.get("kpt_shape"));
+        if (kptShape.length == 2) {
+            numKeypoints = kptShape[0];
+            keypointDims = kptShape[1];
+        } else if (modelChannels > 0 && names.length == 0) {
+            // 没有元数据时按输出的通道数推断：姿态模型为单类别 + n 个 (x, y, conf)，否则视为检测模型
+            boolean pose = !TASK_DETECT.equals(task) && modelChannels > 5 && (modelChannels - 5) % keypointDims == 0;
+            if (pose) {
+                numKeypoints = (modelChannels - 5) / keypointDims;
+            } else {
+                numClasses = modelChannels - 4;
+            }
+        } else if (modelChannels > 0 && TASK_POSE.equals(task)) {
+            numKeypoints = (modelChannels - 4 - numClasses) / keypointDims;
+        }
+        final int outputChannels = modelChannels > 0 ? modelChannels : 4 + numClasses + numKeypoints * keypointDims;
+        if (outputChannels != 4 + numClasses + numKeypoints * keypointDims) {
+            throw new AiException("Output channels " + outputChannels + " do not match " + numClasses
+                    + " classes and kpt_shape [" + numKeypoints + ", " + keypointDims + "]");
+        }
+
+        return new ModelSpec(task, batch, channels, height, width, dynamicSize, stride,
+                names, numClasses, numKeypoints, keypointDims, outputChannels);
+    }
+
+    private static int[] parseInts(String value) {
+        if (value == null) {
+            return new int[0];
+        }
+        List<Integer> values = new ArrayList<>();
+        Matcher matcher = INT_PATTERN.matcher(value);
+        while (matcher.find()) {
+            values.add(Integer.parseInt(matcher.group()));
+        }
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    private static String[] parseNames(String value) {
+        if (value == null) {
+            return new String[0];
+        }
+        List<String> names = new ArrayList<>();
+        Matcher matcher = NAME_PATTERN.matcher(value);
+        while (matcher.find()) {
+            int id = Integer.parseInt(matcher.group(1));
+            while (names.size() <= id) {
+                names.add(null);
+            }
+            names.set(id, matcher.group(2) != null ? matcher.group(2) : matcher.group(3));
+        }
+        return names.toArray(new String[0]);
+    }
+
+    /**
+     * 指定推理尺寸下的锚点数，例如 640x640 为 80*80 + 40*40 + 20*20 = 8400
+     */
+    public int anchors(int width, int height) {
+        int anchors = 0;
+        for (int s = MIN_HEAD_STRIDE; s <= this.stride; s *= 2) {
+            anchors += (height / s) * (width / s);
+        }
+        return anchors;
+    }
+
+    /**
+     * 检查推理尺寸是否可用：必须是 stride 的倍数，固定尺寸的模型只能使用模型的尺寸
+     */
+    public void checkInputSize(int width, int height) {
+        if (width <= 0 || height <= 0 || width % this.stride != 0 || height % this.stride != 0) {
+            throw new AiException("Input size " + width + "x" + height + " must be a positive multiple of stride " + this.stride);
+        }
+        if (!this.dynamicSize && (width != this.width || height != this.height)) {
+            throw new AiException("Model input size is fixed to " + this.width + "x" + this.height);
+        }
+    }
+
+    /**
+     * 任务类型，例如 pose、detect，元数据中没有时为 null
+     */
+    public String getTask() {
+        return task;
+    }
+
+    /**
+     * 是否为姿态模型，没有任务元数据但有关键点时也视为姿态模型
+     */
+    public boolean isPose() {
+        return this.task == null ? this.numKeypoints > 0 : TASK_POSE.equals(this.task);
+    }
+
+    public int getBatch() {
+        return batch;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public boolean isDynamicSize() {
+        return dynamicSize;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    public int getNumClasses() {
+        return numClasses;
+    }
+
+    /**
+     * 类别名称，没有元数据时返回类别 ID
+     */
+    public String getName(int classId) {
+        return classId >= 0 && classId < this.names.length && this.names[classId] != null
+                ? this.names[classId] : String.valueOf(classId);
+    }
+
+    public int getNumKeypoints() {
+        return numKeypoints;
+    }
+
+    /**
+     * 每个关键点的值个数：3 为 (x, y, conf)，2 为 (x, y)
+     */
+    public int getKeypointDims() {
+        return keypointDims;
+    }
+
+    public int getOutputChannels() {
+        return outputChannels;
+    }
+
+    @Override
+    public String toString() {
+        return "ModelSpec{task=" + task + ", batch=" + batch + ", size=" + width + "x" + height
+                + (dynamicSize ? " (dynamic)" : "") + ", stride=" + stride + ", classes=" + getNumClasses()
+                + ", kpt_shape=[" + numKeypoints + ", " + keypointDims + "]}";
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.fh.gdk.ai.yolo;
+
+import java.util.Arrays;
+
+/**
+ * 解码后、非极大值抑制前的候选姿态，以并行的原始数组保存，在多次推理之间复用。
+ * <p>只有最终保留下来的候选才会创建 {@link PosePredictResult}。</p>
+ */
+class PoseCandidates {
+
+    // 每个关键点 (x, y, conf)
+    static final int KEYPOINT_DIMS = 3;
+
+    // 边界框 [x_min, y_min, x_max, y_max]，每 4 个值一个
+    float[] boxes = new float[0];
+    float[] scores = new float[0];
+    int[] classIds = new int[0];
+    // 关键点，每个候选 numKeypoints * 3 个值
+    float[] keypoints = new float[0];
+    // 非极大值抑制保留的候选下标
+    int[] keep = new int[0];
+
+    int numKeypoints;
+    int count;
+
+    /**
+     * 清空候选，准备解码一张新的图片
+     */
+    void reset(int numKeypoints) {
+        this.numKeypoints = numKeypoints;
+        this.count = 0;
+        if (this.keypoints.length < this.scores.length * numKeypoints * KEYPOINT_DIMS) {
+            this.keypoints = new float[this.scores.length * numKeypoints * KEYPOINT_DIMS];
+        }
+    }
+
+    /**
+     * 追加一个候选并返回其下标，调用方随后写入各数组
+     */
+    int add() {
+        final int index = this.count;
+        if (index == this.scores.length) {
+            this.grow(Math.max(64, index * 2));
+        }
+        this.count++;
+        return index;
+    }
+
+    /**
+     * 根据候选下标创建结果
+     */
+    PosePredictResult toResult(int index, ImageMetaData imgMetaData) {
+        float[] bbox = Arrays.copyOfRange(this.boxes, index * 4, index * 4 + 4);
+        float[][] kpts = new float[this.numKeypoints][];
+        int k = index * this.numKeypoints * KEYPOINT_DIMS;
+        for (int i = 0; i < this.numKeypoints; i++, k += KEYPOINT_DIMS) {
+            kpts[i] = Arrays.copyOfRange(this.keypoints, k, k + KEYPOINT_DIMS);
+        }
+        return new PosePredictResult(bbox, kpts, this.classIds[index], this.scores[index]).setImageMetaData(imgMetaData);
+    }
+
+    private void grow(int capacity) {
+        this.boxes = Arrays.copyOf(this.boxes, capacity * 4);
+        this.scores = Arrays.copyOf(this.scores, capacity);
+        this.classIds = Arrays.copyOf(this.classIds, capacity);
+        this.keypoints = Arrays.copyOf(this.keypoints, capacity * this.numKeypoints * KEYPOINT_DIMS);
+        this.keep = new int[capacity];
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.fh.gdk.ai.yolo;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fh.gdk.ai.util.NmsEngine;
+import com.fh.gdk.ai.util.Suppression;
+
+/**
+ * Pose / 检测模型输出解码：直接在 [n, 8400] 布局的输出上过滤低置信度候选并进行非极大值抑制。
+ * <p>候选保存在复用的原始数组中，只为最终保留的候选创建 {@link PosePredictResult} 或 {@link Detection}。
+ * 同一个实例不能被多个线程同时使用。</p>
+ */
+public class PoseDecoder {
+
+    // Pose 输出的前 5 个值为 bbox(4) + conf(1)，其后每个关键点 3 个值 (x, y, conf)
+    private static final int SKIP_POS = 5;
+
+    private final PoseCandidates candidates = new PoseCandidates();
+    private final NmsEngine nms = new NmsEngine();
+    // 每个锚点的最高置信度与类别，以及逐行读取类别置信度的缓冲区
+    private float[] bestScores = new float[0];
+    private int[] bestClasses = new int[0];
+    private float[] row = new float[0];
+
+    /**
+     * 解析单张图片的模型输出 [n, 8400]，过滤低置信度并进行非极大值抑制。
+     * <p>先只扫描连续存放的置信度行，只有置信度超过阈值的锚点才读取其完整的 n 个值。</p>
+     *
+     * @param outputData 模型输出
+     * @param offset 当前图片的输出在 outputData 中的起始位置
+     * @param channels 每个锚点的值个数 n，(bbox.x, bbox.y, bbox.w, bbox.h, conf, ...)
+     * @param anchors 锚点个数
+     * @param topK 非极大值抑制前最多保留的候选框数量，<=0 表示不限制
+     */
+    public List<PosePredictResult> decode(FloatBuffer outputData, int offset, int channels, int anchors,
+                                          ImageMetaData imgMetaData, float confThreshold, Suppression suppression, int topK) {
+        final int kptsNum = (channels - SKIP_POS) / PoseCandidates.KEYPOINT_DIMS;
+        return this.decode(outputData, offset, anchors, 1, kptsNum, PoseCandidates.KEYPOINT_DIMS,
+                imgMetaData, confThreshold, suppression, topK);
+    }
+
+    /**
+     * 按 {@link ModelSpec} 描述的布局解析单张图片的模型输出 [4 + 类别数 + 关键点个数 * 关键点维度, 锚点]。
+     * <p>多类别时每个锚点取置信度最高的类别，并只在同一类别之间进行非极大值抑制；
+     * 关键点维度为 2 (x, y) 时关键点的置信度为 1。</p>
+     */
+    public List<PosePredictResult> decode(FloatBuffer outputData, int offset, int anchors, int numClasses,
+                                          int numKeypoints, int keypointDims, ImageMetaData imgMetaData,
+                                          float confThreshold, Suppression suppression, int topK) {
+        final int kept = this.collect(outputData, offset, anchors, numClasses, numKeypoints, keypointDims,
+                confThreshold, suppression, topK);
+        PoseCandidates candidates = this.candidates;
+        List<PosePredictResult> poseResults = new ArrayList<>(kept);
+        for (int i = 0; i < kept; i++) {
+            poseResults.add(candidates.toResult(candidates.keep[i], imgMetaData));
+        }
+        return poseResults;
+    }
+
+    /**
+     * 解析单张图片的检测输出 [4 + 类别数, 锚点]，只在同一类别之间进行非极大值抑制。
+     * <p>Pose 模型的输出同样可以按检测结果解析，其后的关键点通道会被忽略。</p>
+     *
+     * @param spec 模型规格，提供类别数与类别名称
+     */
+    public List<Detection> decodeDetections(FloatBuffer outputData, int offset, int anchors, ModelSpec spec,
+                                            ImageMetaData imgMetaData, float confThreshold,
+                                            Suppression suppression, int topK) {
+        final int kept = this.collect(outputData, offset, anchors, spec.getNumClasses(), 0, 0,
+                confThreshold, suppression, topK);
+        PoseCandidates candidates = this.candidates;
+        List<Detection> detections = new ArrayList<>(kept);
+        for (int i = 0; i < kept; i++) {
+            final int k = candidates.keep[i];
+            final int classId = candidates.classIds[k];
+            detections.add(new Detection(spec.getName(classId), classId,
+                    Arrays.copyOfRange(candidates.boxes, k * 4, k * 4 + 4), candidates.scores[k])
+                    .setImageMetaData(imgMetaData));
+        }
+        return detections;
+    }
+
+    /**
+     * 过滤低置信度的锚点写入候选数组，并进行非极大值抑制
+     *
+     * @return 保留的候选个数，下标见 candidates.keep
+     */
+    private int collect(FloatBuffer outputData, int offset, int anchors, int numClasses, int numKeypoints,
+                        int keypointDims, float confThreshold, Suppression suppression, int topK) {
+        PoseCandidates candidates = this.candidates;
+        candidates.reset(numKeypoints);
+        final int kptsValues = numKeypoints * PoseCandidates.KEYPOINT_DIMS;
+
+        // 每个锚点置信度最高的类别：按类别逐行比较连续存放的置信度，而不是逐个锚点跨行读取
+        this.argmax(outputData, offset + 4 * anchors, anchors, numClasses);
+        final float[] bestScores = this.bestScores;
+        final int[] bestClasses = this.bestClasses;
+
+        // 先使用预置的置信度过滤掉一批低置信度的
+        final int kptOffset = offset + (4 + numClasses) * anchors;
+        for (int i = 0; i < anchors; i++) {
+            final float score = bestScores[i];
+            if (score <= confThreshold) {
+                continue;
+            }
+            final int k = candidates.add();
+            // [box中心点x, box中心点y, box宽度, box高度] -> [x_min, y_min, x_max, y_max]
+            final float cx = outputData.get(offset + i);
+            final float cy = outputData.get(offset + anchors + i);
+            final float w = outputData.get(offset + 2 * anchors + i) * 0.5f;
+            final float h = outputData.get(offset + 3 * anchors + i) * 0.5f;
+            final float[] boxes = candidates.boxes;
+            boxes[k * 4] = cx - w;
+            boxes[k * 4 + 1] = cy - h;
+            boxes[k * 4 + 2] = cx + w;
+            boxes[k * 4 + 3] = cy + h;
+            candidates.scores[k] = score;
+            candidates.classIds[k] = numClasses > 1 ? bestClasses[i] : 0;
+
+            final float[] kpts = candidates.keypoints;
+            if (keypointDims == PoseCandidates.KEYPOINT_DIMS) {
+                int src = kptOffset + i;
+                for (int v = 0, dst = k * kptsValues; v < kptsValues; v++, dst++, src += anchors) {
+                    kpts[dst] = outputData.get(src);
+                }
+            } else {
+                int src = kptOffset + i;
+                for (int p = 0, dst = k * kptsValues; p < numKeypoints; p++, dst += PoseCandidates.KEYPOINT_DIMS) {
+                    kpts[dst] = outputData.get(src);
+                    kpts[dst + 1] = outputData.get(src + anchors);
+                    kpts[dst + 2] = 1f;
+                    src += keypointDims * anchors;
+                }
+            }
+        }
+
+        // 对结果进行非极大值抑制：从剩下的一组存在重叠的边界框中选择最佳的边界框
+        return this.nms.run(candidates.boxes, candidates.scores, candidates.classIds, candidates.keypoints,
+                numKeypoints, candidates.count, topK, numClasses > 1, suppression, candidates.keep);
+    }
+
+    /**
+     * 计算每个锚点的最高置信度及其类别，写入 bestScores、bestClasses（单类别时不写 bestClasses）。
+     * <p>每个类别的置信度整行批量读入 row，比较循环只访问连续的原始数组，便于 JIT 展开和向量化。</p>
+     */
+    private void argmax(FloatBuffer outputData, int confOffset, int anchors, int numClasses) {
+        if (this.bestScores.length < anchors) {
+            this.bestScores = new float[anchors];
+            this.bestClasses = new int[anchors];
+            this.row = new float[anchors];
+        }
+        final float[] bestScores = this.bestScores;
+        final int[] bestClasses = this.bestClasses;
+        final float[] row = this.row;
+
+        FloatBuffer data = outputData.duplicate();
+        ((Buffer) data).position(confOffset);
+        data.get(bestScores, 0, anchors);
+        if (numClasses <= 1) {
+            return;
+        }
+        Arrays.fill(bestClasses, 0, anchors, 0);
+        for (int c = 1; c < numClasses; c++) {
+            data.get(row, 0, anchors);
+            for (int i = 0; i < anchors; i++) {
+                if (row[i] > bestScores[i]) {
+                    bestScores[i] = row[i];
+                    bestClasses[i] = c;
+                }
+            }
+        }
+    }
+
+}
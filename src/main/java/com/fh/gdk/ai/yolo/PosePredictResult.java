@@ -18,6 +18,9 @@ public class PosePredictResult {
 
     private ImageMetaData imageMetaData;
 
+    // 跟踪 ID，由 PoseTracker 分配，-1 表示未跟踪
+    private int trackId = -1;
+
     public PosePredictResult(float[] tensorResult, int classId) {
         // 前5个值含义：[box中心点x, box中心点y, box宽度, box高度，置信度分数]
         float cx = tensorResult[0];
@@ -49,6 +52,17 @@ public class PosePredictResult {
         }
     }
 
+    /**
+     * @param bbox 边界框 [x_min, y_min, x_max, y_max]
+     * @param keypoints 关键点，每个关键点包含 (x, y, confidence)
+     */
+    public PosePredictResult(float[] bbox, float[][] keypoints, int classId, float score) {
+        this.bbox = bbox;
+        this.keypoints = keypoints;
+        this.classId = classId;
+        this.score = score;
+    }
+
     public ImageMetaData getImageMetaData() {
         return imageMetaData;
     }
@@ -58,6 +72,15 @@ public class PosePredictResult {
         return this;
     }
 
+    public int getTrackId() {
+        return trackId;
+    }
+
+    public PosePredictResult setTrackId(int trackId) {
+        this.trackId = trackId;
+        return this;
+    }
+
     public float getX0() {
         return this.bbox[0];
     }
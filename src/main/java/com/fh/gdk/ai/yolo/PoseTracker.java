@@ -0,0 +1,518 @@
+package com.fh.gdk.ai.yolo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fh.gdk.ai.util.Hungarian;
+import com.fh.gdk.ai.util.Suppression;
+
+/**
+ * 多人姿态跟踪，为连续帧中的同一个人分配稳定的跟踪 ID（{@link PosePredictResult#getTrackId()}）。
+ * <ul>
+ *     <li>每个跟踪目标的框 (cx, cy, w, h) 使用匀速运动的卡尔曼滤波预测和更新</li>
+ *     <li>关联代价为 1 - (IOU + OKS) / 2，使用匈牙利算法求最优匹配。
+ *     与 ByteTrack 一样，高置信度的检测结果先与所有目标匹配，低置信度的结果再与上一帧还在跟踪的目标按 IOU 匹配，
+ *     被遮挡而置信度下降的人不会丢失跟踪</li>
+ *     <li>匹配后的关键点与预测的关键点按权重平滑</li>
+ *     <li>没有检测结果的帧可以调用 {@link #predict()} 按运动模型外推，配合隔帧推理降低推理次数</li>
+ * </ul>
+ * <p>内部状态保存在基本类型数组中，每帧只分配返回的结果对象。
+ * 坐标与输入的结果相同（模型输入坐标），要求同一个跟踪器处理的帧尺寸相同。不是线程安全的。</p>
+ */
+public class PoseTracker {
+
+    private static final int KEYPOINT_DIMS = 3;
+    // 状态：cx, cy, w, h 以及各自的速度
+    private static final int STATE_DIMS = 8;
+    // 4 个坐标各自独立，每个坐标的协方差矩阵为 2x2 对称矩阵 (P00, P01, P11)
+    private static final int COV_DIMS = 12;
+    // 与 DeepSORT 相同，噪声标准差与框的高度成正比
+    private static final float STD_POSITION = 1f / 20;
+    private static final float STD_VELOCITY = 1f / 160;
+    private static final float INFEASIBLE = 1e6f;
+
+    private final int numKeypoints;
+    private final float[] keypointSigmas;
+
+    private float highScoreThreshold = 0.5f;
+    private float matchThreshold = 0.3f;
+    private float lowScoreMatchThreshold = 0.5f;
+    private float keypointConfThreshold = Suppression.OKS_KEYPOINT_CONF_DEFAULT;
+    private float keypointSmoothing = 0.6f;
+    private int maxAge = 30;
+    private int minHits = 3;
+
+    // 跟踪目标，按下标对应
+    private int count;
+    private int nextId = 1;
+    private long updates;
+    private int[] ids = new int[0];
+    private int[] hits = new int[0];
+    // 距离上一次匹配经过的帧数
+    private int[] age = new int[0];
+    private float[] scores = new float[0];
+    private float[] state = new float[0];
+    private float[] cov = new float[0];
+    private float[] keypoints = new float[0];
+    // 预测后的框 [x_min, y_min, x_max, y_max]
+    private float[] boxes = new float[0];
+
+    // 当前帧的检测结果
+    private int detCount;
+    private float[] detBoxes = new float[0];
+    private float[] detScores = new float[0];
+    private float[] detKeypoints = new float[0];
+    private ImageMetaData imageMetaData;
+
+    // 关联
+    private final Hungarian hungarian = new Hungarian();
+    private float[] cost = new float[0];
+    private int[] assignment = new int[0];
+    private int[] rowIndex = new int[0];
+    private int[] colIndex = new int[0];
+    private int[] trackMatch = new int[0];
+    private boolean[] detMatched = new boolean[0];
+
+    /**
+     * @param numKeypoints 每个人的关键点个数，COCO 17 个关键点时使用 COCO 的 OKS sigma
+     */
+    public PoseTracker(int numKeypoints) {
+        this.numKeypoints = numKeypoints;
+        this.keypointSigmas = numKeypoints == Suppression.COCO_KEYPOINT_SIGMAS.length ? Suppression.COCO_KEYPOINT_SIGMAS : null;
+    }
+
+    /**
+     * 置信度不低于该值的检测结果参与第一轮匹配，并且未匹配时创建新的跟踪目标
+     */
+    public PoseTracker setHighScoreThreshold(float highScoreThreshold) {
+        this.highScoreThreshold = highScoreThreshold;
+        return this;
+    }
+
+    /**
+     * 第一轮匹配的最低相似度 (IOU + OKS) / 2
+     */
+    public PoseTracker setMatchThreshold(float matchThreshold) {
+        this.matchThreshold = matchThreshold;
+        return this;
+    }
+
+    /**
+     * 第二轮低置信度检测结果匹配的最低 IOU
+     */
+    public PoseTracker setLowScoreMatchThreshold(float lowScoreMatchThreshold) {
+        this.lowScoreMatchThreshold = lowScoreMatchThreshold;
+        return this;
+    }
+
+    /**
+     * 计算 OKS 和平滑时只使用置信度超过该值的关键点
+     */
+    public PoseTracker setKeypointConfThreshold(float keypointConfThreshold) {
+        this.keypointConfThreshold = keypointConfThreshold;
+        return this;
+    }
+
+    /**
+     * 关键点观测值的权重，1 表示不平滑，越小越平滑但延迟越大
+     */
+    public PoseTracker setKeypointSmoothing(float keypointSmoothing) {
+        this.keypointSmoothing = keypointSmoothing;
+        return this;
+    }
+
+    /**
+     * 连续多少帧没有匹配后删除跟踪目标
+     */
+    public PoseTracker setMaxAge(int maxAge) {
+        this.maxAge = maxAge;
+        return this;
+    }
+
+    /**
+     * 匹配多少次后才输出该目标，过滤偶发的误检
+     */
+    public PoseTracker setMinHits(int minHits) {
+        this.minHits = minHits;
+        return this;
+    }
+
+    /**
+     * 用一帧的检测结果更新跟踪状态
+     *
+     * @param detections 该帧的检测结果，通常为 {@link Yolov8#predictPose(org.opencv.core.Mat)} 的返回值
+     * @return 本帧匹配上的已确认目标，带跟踪 ID
+     */
+    public List<PosePredictResult> update(List<PosePredictResult> detections) {
+        this.loadDetections(detections);
+        this.predictTracks();
+        this.updates++;
+
+        Arrays.fill(this.trackMatch, 0, this.count, -1);
+        Arrays.fill(this.detMatched, 0, this.detCount, false);
+        // 第一轮：高置信度的检测结果与所有目标按 IOU 和 OKS 匹配
+        this.associate(true);
+        // 第二轮：低置信度的检测结果与上一帧还匹配上的目标按 IOU 匹配
+        this.associate(false);
+
+        final int tracks = this.count;
+        for (int i = 0; i < tracks; i++) {
+            if (this.trackMatch[i] >= 0) {
+                this.correct(i, this.trackMatch[i]);
+            }
+        }
+        for (int d = 0; d < this.detCount; d++) {
+            if (!this.detMatched[d] && this.detScores[d] >= this.highScoreThreshold) {
+                this.create(d);
+            }
+        }
+        this.prune(true);
+        return this.results(true);
+    }
+
+    /**
+     * 没有检测结果的帧，按运动模型外推所有已确认的目标
+     */
+    public List<PosePredictResult> predict() {
+        this.predictTracks();
+        this.prune(false);
+        return this.results(false);
+    }
+
+    /**
+     * 清除所有跟踪目标
+     */
+    public void reset() {
+        this.count = 0;
+        this.updates = 0;
+    }
+
+    /**
+     * 当前跟踪中的目标数（包括未确认的）
+     */
+    public int getTrackCount() {
+        return this.count;
+    }
+
+    private void loadDetections(List<PosePredictResult> detections) {
+        final int n = detections.size();
+        final int kptValues = this.numKeypoints * KEYPOINT_DIMS;
+        if (this.detScores.length < n) {
+            int capacity = Math.max(n, this.detScores.length * 2);
+            this.detBoxes = new float[capacity * 4];
+            this.detScores = new float[capacity];
+            this.detKeypoints = new float[capacity * kptValues];
+            this.detMatched = new boolean[capacity];
+        }
+        for (int d = 0; d < n; d++) {
+            PosePredictResult detection = detections.get(d);
+            if (detection.keypoints.length != this.numKeypoints) {
+                throw new IllegalArgumentException("Expected " + this.numKeypoints + " keypoints, got " + detection.keypoints.length);
+            }
+            System.arraycopy(detection.bbox, 0, this.detBoxes, d * 4, 4);
+            this.detScores[d] = detection.score;
+            for (int k = 0; k < this.numKeypoints; k++) {
+                System.arraycopy(detection.keypoints[k], 0, this.detKeypoints, d * kptValues + k * KEYPOINT_DIMS, KEYPOINT_DIMS);
+            }
+            if (detection.getImageMetaData() != null) {
+                this.imageMetaData = detection.getImageMetaData();
+            }
+        }
+        this.detCount = n;
+    }
+
+    /**
+     * 卡尔曼预测，关键点随框的中心平移
+     */
+    private void predictTracks() {
+        final int kptValues = this.numKeypoints * KEYPOINT_DIMS;
+        for (int i = 0; i < this.count; i++) {
+            final int s = i * STATE_DIMS;
+            final int p = i * COV_DIMS;
+            final float h = Math.max(this.state[s + 3], 1);
+            final float qPos = sq(STD_POSITION * h);
+            final float qVel = sq(STD_VELOCITY * h);
+            for (int c = 0; c < 4; c++) {
+                this.state[s + c] += this.state[s + 4 + c];
+                final int pc = p + c * 3;
+                float p00 = this.cov[pc];
+                float p01 = this.cov[pc + 1];
+                float p11 = this.cov[pc + 2];
+                this.cov[pc] = p00 + 2 * p01 + p11 + qPos;
+                this.cov[pc + 1] = p01 + p11;
+                this.cov[pc + 2] = p11 + qVel;
+            }
+            this.state[s + 2] = Math.max(this.state[s + 2], 1);
+            this.state[s + 3] = Math.max(this.state[s + 3], 1);
+
+            final float vx = this.state[s + 4];
+            final float vy = this.state[s + 5];
+            for (int k = i * kptValues, end = k + kptValues; k < end; k += KEYPOINT_DIMS) {
+                this.keypoints[k] += vx;
+                this.keypoints[k + 1] += vy;
+            }
+            this.age[i]++;
+            this.updateBox(i);
+        }
+    }
+
+    private void associate(boolean highScore) {
+        int rows = 0;
+        for (int i = 0; i < this.count; i++) {
+            // 第二轮只使用上一帧匹配上（本帧预测后 age 为 1）且本轮尚未匹配的目标
+            if (highScore || (this.trackMatch[i] < 0 && this.age[i] == 1)) {
+                this.rowIndex[rows++] = i;
+            }
+        }
+        this.ensureColumnCapacity(this.detCount);
+        int cols = 0;
+        for (int d = 0; d < this.detCount; d++) {
+            if (!this.detMatched[d] && (this.detScores[d] >= this.highScoreThreshold) == highScore) {
+                this.colIndex[cols++] = d;
+            }
+        }
+        if (rows == 0 || cols == 0) {
+            return;
+        }
+
+        if (this.cost.length < rows * cols) {
+            this.cost = new float[Math.max(rows * cols, this.cost.length * 2)];
+        }
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                final int i = this.rowIndex[r];
+                final int d = this.colIndex[c];
+                float similarity;
+                float threshold;
+                if (highScore) {
+                    similarity = this.similarity(i, d);
+                    threshold = this.matchThreshold;
+                } else {
+                    similarity = this.iou(i, d);
+                    threshold = this.lowScoreMatchThreshold;
+                }
+                this.cost[r * cols + c] = similarity >= threshold ? 1 - similarity : INFEASIBLE;
+            }
+        }
+        this.hungarian.solve(this.cost, rows, cols, this.assignment);
+        for (int r = 0; r < rows; r++) {
+            final int c = this.assignment[r];
+            if (c >= 0 && this.cost[r * cols + c] < INFEASIBLE) {
+                this.trackMatch[this.rowIndex[r]] = this.colIndex[c];
+                this.detMatched[this.colIndex[c]] = true;
+            }
+        }
+    }
+
+    private float similarity(int track, int det) {
+        final float iou = this.iou(track, det);
+        final float oks = this.oks(track, det);
+        return oks >= 0 ? (iou + oks) / 2 : iou;
+    }
+
+    private float iou(int track, int det) {
+        final int t = track * 4;
+        final int d = det * 4;
+        final float w = Math.min(this.boxes[t + 2], this.detBoxes[d + 2]) - Math.max(this.boxes[t], this.detBoxes[d]);
+        final float h = Math.min(this.boxes[t + 3], this.detBoxes[d + 3]) - Math.max(this.boxes[t + 1], this.detBoxes[d + 1]);
+        if (w <= 0 || h <= 0) {
+            return 0;
+        }
+        final float inter = w * h;
+        final float union = (this.boxes[t + 2] - this.boxes[t]) * (this.boxes[t + 3] - this.boxes[t + 1])
+                + (this.detBoxes[d + 2] - this.detBoxes[d]) * (this.detBoxes[d + 3] - this.detBoxes[d + 1]) - inter;
+        return union > 0 ? inter / union : 0;
+    }
+
+    /**
+     * 以检测框的面积作为尺度计算关键点相似度，没有两者都可见的关键点时返回 -1
+     */
+    private float oks(int track, int det) {
+        final int d = det * 4;
+        final float area = Math.max((this.detBoxes[d + 2] - this.detBoxes[d]) * (this.detBoxes[d + 3] - this.detBoxes[d + 1]), 1e-6f);
+        final float uniformVar = 4.0f / (this.numKeypoints * this.numKeypoints);
+        int kt = track * this.numKeypoints * KEYPOINT_DIMS;
+        int kd = det * this.numKeypoints * KEYPOINT_DIMS;
+        float sum = 0;
+        int visible = 0;
+        for (int k = 0; k < this.numKeypoints; k++, kt += KEYPOINT_DIMS, kd += KEYPOINT_DIMS) {
+            if (this.keypoints[kt + 2] <= this.keypointConfThreshold || this.detKeypoints[kd + 2] <= this.keypointConfThreshold) {
+                continue;
+            }
+            float dx = this.keypoints[kt] - this.detKeypoints[kd];
+            float dy = this.keypoints[kt + 1] - this.detKeypoints[kd + 1];
+            float var = this.keypointSigmas != null ? 4 * sq(this.keypointSigmas[k]) : uniformVar;
+            sum += (float) Math.exp(-(dx * dx + dy * dy) / (2 * area * var));
+            visible++;
+        }
+        return visible > 0 ? sum / visible : -1;
+    }
+
+    /**
+     * 卡尔曼更新，并平滑关键点
+     */
+    private void correct(int track, int det) {
+        final int s = track * STATE_DIMS;
+        final int p = track * COV_DIMS;
+        final int d = det * 4;
+        final float r = sq(STD_POSITION * Math.max(this.state[s + 3], 1));
+        final float w = this.detBoxes[d + 2] - this.detBoxes[d];
+        final float h = this.detBoxes[d + 3] - this.detBoxes[d + 1];
+        final float cx = this.detBoxes[d] + w / 2;
+        final float cy = this.detBoxes[d + 1] + h / 2;
+        for (int c = 0; c < 4; c++) {
+            final float z = c == 0 ? cx : c == 1 ? cy : c == 2 ? w : h;
+            final int pc = p + c * 3;
+            final float p00 = this.cov[pc];
+            final float p01 = this.cov[pc + 1];
+            final float s00 = p00 + r;
+            final float k0 = p00 / s00;
+            final float k1 = p01 / s00;
+            final float innovation = z - this.state[s + c];
+            this.state[s + c] += k0 * innovation;
+            this.state[s + 4 + c] += k1 * innovation;
+            this.cov[pc] = (1 - k0) * p00;
+            this.cov[pc + 1] = (1 - k0) * p01;
+            this.cov[pc + 2] -= k1 * p01;
+        }
+
+        final int kptValues = this.numKeypoints * KEYPOINT_DIMS;
+        final float alpha = this.keypointSmoothing;
+        for (int kt = track * kptValues, kd = det * kptValues, end = kt + kptValues; kt < end; kt += KEYPOINT_DIMS, kd += KEYPOINT_DIMS) {
+            if (this.keypoints[kt + 2] > this.keypointConfThreshold && this.detKeypoints[kd + 2] > this.keypointConfThreshold) {
+                this.keypoints[kt] += alpha * (this.detKeypoints[kd] - this.keypoints[kt]);
+                this.keypoints[kt + 1] += alpha * (this.detKeypoints[kd + 1] - this.keypoints[kt + 1]);
+            } else {
+                this.keypoints[kt] = this.detKeypoints[kd];
+                this.keypoints[kt + 1] = this.detKeypoints[kd + 1];
+            }
+            this.keypoints[kt + 2] = this.detKeypoints[kd + 2];
+        }
+
+        this.scores[track] = this.detScores[det];
+        this.hits[track]++;
+        this.age[track] = 0;
+        this.updateBox(track);
+    }
+
+    private void create(int det) {
+        this.ensureTrackCapacity(this.count + 1);
+        final int i = this.count++;
+        final int s = i * STATE_DIMS;
+        final int p = i * COV_DIMS;
+        final int d = det * 4;
+        final float w = this.detBoxes[d + 2] - this.detBoxes[d];
+        final float h = this.detBoxes[d + 3] - this.detBoxes[d + 1];
+        this.state[s] = this.detBoxes[d] + w / 2;
+        this.state[s + 1] = this.detBoxes[d + 1] + h / 2;
+        this.state[s + 2] = w;
+        this.state[s + 3] = h;
+        Arrays.fill(this.state, s + 4, s + STATE_DIMS, 0);
+        final float h1 = Math.max(h, 1);
+        for (int c = 0; c < 4; c++) {
+            this.cov[p + c * 3] = sq(2 * STD_POSITION * h1);
+            this.cov[p + c * 3 + 1] = 0;
+            this.cov[p + c * 3 + 2] = sq(10 * STD_VELOCITY * h1);
+        }
+        final int kptValues = this.numKeypoints * KEYPOINT_DIMS;
+        System.arraycopy(this.detKeypoints, det * kptValues, this.keypoints, i * kptValues, kptValues);
+        this.ids[i] = this.nextId++;
+        this.scores[i] = this.detScores[det];
+        this.hits[i] = 1;
+        this.age[i] = 0;
+        this.trackMatch[i] = det;
+        this.updateBox(i);
+    }
+
+    /**
+     * 删除超过 maxAge 帧没有匹配的目标，以及还未确认就在更新时丢失的目标
+     */
+    private void prune(boolean updated) {
+        int n = 0;
+        for (int i = 0; i < this.count; i++) {
+            boolean lostTentative = updated && this.hits[i] < this.minHits && this.age[i] > 0;
+            if (this.age[i] > this.maxAge || lostTentative) {
+                continue;
+            }
+            if (n != i) {
+                this.move(i, n);
+            }
+            n++;
+        }
+        this.count = n;
+    }
+
+    private List<PosePredictResult> results(boolean matchedOnly) {
+        List<PosePredictResult> results = new ArrayList<>(this.count);
+        final int kptValues = this.numKeypoints * KEYPOINT_DIMS;
+        for (int i = 0; i < this.count; i++) {
+            boolean confirmed = this.hits[i] >= this.minHits || this.updates <= this.minHits;
+            if (!confirmed || (matchedOnly && this.age[i] != 0)) {
+                continue;
+            }
+            float[][] kpts = new float[this.numKeypoints][];
+            for (int k = 0; k < this.numKeypoints; k++) {
+                kpts[k] = Arrays.copyOfRange(this.keypoints, i * kptValues + k * KEYPOINT_DIMS, i * kptValues + (k + 1) * KEYPOINT_DIMS);
+            }
+            float[] bbox = Arrays.copyOfRange(this.boxes, i * 4, i * 4 + 4);
+            results.add(new PosePredictResult(bbox, kpts, 0, this.scores[i])
+                    .setImageMetaData(this.imageMetaData)
+                    .setTrackId(this.ids[i]));
+        }
+        return results;
+    }
+
+    private void updateBox(int i) {
+        final int s = i * STATE_DIMS;
+        final float hw = this.state[s + 2] / 2;
+        final float hh = this.state[s + 3] / 2;
+        this.boxes[i * 4] = this.state[s] - hw;
+        this.boxes[i * 4 + 1] = this.state[s + 1] - hh;
+        this.boxes[i * 4 + 2] = this.state[s] + hw;
+        this.boxes[i * 4 + 3] = this.state[s + 1] + hh;
+    }
+
+    private void move(int from, int to) {
+        final int kptValues = this.numKeypoints * KEYPOINT_DIMS;
+        this.ids[to] = this.ids[from];
+        this.hits[to] = this.hits[from];
+        this.age[to] = this.age[from];
+        this.scores[to] = this.scores[from];
+        System.arraycopy(this.state, from * STATE_DIMS, this.state, to * STATE_DIMS, STATE_DIMS);
+        System.arraycopy(this.cov, from * COV_DIMS, this.cov, to * COV_DIMS, COV_DIMS);
+        System.arraycopy(this.keypoints, from * kptValues, this.keypoints, to * kptValues, kptValues);
+        System.arraycopy(this.boxes, from * 4, this.boxes, to * 4, 4);
+    }
+
+    private void ensureTrackCapacity(int size) {
+        if (this.ids.length < size) {
+            final int capacity = Math.max(size, Math.max(8, this.ids.length * 2));
+            this.ids = Arrays.copyOf(this.ids, capacity);
+            this.hits = Arrays.copyOf(this.hits, capacity);
+            this.age = Arrays.copyOf(this.age, capacity);
+            this.scores = Arrays.copyOf(this.scores, capacity);
+            this.state = Arrays.copyOf(this.state, capacity * STATE_DIMS);
+            this.cov = Arrays.copyOf(this.cov, capacity * COV_DIMS);
+            this.keypoints = Arrays.copyOf(this.keypoints, capacity * this.numKeypoints * KEYPOINT_DIMS);
+            this.boxes = Arrays.copyOf(this.boxes, capacity * 4);
+            this.trackMatch = Arrays.copyOf(this.trackMatch, capacity);
+            this.rowIndex = new int[capacity];
+            this.assignment = new int[Math.max(capacity, this.assignment.length)];
+        }
+    }
+
+    private void ensureColumnCapacity(int size) {
+        if (this.colIndex.length < size) {
+            this.colIndex = new int[Math.max(size, this.colIndex.length * 2)];
+        }
+        if (this.assignment.length < this.rowIndex.length) {
+            this.assignment = new int[this.rowIndex.length];
+        }
+    }
+
+    private static float sq(float value) {
+        return value * value;
+    }
+
+}
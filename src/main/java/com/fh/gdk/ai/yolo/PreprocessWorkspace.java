@@ -0,0 +1,544 @@
+package com.fh.gdk.ai.yolo;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import com.fh.gdk.ai.AiException;
+import com.fh.gdk.ai.util.Letterbox;
+import com.fh.gdk.ai.util.WindowLevel;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * 预处理工作区：持有预处理过程中用到的中间 Mat 与缓冲区、[N,C,H,W] 输入内存和输入张量，
+ * 可选的预分配输出张量以及后处理用到的候选缓冲区，并在多次推理之间复用。
+ * <p>支持 3 通道和单通道的模型。输入可以是 BGR 图像（CV_8UC3），也可以是单通道的灰度图像（CV_8UC1、CV_16UC1），
+ * 灰度图像直接复制到模型的每个通道中，不需要先转换为 3 通道图像。</p>
+ * <p>同一个工作区不能被多个线程同时使用，应当每个线程（或每个池化的 session）持有一个。
+ * 在 batch 大小不变的情况下，稳定运行时预处理不会在 Java 堆上分配任何对象。</p>
+ */
+public class PreprocessWorkspace implements AutoCloseable {
+
+    // 像素值归一化查找表：[0, 255] -> [0, 1]
+    private static final float[] NORMALIZE_LUT = new float[256];
+    static {
+        for (int i = 0; i < NORMALIZE_LUT.length; i++) {
+            NORMALIZE_LUT[i] = i / 255.0f;
+        }
+    }
+
+    private final OrtEnvironment env;
+    private final String inputName;
+    private final OnnxJavaType inputType;
+    private final boolean isFloat;
+
+    private final int channels;
+    private final int height;
+    private final int width;
+    // 单张图片单个通道所占的字节数
+    private final int planeBytes;
+
+    private final Letterbox letterbox;
+    private final Mat resized = new Mat();
+    // 缩放后的 BGR 像素，或 8 位灰度像素
+    private byte[] srcPixels = new byte[0];
+    // 缩放后的 16 位灰度像素
+    private short[] widePixels = new short[0];
+
+    // 一行输出数据，R、G、B 三个平面各一行（灰度图像只使用第一行）
+    private final float[][] floatRows;
+    private final byte[][] byteRows;
+    // 填充值
+    private final float padFloat;
+    private final byte padByte;
+
+    // 可容纳的图片数量
+    private int capacity = 0;
+    private ByteBuffer inputBuffer;
+    private FloatBuffer inputFloats;
+
+    // 最近一次使用的 batch 大小对应的输入张量
+    private int tensorBatchSize = -1;
+    private OnnxTensor inputTensor;
+    private Map<String, OnnxTensor> inputs;
+
+    // 预先分配的模型输出内存 [N, 通道, 锚点]，onnxruntime 直接将结果写入其中
+    private String outputName;
+    private int outputChannels;
+    private int outputAnchors;
+    private ByteBuffer outputBuffer;
+    private FloatBuffer outputFloats;
+    private int outputBatchSize = -1;
+    private OnnxTensor outputTensor;
+    private Map<String, OnnxTensor> outputs;
+
+    // 后处理：输出解码和非极大值抑制
+    final PoseDecoder decoder = new PoseDecoder();
+
+    public PreprocessWorkspace(OrtEnvironment env, String inputName, OnnxJavaType inputType, int channels, int height, int width) {
+        this(env, inputName, inputType, channels, height, width, ModelSpec.DEFAULT_STRIDE);
+    }
+
+    /**
+     * @param stride 模型的最大步长，见 {@link ModelSpec#getStride()}
+     */
+    public PreprocessWorkspace(OrtEnvironment env, String inputName, OnnxJavaType inputType, int channels, int height, int width,
+                               int stride) {
+        if (OnnxJavaType.FLOAT != inputType && OnnxJavaType.UINT8 != inputType) {
+            throw new AiException("Unsupported onnx-input-type: "+ inputType);
+        }
+        if (channels != 3 && channels != 1) {
+            throw new AiException("Unsupported onnx-input-channels: "+ channels);
+        }
+
+        this.env = env;
+        this.inputName = inputName;
+        this.inputType = inputType;
+        this.isFloat = OnnxJavaType.FLOAT == inputType;
+        this.channels = channels;
+        this.height = height;
+        this.width = width;
+        this.planeBytes = height * width * (this.isFloat ? Float.BYTES : 1);
+
+        this.letterbox = new Letterbox(width, height);
+        this.letterbox.setStride(stride);
+
+        this.floatRows = this.isFloat ? new float[channels][width] : null;
+        this.byteRows = this.isFloat ? null : new byte[channels][width];
+        this.padFloat = (float) (this.letterbox.getPadValue() / 255.0);
+        this.padByte = (byte) this.letterbox.getPadValue();
+    }
+
+    /**
+     * 绑定模型的 float 输出 [N, outputChannels, outputAnchors]，之后可以通过 {@link #outputs(int)}
+     * 获取预先分配好的输出张量，避免每次推理时 onnxruntime 分配输出并复制到 Java 数组。
+     */
+    public void bindOutput(String outputName, int outputChannels, int outputAnchors) {
+        this.closeOutputTensor();
+        this.outputName = outputName;
+        this.outputChannels = outputChannels;
+        this.outputAnchors = outputAnchors;
+        this.allocateOutput(this.capacity);
+    }
+
+    public boolean hasBoundOutput() {
+        return this.outputName != null;
+    }
+
+    /**
+     * 确保工作区至少可以容纳 batchSize 张图片，容量不足时重新分配输入内存
+     */
+    public void ensureCapacity(int batchSize) {
+        if (batchSize <= this.capacity) {
+            return;
+        }
+
+        this.closeTensor();
+
+        this.inputBuffer = ByteBuffer.allocateDirect(batchSize * this.channels * this.planeBytes).order(ByteOrder.nativeOrder());
+        this.inputFloats = this.isFloat ? this.inputBuffer.asFloatBuffer() : null;
+        this.capacity = batchSize;
+
+        if (this.hasBoundOutput()) {
+            this.allocateOutput(batchSize);
+        }
+    }
+
+    /**
+     * 同 {@link #preprocess(int, Mat, WindowLevel, ImageMetaData)}，灰度图像使用自动窗宽窗位
+     */
+    public void preprocess(int slot, Mat inputImg, ImageMetaData imgMetaData) {
+        this.preprocess(slot, inputImg, null, imgMetaData);
+    }
+
+    /**
+     * 预处理一张图片并写入输入内存中的第 slot 个位置。
+     * <p>先将图像等比缩放（不填充），然后只读取一遍缩放后的像素，
+     * 同时完成 BGR -> RGB（或灰度的窗宽窗位）、归一化和 [高度,宽度,通道] -> [通道,高度,宽度]，直接写入输入内存；
+     * 四周的填充区域直接写入常量 114/255，不经过源图像。</p>
+     *
+     * @param slot 图片在 batch 中的位置
+     * @param inputImg BGR 格式（CV_8UC3）或单通道灰度（CV_8UC1、CV_16UC1）的输入图像，不会被修改。
+     *                 BGR 图像只能用于 3 通道的模型
+     * @param window 灰度图像的窗宽窗位，BGR 图像忽略此参数。为 null 时 8 位图像使用 [0, 255]，
+     *               16 位图像使用缩放后图像的最小值与最大值
+     * @param imgMetaData 用于保存预处理相关的元数据
+     */
+    public void preprocess(int slot, Mat inputImg, WindowLevel window, ImageMetaData imgMetaData) {
+        if (slot >= this.capacity) {
+            throw new IndexOutOfBoundsException("slot " + slot + " >= capacity " + this.capacity);
+        }
+        final int type = inputImg.type();
+        if (type == CvType.CV_8UC1 || type == CvType.CV_16UC1) {
+            this.preprocessGray(slot, inputImg, type == CvType.CV_16UC1, window, imgMetaData);
+            return;
+        }
+        if (type != CvType.CV_8UC3) {
+            throw new AiException("Unsupported image type: " + CvType.typeToString(type));
+        }
+        if (this.channels != 3) {
+            throw new AiException("BGR image requires a 3-channel model, got " + this.channels);
+        }
+
+        Mat image = this.resize(inputImg, imgMetaData);
+        final int srcW = image.cols();
+        final int srcH = image.rows();
+        final int srcLength = srcW * srcH * 3;
+        if (this.srcPixels.length < srcLength) {
+            this.srcPixels = new byte[srcLength];
+        }
+        image.get(0, 0, this.srcPixels);
+
+        final int top = this.letterbox.getTop();
+        final int left = Math.min(this.letterbox.getLeft(), this.width - srcW);
+        if (this.isFloat) {
+            this.packFloat(slot, srcW, srcH, top, left);
+        } else {
+            this.packByte(slot, srcW, srcH, top, left);
+        }
+    }
+
+    /**
+     * 等比缩放并记录元数据
+     */
+    private Mat resize(Mat inputImg, ImageMetaData imgMetaData) {
+        Mat image = this.letterbox.resize(inputImg, this.resized);
+        imgMetaData.setDw(this.letterbox.getDw());
+        imgMetaData.setDh(this.letterbox.getDh());
+        imgMetaData.setRatio(this.letterbox.getRatio());
+        imgMetaData.setSrcWith(inputImg.width());
+        imgMetaData.setSrcHeight(inputImg.height());
+        return image;
+    }
+
+    /**
+     * 灰度图像：缩放后只读取一遍像素，窗宽窗位与归一化合并为一次乘加，结果复制到模型的每个通道
+     */
+    private void preprocessGray(int slot, Mat inputImg, boolean wide, WindowLevel window, ImageMetaData imgMetaData) {
+        Mat image = this.resize(inputImg, imgMetaData);
+        final int srcW = image.cols();
+        final int srcH = image.rows();
+        final int srcLength = srcW * srcH;
+        double lower;
+        double upper;
+        if (wide) {
+            if (this.widePixels.length < srcLength) {
+                this.widePixels = new short[srcLength];
+            }
+            image.get(0, 0, this.widePixels);
+            if (window != null) {
+                lower = window.getLower();
+                upper = window.getUpper();
+            } else {
+                // 自动窗宽窗位：像素值的实际范围
+                int min = 0xFFFF;
+                int max = 0;
+                for (int i = 0; i < srcLength; i++) {
+                    final int v = this.widePixels[i] & 0xFFFF;
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+                lower = min;
+                upper = max;
+            }
+        } else {
+            if (this.srcPixels.length < srcLength) {
+                this.srcPixels = new byte[srcLength];
+            }
+            image.get(0, 0, this.srcPixels);
+            lower = window != null ? window.getLower() : 0;
+            upper = window != null ? window.getUpper() : 255;
+        }
+
+        final int top = this.letterbox.getTop();
+        final int left = Math.min(this.letterbox.getLeft(), this.width - srcW);
+        // 范围为空（纯色图像）时全部为 0
+        final float scale = upper > lower ? (float) (1.0 / (upper - lower)) : 0f;
+        this.packGray(slot, wide, srcW, srcH, top, left, (float) lower, scale);
+    }
+
+    private void packGray(int slot, boolean wide, int srcW, int srcH, int top, int left, float lower, float scale) {
+        final byte[] narrow = this.srcPixels;
+        final short[] wideSrc = this.widePixels;
+        final float[] floatRow = this.isFloat ? this.floatRows[0] : null;
+        final byte[] byteRow = this.isFloat ? null : this.byteRows[0];
+        final int plane = this.height * this.width;
+        final int base = slot * this.channels * plane;
+        final int right = left + srcW;
+
+        if (this.isFloat) {
+            Arrays.fill(floatRow, 0, left, this.padFloat);
+            Arrays.fill(floatRow, right, this.width, this.padFloat);
+        } else {
+            Arrays.fill(byteRow, 0, left, this.padByte);
+            Arrays.fill(byteRow, right, this.width, this.padByte);
+        }
+
+        for (int y = 0; y < this.height; y++) {
+            final int offset = base + y * this.width;
+            final int sy = y - top;
+            if (sy < 0 || sy >= srcH) {
+                for (int c = 0; c < this.channels; c++) {
+                    if (this.isFloat) {
+                        fillFloats(this.inputFloats, offset + c * plane, this.width, this.padFloat);
+                    } else {
+                        fillBytes(this.inputBuffer, offset + c * plane, this.width, this.padByte);
+                    }
+                }
+                continue;
+            }
+
+            for (int x = left, si = sy * srcW; x < right; x++, si++) {
+                final int v = wide ? wideSrc[si] & 0xFFFF : narrow[si] & 0xFF;
+                float f = (v - lower) * scale;
+                f = f < 0f ? 0f : (f > 1f ? 1f : f);
+                if (floatRow != null) {
+                    floatRow[x] = f;
+                } else {
+                    byteRow[x] = (byte) (int) (f * 255f + 0.5f);
+                }
+            }
+            // 同一行复制到每个通道
+            for (int c = 0; c < this.channels; c++) {
+                if (this.isFloat) {
+                    putFloats(this.inputFloats, offset + c * plane, floatRow);
+                } else {
+                    putBytes(this.inputBuffer, offset + c * plane, byteRow);
+                }
+            }
+        }
+    }
+
+    private void packFloat(int slot, int srcW, int srcH, int top, int left) {
+        final byte[] src = this.srcPixels;
+        final float[] lut = NORMALIZE_LUT;
+        final float[] r = this.floatRows[0];
+        final float[] g = this.floatRows[1];
+        final float[] b = this.floatRows[2];
+        final int plane = this.height * this.width;
+        final int base = slot * this.channels * plane;
+        final int right = left + srcW;
+
+        // 左右两侧的填充在同一张图片的每一行都相同，只需写一次
+        for (float[] row : this.floatRows) {
+            Arrays.fill(row, 0, left, this.padFloat);
+            Arrays.fill(row, right, this.width, this.padFloat);
+        }
+
+        for (int y = 0; y < this.height; y++) {
+            final int offset = base + y * this.width;
+            final int sy = y - top;
+            if (sy < 0 || sy >= srcH) {
+                // 上下的填充行
+                fillFloats(this.inputFloats, offset, this.width, this.padFloat);
+                fillFloats(this.inputFloats, offset + plane, this.width, this.padFloat);
+                fillFloats(this.inputFloats, offset + 2 * plane, this.width, this.padFloat);
+                continue;
+            }
+
+            for (int x = left, si = sy * srcW * 3; x < right; x++, si += 3) {
+                b[x] = lut[src[si] & 0xFF];
+                g[x] = lut[src[si + 1] & 0xFF];
+                r[x] = lut[src[si + 2] & 0xFF];
+            }
+            putFloats(this.inputFloats, offset, r);
+            putFloats(this.inputFloats, offset + plane, g);
+            putFloats(this.inputFloats, offset + 2 * plane, b);
+        }
+    }
+
+    private void packByte(int slot, int srcW, int srcH, int top, int left) {
+        final byte[] src = this.srcPixels;
+        final byte[] r = this.byteRows[0];
+        final byte[] g = this.byteRows[1];
+        final byte[] b = this.byteRows[2];
+        final int plane = this.height * this.width;
+        final int base = slot * this.channels * plane;
+        final int right = left + srcW;
+
+        for (byte[] row : this.byteRows) {
+            Arrays.fill(row, 0, left, this.padByte);
+            Arrays.fill(row, right, this.width, this.padByte);
+        }
+
+        for (int y = 0; y < this.height; y++) {
+            final int offset = base + y * this.width;
+            final int sy = y - top;
+            if (sy < 0 || sy >= srcH) {
+                fillBytes(this.inputBuffer, offset, this.width, this.padByte);
+                fillBytes(this.inputBuffer, offset + plane, this.width, this.padByte);
+                fillBytes(this.inputBuffer, offset + 2 * plane, this.width, this.padByte);
+                continue;
+            }
+
+            for (int x = left, si = sy * srcW * 3; x < right; x++, si += 3) {
+                b[x] = src[si];
+                g[x] = src[si + 1];
+                r[x] = src[si + 2];
+            }
+            putBytes(this.inputBuffer, offset, r);
+            putBytes(this.inputBuffer, offset + plane, g);
+            putBytes(this.inputBuffer, offset + 2 * plane, b);
+        }
+    }
+
+    private static void putFloats(FloatBuffer dst, int offset, float[] row) {
+        ((Buffer) dst).position(offset);
+        dst.put(row);
+    }
+
+    private static void fillFloats(FloatBuffer dst, int offset, int length, float value) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            dst.put(i, value);
+        }
+    }
+
+    private static void putBytes(ByteBuffer dst, int offset, byte[] row) {
+        ((Buffer) dst).position(offset);
+        dst.put(row);
+    }
+
+    private static void fillBytes(ByteBuffer dst, int offset, int length, byte value) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            dst.put(i, value);
+        }
+    }
+
+    /**
+     * 获取前 batchSize 张图片组成的模型输入。batch 大小不变时复用同一个输入张量。
+     */
+    public Map<String, OnnxTensor> inputs(int batchSize) throws OrtException {
+        if (batchSize > this.capacity) {
+            throw new IndexOutOfBoundsException("batchSize " + batchSize + " > capacity " + this.capacity);
+        }
+
+        if (batchSize != this.tensorBatchSize) {
+            this.closeTensor();
+            final long[] shape = { batchSize, this.channels, this.height, this.width };
+            ByteBuffer data = slice(this.inputBuffer, 0, batchSize * this.channels * this.planeBytes);
+            this.inputTensor = this.isFloat
+                    ? OnnxTensor.createTensor(this.env, data.asFloatBuffer(), shape)
+                    : OnnxTensor.createTensor(this.env, data, shape, this.inputType);
+            this.inputs = Collections.singletonMap(this.inputName, this.inputTensor);
+            this.tensorBatchSize = batchSize;
+        }
+        return this.inputs;
+    }
+
+    /**
+     * 获取前 batchSize 张图片对应的预分配输出，作为 session.run 的 pinnedOutputs 参数。batch 大小不变时复用同一个输出张量。
+     */
+    public Map<String, OnnxTensor> outputs(int batchSize) throws OrtException {
+        if (!this.hasBoundOutput()) {
+            throw new IllegalStateException("No output bound to this workspace");
+        }
+        if (batchSize > this.capacity) {
+            throw new IndexOutOfBoundsException("batchSize " + batchSize + " > capacity " + this.capacity);
+        }
+
+        if (batchSize != this.outputBatchSize) {
+            this.closeOutputTensor();
+            final long[] shape = { batchSize, this.outputChannels, this.outputAnchors };
+            ByteBuffer data = slice(this.outputBuffer, 0, batchSize * this.outputChannels * this.outputAnchors * Float.BYTES);
+            this.outputTensor = OnnxTensor.createTensor(this.env, data.asFloatBuffer(), shape);
+            this.outputs = Collections.singletonMap(this.outputName, this.outputTensor);
+            this.outputBatchSize = batchSize;
+        }
+        return this.outputs;
+    }
+
+    /**
+     * 预分配的输出内存，按 [N, 通道, 锚点] 排列
+     */
+    public FloatBuffer getOutputBuffer() {
+        return this.outputFloats;
+    }
+
+    /**
+     * 输入内存，按 [N,C,H,W] 排列
+     */
+    public ByteBuffer getInputBuffer() {
+        return slice(this.inputBuffer, 0, this.inputBuffer.capacity());
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * 模型输入的宽度
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * 模型输入的高度
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    public int getOutputChannels() {
+        return this.outputChannels;
+    }
+
+    public int getOutputAnchors() {
+        return this.outputAnchors;
+    }
+
+    private void allocateOutput(int batchSize) {
+        this.closeOutputTensor();
+        if (batchSize <= 0) {
+            this.outputBuffer = null;
+            this.outputFloats = null;
+            return;
+        }
+        this.outputBuffer = ByteBuffer.allocateDirect(batchSize * this.outputChannels * this.outputAnchors * Float.BYTES)
+                .order(ByteOrder.nativeOrder());
+        this.outputFloats = this.outputBuffer.asFloatBuffer();
+    }
+
+    private void closeOutputTensor() {
+        if (this.outputTensor != null) {
+            this.outputTensor.close();
+            this.outputTensor = null;
+            this.outputs = null;
+            this.outputBatchSize = -1;
+        }
+    }
+
+    private void closeTensor() {
+        if (this.inputTensor != null) {
+            this.inputTensor.close();
+            this.inputTensor = null;
+            this.inputs = null;
+            this.tensorBatchSize = -1;
+        }
+    }
+
+    static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer dup = buffer.duplicate();
+        ((Buffer) dup).position(offset);
+        ((Buffer) dup).limit(offset + length);
+        return dup.slice().order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    public void close() {
+        this.closeTensor();
+        this.closeOutputTensor();
+        this.resized.release();
+        this.capacity = 0;
+    }
+
+}
@@ -0,0 +1,238 @@
+package com.fh.gdk.ai.yolo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import com.fh.gdk.ai.AiException;
+import com.fh.gdk.ai.util.NmsEngine;
+import com.fh.gdk.ai.util.Suppression;
+import org.opencv.core.Mat;
+
+/**
+ * 切片推理（SAHI）：把高分辨率图片切成互相重叠的切片分别推理，再合并为原图上的结果。
+ * <p>整张图片缩放到 640 时，几千像素高的 X 光片或大场景监控画面中的小目标会丢失细节；
+ * 切片默认与模型的推理尺寸相同，切片内的像素不缩放。</p>
+ * <ul>
+ *     <li>切片是原图的 ROI（submat），不复制原图</li>
+ *     <li>所有切片（以及可选的整图）在一次批量推理中完成；使用 {@link Yolov8Pool} 时切片分组后在多个 session 上并行推理</li>
+ *     <li>切片的结果映射回原图坐标后，使用 {@link NmsEngine} 合并切片重叠区域中的重复结果</li>
+ * </ul>
+ * <p>返回结果的坐标已经是原图坐标，其 {@link ImageMetaData} 的 ratio 为 1、dw 和 dh 为 0，
+ * 因此按 (x - dw) / ratio 换算的调用方不需要修改。配置线程安全，可以在多个线程中共用。</p>
+ */
+public class TiledInference {
+
+    private static final int KEYPOINT_DIMS = PoseCandidates.KEYPOINT_DIMS;
+
+    // 切片尺寸，<=0 表示使用模型的推理尺寸
+    private volatile int tileWidth = 0;
+    private volatile int tileHeight = 0;
+    private volatile float overlapRatio = 0.2f;
+    // 是否同时推理缩放后的整张图片，用于检测跨越多个切片的大目标
+    private volatile boolean includeFullImage = true;
+    private volatile Suppression mergeSuppression = Suppression.hard(0.5f);
+    private volatile Executor executor = ForkJoinPool.commonPool();
+
+    public TiledInference setTileSize(int tileWidth, int tileHeight) {
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        return this;
+    }
+
+    /**
+     * 相邻切片重叠的比例，默认 0.2，目标的尺寸接近切片尺寸时应适当增大
+     */
+    public TiledInference setOverlapRatio(float overlapRatio) {
+        if (overlapRatio < 0 || overlapRatio >= 1) {
+            throw new IllegalArgumentException("overlapRatio must be in [0, 1)");
+        }
+        this.overlapRatio = overlapRatio;
+        return this;
+    }
+
+    public TiledInference setIncludeFullImage(boolean includeFullImage) {
+        this.includeFullImage = includeFullImage;
+        return this;
+    }
+
+    /**
+     * 合并各个切片结果时使用的抑制策略，默认 IOU 0.5 的标准非极大值抑制
+     */
+    public TiledInference setMergeSuppression(Suppression mergeSuppression) {
+        this.mergeSuppression = mergeSuppression;
+        return this;
+    }
+
+    /**
+     * 使用 {@link Yolov8Pool} 时并行推理各组切片的线程池，默认为 {@link ForkJoinPool#commonPool()}
+     */
+    public TiledInference setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * 计算切片位置
+     *
+     * @return 每个切片 {x, y, width, height}
+     */
+    public List<int[]> tiles(int width, int height, int tileWidth, int tileHeight) {
+        List<int[]> tiles = new ArrayList<>();
+        final int tw = Math.min(tileWidth, width);
+        final int th = Math.min(tileHeight, height);
+        for (int y : positions(height, th, this.overlapRatio)) {
+            for (int x : positions(width, tw, this.overlapRatio)) {
+                tiles.add(new int[] {x, y, tw, th});
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * 一个方向上的切片起点，最后一个切片与边缘对齐
+     */
+    private static int[] positions(int length, int tile, float overlap) {
+        if (tile >= length) {
+            return new int[] {0};
+        }
+        final int step = Math.max(1, (int) (tile * (1 - overlap)));
+        final int count = (length - tile + step - 1) / step + 1;
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = Math.min(i * step, length - tile);
+        }
+        return positions;
+    }
+
+    /**
+     * 使用单个模型实例，所有切片在一次批量推理中完成（固定 batch 的模型按 batch 大小分块）
+     *
+     * @param suppression 单个切片内的抑制策略
+     */
+    public List<PosePredictResult> predictPose(Yolov8 model, Mat image, float confThreshold, Suppression suppression) {
+        List<int[]> tiles = this.tiles(image.width(), image.height(), this.tileWidth(model), this.tileHeight(model));
+        List<Mat> inputs = this.crop(image, tiles);
+        try {
+            return this.merge(image, tiles, model.predictPoseBatch(inputs, confThreshold, suppression));
+        } finally {
+            release(inputs, tiles.size());
+        }
+    }
+
+    /**
+     * 使用模型实例池，切片平均分为 pool.size() 组，在多个 session 上并行推理
+     */
+    public List<PosePredictResult> predictPose(Yolov8Pool<?> pool, Mat image, float confThreshold, Suppression suppression) {
+        ModelSpec spec = pool.getModelSpec();
+        final int tileWidth = this.tileWidth > 0 ? this.tileWidth : spec.getWidth();
+        final int tileHeight = this.tileHeight > 0 ? this.tileHeight : spec.getHeight();
+        List<int[]> tiles = this.tiles(image.width(), image.height(), tileWidth, tileHeight);
+        List<Mat> inputs = this.crop(image, tiles);
+        final int groups = Math.min(pool.size(), inputs.size());
+        final int groupSize = (inputs.size() + groups - 1) / groups;
+        List<CompletableFuture<List<List<PosePredictResult>>>> futures = new ArrayList<>(groups);
+        try {
+            for (int from = 0; from < inputs.size(); from += groupSize) {
+                List<Mat> group = inputs.subList(from, Math.min(from + groupSize, inputs.size()));
+                futures.add(CompletableFuture.supplyAsync(
+                        () -> pool.predictPoseBatch(group, confThreshold, suppression), this.executor));
+            }
+            List<List<PosePredictResult>> results = new ArrayList<>(inputs.size());
+            for (CompletableFuture<List<List<PosePredictResult>>> future : futures) {
+                results.addAll(future.join());
+            }
+            return this.merge(image, tiles, results);
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof AiException ? (AiException) e.getCause() : new AiException(e.getCause());
+        } finally {
+            // 某一组失败时其它组可能仍在使用切片，全部结束后才能释放
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).handle((v, e) -> null).join();
+            release(inputs, tiles.size());
+        }
+    }
+
+    private int tileWidth(Yolov8 model) {
+        return this.tileWidth > 0 ? this.tileWidth : model.getInferenceWidth();
+    }
+
+    private int tileHeight(Yolov8 model) {
+        return this.tileHeight > 0 ? this.tileHeight : model.getInferenceHeight();
+    }
+
+    /**
+     * 切片（原图的 ROI），需要时在最后追加整张图片
+     */
+    private List<Mat> crop(Mat image, List<int[]> tiles) {
+        List<Mat> inputs = new ArrayList<>(tiles.size() + 1);
+        for (int[] tile : tiles) {
+            inputs.add(image.submat(tile[1], tile[1] + tile[3], tile[0], tile[0] + tile[2]));
+        }
+        if (this.includeFullImage && tiles.size() > 1) {
+            inputs.add(image);
+        }
+        return inputs;
+    }
+
+    private static void release(List<Mat> inputs, int tiles) {
+        for (int i = 0; i < tiles; i++) {
+            inputs.get(i).release();
+        }
+    }
+
+    /**
+     * 将各个切片的结果映射到原图坐标，并合并重复的结果
+     */
+    private List<PosePredictResult> merge(Mat image, List<int[]> tiles, List<List<PosePredictResult>> results) {
+        int total = 0;
+        int numKeypoints = 0;
+        for (List<PosePredictResult> poses : results) {
+            total += poses.size();
+            if (!poses.isEmpty()) {
+                numKeypoints = poses.get(0).keypoints.length;
+            }
+        }
+        PoseCandidates candidates = new PoseCandidates();
+        candidates.reset(numKeypoints);
+        for (int t = 0; t < results.size(); t++) {
+            // 最后一个可能是整张图片，偏移为 0
+            final int offsetX = t < tiles.size() ? tiles.get(t)[0] : 0;
+            final int offsetY = t < tiles.size() ? tiles.get(t)[1] : 0;
+            for (PosePredictResult pose : results.get(t)) {
+                ImageMetaData meta = pose.getImageMetaData();
+                final double ratio = meta.getRatio();
+                final double dw = meta.getDw();
+                final double dh = meta.getDh();
+                final int k = candidates.add();
+                for (int v = 0; v < 4; v += 2) {
+                    candidates.boxes[k * 4 + v] = (float) ((pose.bbox[v] - dw) / ratio + offsetX);
+                    candidates.boxes[k * 4 + v + 1] = (float) ((pose.bbox[v + 1] - dh) / ratio + offsetY);
+                }
+                candidates.scores[k] = pose.score;
+                candidates.classIds[k] = pose.classId;
+                for (int p = 0, dst = k * numKeypoints * KEYPOINT_DIMS; p < numKeypoints; p++, dst += KEYPOINT_DIMS) {
+                    candidates.keypoints[dst] = (float) ((pose.keypoints[p][0] - dw) / ratio + offsetX);
+                    candidates.keypoints[dst + 1] = (float) ((pose.keypoints[p][1] - dh) / ratio + offsetY);
+                    candidates.keypoints[dst + 2] = pose.keypoints[p][2];
+                }
+            }
+        }
+
+        final int kept = new NmsEngine().run(candidates.boxes, candidates.scores, candidates.classIds, candidates.keypoints,
+                numKeypoints, total, 0, true, this.mergeSuppression, candidates.keep);
+
+        ImageMetaData sourceMeta = new ImageMetaData();
+        sourceMeta.setRatio(1);
+        sourceMeta.setSrcWith(image.width());
+        sourceMeta.setSrcHeight(image.height());
+        List<PosePredictResult> merged = new ArrayList<>(kept);
+        for (int i = 0; i < kept; i++) {
+            merged.add(candidates.toResult(candidates.keep[i], sourceMeta));
+        }
+        return merged;
+    }
+
+}
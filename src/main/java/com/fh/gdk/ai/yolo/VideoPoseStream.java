@@ -0,0 +1,417 @@
+package com.fh.gdk.ai.yolo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.fh.gdk.ai.AiException;
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+/**
+ * 视频流姿态推理：从 {@link VideoCapture}（视频文件或本地摄像头）读取帧并推理，通过 {@link Listener} 回调输出结果。
+ * <ul>
+ *     <li>读取线程只保留最新的一帧：推理跟不上时直接丢弃旧的帧，端到端延迟有上限，不会堆积</li>
+ *     <li>可以每 N 帧推理一次，其余的帧根据最近两次推理结果的运动速度外推框和关键点。
+ *     使用外推而不是在两次推理之间插值，是因为插值需要等待下一次推理，会增加 N 帧的延迟</li>
+ * </ul>
+ * <p>推理在内部的推理线程中执行，{@link Listener} 的回调也在该线程中调用。</p>
+ */
+public class VideoPoseStream implements AutoCloseable {
+
+    /**
+     * 结果回调
+     */
+    public interface Listener {
+        /**
+         * @param frameIndex 帧在视频中的序号，丢弃的帧不会回调，因此不一定连续
+         * @param frame 当前帧，只在回调期间有效，需要保留时请复制
+         * @param poses 推理（或外推）结果
+         * @param inferred 是否为本帧推理得到的结果，false 表示由之前的结果外推
+         */
+        void onFrame(long frameIndex, Mat frame, List<PosePredictResult> poses, boolean inferred);
+
+        default void onError(Throwable e) {
+        }
+
+        /**
+         * 视频读取完毕或者流被关闭
+         */
+        default void onEnd() {
+        }
+    }
+
+    private static final class Frame {
+        final Mat mat;
+        final long index;
+        // 帧的时间（秒）
+        final double timestamp;
+
+        Frame(Mat mat, long index, double timestamp) {
+            this.mat = mat;
+            this.index = index;
+            this.timestamp = timestamp;
+        }
+    }
+
+    // 外推时匹配前后两次推理结果的最小 IOU
+    private static final float MATCH_IOU_THRESHOLD = 0.3f;
+
+    private final Yolov8 model;
+    private final VideoCapture capture;
+    private final Listener listener;
+    // 读取视频文件时按视频的帧率读取，否则会一次性读完，绝大部分帧都被丢弃
+    private final boolean paceToFps;
+
+    private int inferEvery = 1;
+    private boolean extrapolate = true;
+    private PoseTracker tracker;
+    private KeypointSmoother smoother;
+
+    // 最新的一帧，以及一个可复用的 Mat
+    private final AtomicReference<Frame> latest = new AtomicReference<>();
+    private final AtomicReference<Mat> spare = new AtomicReference<>();
+    private final Semaphore frameAvailable = new Semaphore(0);
+    private volatile boolean running = false;
+    private volatile boolean ended = false;
+    private Thread reader;
+    private Thread inference;
+
+    private final AtomicLong readFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong inferredFrames = new AtomicLong();
+
+    // 最近一次推理的结果及其帧序号，以及每个结果每帧的运动速度：bbox(4) + 关键点 (x, y) * n
+    private List<PosePredictResult> lastPoses = Collections.emptyList();
+    private long lastInferredIndex = -1;
+    private float[][] velocities = new float[0][];
+
+    public VideoPoseStream(Yolov8 model, VideoCapture capture, Listener listener, boolean paceToFps) {
+        if (!capture.isOpened()) {
+            throw new AiException("VideoCapture is not opened");
+        }
+        this.model = model;
+        this.capture = capture;
+        this.listener = listener;
+        this.paceToFps = paceToFps;
+    }
+
+    /**
+     * 打开视频文件，按视频的帧率读取
+     */
+    public static VideoPoseStream open(Yolov8 model, String videoPath, Listener listener) {
+        return new VideoPoseStream(model, new VideoCapture(videoPath), listener, true);
+    }
+
+    /**
+     * 打开本地摄像头
+     */
+    public static VideoPoseStream open(Yolov8 model, int deviceIndex, Listener listener) {
+        return new VideoPoseStream(model, new VideoCapture(deviceIndex), listener, false);
+    }
+
+    /**
+     * 每 inferEvery 帧推理一次，默认每帧都推理
+     */
+    public VideoPoseStream setInferEvery(int inferEvery) {
+        if (inferEvery <= 0) {
+            throw new IllegalArgumentException("inferEvery must be > 0");
+        }
+        this.inferEvery = inferEvery;
+        return this;
+    }
+
+    /**
+     * 未推理的帧是否外推结果，false 时直接使用最近一次的推理结果
+     */
+    public VideoPoseStream setExtrapolate(boolean extrapolate) {
+        this.extrapolate = extrapolate;
+        return this;
+    }
+
+    /**
+     * 使用跟踪器为结果分配跟踪 ID。推理的帧用推理结果更新跟踪器，未推理的帧由跟踪器外推，不再使用内置的外推
+     */
+    public VideoPoseStream setTracker(PoseTracker tracker) {
+        this.tracker = tracker;
+        return this;
+    }
+
+    /**
+     * 对跟踪结果的关键点进行时域平滑，需要同时设置 {@link #setTracker(PoseTracker)}。
+     * 视频文件按帧率计算帧的时间，摄像头使用读取帧时的系统时间
+     */
+    public VideoPoseStream setSmoother(KeypointSmoother smoother) {
+        this.smoother = smoother;
+        return this;
+    }
+
+    public synchronized VideoPoseStream start() {
+        if (this.running) {
+            return this;
+        }
+        this.running = true;
+        this.reader = new Thread(this::read, "video-pose-reader");
+        this.inference = new Thread(this::infer, "video-pose-inference");
+        this.reader.setDaemon(true);
+        this.inference.setDaemon(true);
+        this.reader.start();
+        this.inference.start();
+        return this;
+    }
+
+    private void read() {
+        final double fps = this.capture.get(Videoio.CAP_PROP_FPS);
+        final long frameNanos = this.paceToFps && fps > 0 ? (long) (1_000_000_000L / fps) : 0;
+        final long start = System.nanoTime();
+        long next = start;
+        long index = 0;
+        try {
+            while (this.running) {
+                Mat mat = this.spare.getAndSet(null);
+                if (mat == null) {
+                    mat = new Mat();
+                }
+                if (!this.capture.read(mat) || mat.empty()) {
+                    mat.release();
+                    break;
+                }
+                this.readFrames.incrementAndGet();
+
+                double timestamp = frameNanos > 0 ? index / fps : (System.nanoTime() - start) / 1e9;
+                Frame old = this.latest.getAndSet(new Frame(mat, index++, timestamp));
+                if (old != null) {
+                    this.droppedFrames.incrementAndGet();
+                    this.recycle(old.mat);
+                }
+                this.frameAvailable.release();
+
+                if (frameNanos > 0) {
+                    next += frameNanos;
+                    long sleep = next - System.nanoTime();
+                    if (sleep > 0) {
+                        Thread.sleep(sleep / 1_000_000L, (int) (sleep % 1_000_000L));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            this.listener.onError(e);
+        } finally {
+            this.ended = true;
+            this.frameAvailable.release();
+        }
+    }
+
+    private void infer() {
+        try {
+            while (true) {
+                Frame frame = this.latest.getAndSet(null);
+                if (frame == null) {
+                    if (!this.running) {
+                        break;
+                    }
+                    if (!this.ended) {
+                        this.frameAvailable.acquire();
+                        continue;
+                    }
+                    // 读取线程在设置 ended 之前放入的最后一帧
+                    frame = this.latest.getAndSet(null);
+                    if (frame == null) {
+                        break;
+                    }
+                }
+                try {
+                    this.process(frame);
+                } catch (Throwable e) {
+                    this.listener.onError(e);
+                } finally {
+                    this.recycle(frame.mat);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.listener.onEnd();
+        }
+    }
+
+    private void process(Frame frame) {
+        final boolean inferred = this.lastInferredIndex < 0 || frame.index - this.lastInferredIndex >= this.inferEvery;
+        List<PosePredictResult> poses;
+        if (inferred) {
+            poses = this.model.predictPose(frame.mat);
+            if (this.tracker != null) {
+                poses = this.tracker.update(poses);
+            }
+            this.updateVelocities(poses, frame.index);
+            this.inferredFrames.incrementAndGet();
+        } else if (this.tracker != null) {
+            poses = this.tracker.predict();
+        } else {
+            poses = this.extrapolate ? this.extrapolate(frame.index - this.lastInferredIndex) : this.lastPoses;
+        }
+        // 跟踪器每次返回新的结果对象，可以原地平滑
+        if (this.tracker != null && this.smoother != null) {
+            for (PosePredictResult pose : poses) {
+                this.smoother.smooth(pose, frame.timestamp);
+            }
+        }
+        this.listener.onFrame(frame.index, frame.mat, poses, inferred);
+    }
+
+    /**
+     * 将本次推理结果与上一次的结果按 IOU 贪心匹配，计算每个结果每帧的运动速度，未匹配的速度为 0
+     */
+    private void updateVelocities(List<PosePredictResult> poses, long frameIndex) {
+        final long frames = frameIndex - this.lastInferredIndex;
+        float[][] velocities = new float[poses.size()][];
+        boolean[] matched = new boolean[this.lastPoses.size()];
+        for (int i = 0; i < poses.size(); i++) {
+            PosePredictResult pose = poses.get(i);
+            velocities[i] = new float[4 + pose.keypoints.length * 2];
+            if (this.lastInferredIndex < 0) {
+                continue;
+            }
+
+            int best = -1;
+            float bestIou = MATCH_IOU_THRESHOLD;
+            for (int j = 0; j < this.lastPoses.size(); j++) {
+                if (matched[j]) {
+                    continue;
+                }
+                float iou = Yolov8.computeIOU(pose.bbox, this.lastPoses.get(j).bbox);
+                if (iou >= bestIou) {
+                    bestIou = iou;
+                    best = j;
+                }
+            }
+            if (best < 0) {
+                continue;
+            }
+            matched[best] = true;
+            PosePredictResult prev = this.lastPoses.get(best);
+            for (int v = 0; v < 4; v++) {
+                velocities[i][v] = (pose.bbox[v] - prev.bbox[v]) / frames;
+            }
+            final int kpts = Math.min(pose.keypoints.length, prev.keypoints.length);
+            for (int k = 0; k < kpts; k++) {
+                velocities[i][4 + 2 * k] = (pose.keypoints[k][0] - prev.keypoints[k][0]) / frames;
+                velocities[i][5 + 2 * k] = (pose.keypoints[k][1] - prev.keypoints[k][1]) / frames;
+            }
+        }
+        this.lastPoses = poses;
+        this.lastInferredIndex = frameIndex;
+        this.velocities = velocities;
+    }
+
+    /**
+     * 按匀速运动外推最近一次推理之后第 frames 帧的结果
+     */
+    private List<PosePredictResult> extrapolate(long frames) {
+        List<PosePredictResult> poses = new ArrayList<>(this.lastPoses.size());
+        for (int i = 0; i < this.lastPoses.size(); i++) {
+            PosePredictResult pose = this.lastPoses.get(i);
+            float[] velocity = this.velocities[i];
+            float[] bbox = new float[4];
+            for (int v = 0; v < 4; v++) {
+                bbox[v] = pose.bbox[v] + velocity[v] * frames;
+            }
+            float[][] keypoints = new float[pose.keypoints.length][];
+            for (int k = 0; k < keypoints.length; k++) {
+                keypoints[k] = new float[] {
+                        pose.keypoints[k][0] + velocity[4 + 2 * k] * frames,
+                        pose.keypoints[k][1] + velocity[5 + 2 * k] * frames,
+                        pose.keypoints[k][2]
+                };
+            }
+            poses.add(new PosePredictResult(bbox, keypoints, pose.classId, pose.score)
+                    .setImageMetaData(pose.getImageMetaData())
+                    .setTrackId(pose.getTrackId()));
+        }
+        return poses;
+    }
+
+    private void recycle(Mat mat) {
+        if (!this.spare.compareAndSet(null, mat)) {
+            mat.release();
+        }
+    }
+
+    /**
+     * 已读取的帧数
+     */
+    public long getReadFrames() {
+        return this.readFrames.get();
+    }
+
+    /**
+     * 推理跟不上而被丢弃的帧数
+     */
+    public long getDroppedFrames() {
+        return this.droppedFrames.get();
+    }
+
+    /**
+     * 实际推理的帧数
+     */
+    public long getInferredFrames() {
+        return this.inferredFrames.get();
+    }
+
+    /**
+     * 等待视频读取并处理完毕
+     */
+    public void await() throws InterruptedException {
+        Thread inference = this.inference;
+        if (inference != null) {
+            inference.join();
+        }
+    }
+
+    /**
+     * 停止读取和推理，释放 VideoCapture
+     */
+    @Override
+    public void close() {
+        this.running = false;
+        this.frameAvailable.release();
+        joinUninterruptibly(this.reader);
+        joinUninterruptibly(this.inference);
+        Frame frame = this.latest.getAndSet(null);
+        if (frame != null) {
+            frame.mat.release();
+        }
+        Mat mat = this.spare.getAndSet(null);
+        if (mat != null) {
+            mat.release();
+        }
+        this.capture.release();
+    }
+
+    /**
+     * 等待线程结束，期间被中断时继续等待，结束后恢复中断状态
+     */
+    private static void joinUninterruptibly(Thread thread) {
+        if (thread == null) {
+            return;
+        }
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
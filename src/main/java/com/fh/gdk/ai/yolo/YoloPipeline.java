@@ -0,0 +1,463 @@
+package com.fh.gdk.ai.yolo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+import ai.onnxruntime.OrtSession;
+import com.fh.gdk.ai.AiException;
+import com.fh.gdk.ai.util.Suppression;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * 流水线推理：图片解码、预处理、模型推理、后处理（解码输出 + 非极大值抑制）以及可选的绘制，
+ * 分别在各自的线程中执行，阶段之间通过有界阻塞队列连接。
+ * <p>模型推理的同时，其它线程可以对后面的图片进行解码和预处理、对前面的图片进行后处理，从而用一个模型占满多核 CPU。
+ * 队列已满时 {@link #submit} 会阻塞（背压），不会无限堆积待处理的图片。</p>
+ * <p>每张正在处理的图片占用一个预处理工作区，工作区的数量同样限制了同时处理的图片数量。
+ * 开启 {@link Config#setOrdered(boolean) ordered} 时，返回的 future 严格按提交顺序完成。</p>
+ * <p>流水线不负责关闭模型，{@link #close()} 会等待已提交的图片全部处理完成。</p>
+ */
+public class YoloPipeline implements AutoCloseable {
+
+    /**
+     * 流水线配置
+     */
+    public static class Config {
+        private int decodeThreads = 1;
+        private int preprocessThreads = 2;
+        private int inferenceThreads = 1;
+        private int postprocessThreads = 1;
+        private int renderThreads = 1;
+        // 每个阶段输入队列的容量
+        private int queueCapacity = 4;
+        // 预处理工作区数量，<=0 表示按各阶段线程数自动计算
+        private int workspaces = 0;
+        private boolean ordered = false;
+        // 为 null 时使用模型的默认阈值
+        private Float confThreshold;
+        private Suppression suppression;
+        private BiConsumer<Mat, List<PosePredictResult>> renderer;
+
+        public Config setDecodeThreads(int decodeThreads) {
+            this.decodeThreads = decodeThreads;
+            return this;
+        }
+
+        public Config setPreprocessThreads(int preprocessThreads) {
+            this.preprocessThreads = preprocessThreads;
+            return this;
+        }
+
+        /**
+         * 同时执行 session.run 的线程数，多个线程共享同一个 session
+         */
+        public Config setInferenceThreads(int inferenceThreads) {
+            this.inferenceThreads = inferenceThreads;
+            return this;
+        }
+
+        public Config setPostprocessThreads(int postprocessThreads) {
+            this.postprocessThreads = postprocessThreads;
+            return this;
+        }
+
+        public Config setRenderThreads(int renderThreads) {
+            this.renderThreads = renderThreads;
+            return this;
+        }
+
+        public Config setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public Config setWorkspaces(int workspaces) {
+            this.workspaces = workspaces;
+            return this;
+        }
+
+        /**
+         * 是否按提交顺序完成返回的 future
+         */
+        public Config setOrdered(boolean ordered) {
+            this.ordered = ordered;
+            return this;
+        }
+
+        public Config setConfThreshold(float confThreshold) {
+            this.confThreshold = confThreshold;
+            return this;
+        }
+
+        public Config setSuppression(Suppression suppression) {
+            this.suppression = suppression;
+            return this;
+        }
+
+        /**
+         * 绘制阶段，在后处理之后执行，参数为原图和推理结果。不设置则没有绘制阶段
+         */
+        public Config setRenderer(BiConsumer<Mat, List<PosePredictResult>> renderer) {
+            this.renderer = renderer;
+            return this;
+        }
+    }
+
+    /**
+     * 流水线中的一张图片
+     */
+    private static final class Job {
+        final long sequence;
+        final String imagePath;
+        final CompletableFuture<List<PosePredictResult>> future = new CompletableFuture<>();
+
+        Mat image;
+        // 图片由流水线解码，处理完成后由流水线释放
+        boolean ownsImage;
+        PreprocessWorkspace workspace;
+        ImageMetaData[] imgMetaDatas;
+        OrtSession.Result output;
+        List<PosePredictResult> poses;
+        Throwable error;
+
+        Job(long sequence, String imagePath, Mat image) {
+            this.sequence = sequence;
+            this.imagePath = imagePath;
+            this.image = image;
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageTask {
+        void process(Job job) throws Exception;
+    }
+
+    // 通知工作线程退出
+    private static final Job POISON = new Job(-1, null, null);
+
+    /**
+     * 流水线的一个阶段：若干个工作线程从输入队列中取出图片处理，然后放入下一个阶段的队列
+     */
+    private final class Stage {
+        private final BlockingQueue<Job> queue;
+        private final Thread[] workers;
+        private final StageTask task;
+        private Stage next;
+
+        Stage(String name, int threads, int queueCapacity, StageTask task) {
+            if (threads <= 0) {
+                throw new IllegalArgumentException(name + " threads must be > 0");
+            }
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+            this.task = task;
+            this.workers = new Thread[threads];
+            for (int i = 0; i < threads; i++) {
+                this.workers[i] = new Thread(this::work, "yolo-pipeline-" + name + "-" + i);
+                this.workers[i].setDaemon(true);
+            }
+        }
+
+        void start() {
+            for (Thread worker : this.workers) {
+                worker.start();
+            }
+        }
+
+        void put(Job job) throws InterruptedException {
+            this.queue.put(job);
+        }
+
+        private void work() {
+            while (true) {
+                Job job;
+                try {
+                    job = this.queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (job == POISON) {
+                    return;
+                }
+                try {
+                    this.task.process(job);
+                    if (this.next != null) {
+                        this.next.put(job);
+                    } else {
+                        YoloPipeline.this.finish(job);
+                    }
+                } catch (Throwable e) {
+                    job.error = e;
+                    YoloPipeline.this.finish(job);
+                }
+            }
+        }
+
+        /**
+         * 等待队列中已有的图片处理完成后停止工作线程
+         */
+        void shutdown() {
+            for (int i = 0; i < this.workers.length; i++) {
+                this.putUninterruptibly(POISON);
+            }
+            for (Thread worker : this.workers) {
+                boolean interrupted = false;
+                while (worker.isAlive()) {
+                    try {
+                        worker.join();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private void putUninterruptibly(Job job) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    this.queue.put(job);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private final Yolov8 model;
+    private final float confThreshold;
+    private final Suppression suppression;
+    private final BiConsumer<Mat, List<PosePredictResult>> renderer;
+
+    private final List<PreprocessWorkspace> workspaces;
+    private final BlockingQueue<PreprocessWorkspace> idleWorkspaces;
+
+    // 提交的图片文件从解码阶段开始，已解码的图片从预处理阶段开始
+    private final Stage decodeStage;
+    private final Stage preprocessStage;
+    private final List<Stage> stages = new ArrayList<>();
+
+    // 按提交顺序完成 future：已完成但还不能交付的图片，以及下一个应当交付的序号
+    private final boolean ordered;
+    private final Map<Long, Job> completed = new HashMap<>();
+    private final Queue<Job> deliverable = new ArrayDeque<>();
+    private long nextDelivery = 0;
+    private boolean delivering = false;
+
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private long nextSequence = 0;
+    private boolean closed = false;
+
+    public YoloPipeline(Yolov8 model) {
+        this(model, new Config());
+    }
+
+    public YoloPipeline(Yolov8 model, Config config) {
+        this.model = model;
+        this.confThreshold = config.confThreshold != null ? config.confThreshold : model.getConfidenceThreshold();
+        this.suppression = config.suppression != null ? config.suppression : Suppression.hard(model.getIouThreshold());
+        this.renderer = config.renderer;
+        this.ordered = config.ordered;
+
+        final int workspaceCount = config.workspaces > 0 ? config.workspaces
+                : config.preprocessThreads + config.inferenceThreads + config.postprocessThreads + 2;
+        this.workspaces = new ArrayList<>(workspaceCount);
+        this.idleWorkspaces = new ArrayBlockingQueue<>(workspaceCount);
+        for (int i = 0; i < workspaceCount; i++) {
+            PreprocessWorkspace workspace = model.createWorkspace();
+            this.workspaces.add(workspace);
+            this.idleWorkspaces.add(workspace);
+        }
+
+        this.decodeStage = this.addStage("decode", config.decodeThreads, config.queueCapacity, this::decode);
+        this.preprocessStage = this.addStage("preprocess", config.preprocessThreads, config.queueCapacity, this::preprocess);
+        this.addStage("inference", config.inferenceThreads, config.queueCapacity, this::infer);
+        this.addStage("postprocess", config.postprocessThreads, config.queueCapacity, this::postprocess);
+        if (this.renderer != null) {
+            this.addStage("render", config.renderThreads, config.queueCapacity, this::render);
+        }
+
+        for (int i = 0; i < this.stages.size() - 1; i++) {
+            this.stages.get(i).next = this.stages.get(i + 1);
+        }
+        for (Stage stage : this.stages) {
+            stage.start();
+        }
+    }
+
+    private Stage addStage(String name, int threads, int queueCapacity, StageTask task) {
+        Stage stage = new Stage(name, threads, queueCapacity, task);
+        this.stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * 提交一张图片文件，从解码阶段开始处理。流水线已满时阻塞
+     */
+    public CompletableFuture<List<PosePredictResult>> submit(String imagePath) throws AiException {
+        return this.submit(imagePath, null, this.decodeStage);
+    }
+
+    /**
+     * 提交一张已解码的 BGR 图片，跳过解码阶段。在返回的 future 完成之前，调用方不能修改或释放该图片。流水线已满时阻塞
+     */
+    public CompletableFuture<List<PosePredictResult>> submit(Mat image) throws AiException {
+        return this.submit(null, image, this.preprocessStage);
+    }
+
+    private CompletableFuture<List<PosePredictResult>> submit(String imagePath, Mat image, Stage stage) {
+        this.closeLock.readLock().lock();
+        try {
+            if (this.closed) {
+                throw new AiException("YoloPipeline is closed");
+            }
+            Job job;
+            synchronized (this) {
+                job = new Job(this.nextSequence++, imagePath, image);
+            }
+            try {
+                stage.put(job);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // 序号已经分配，需要交付一次，否则按顺序交付时后面的图片会一直等待
+                job.error = new AiException("Interrupted while submitting to YoloPipeline", e);
+                this.finish(job);
+            }
+            return job.future;
+        } finally {
+            this.closeLock.readLock().unlock();
+        }
+    }
+
+    private void decode(Job job) {
+        job.image = Imgcodecs.imread(job.imagePath);
+        job.ownsImage = true;
+        if (job.image.empty()) {
+            throw new AiException("Failed to read image: " + job.imagePath);
+        }
+    }
+
+    private void preprocess(Job job) throws InterruptedException {
+        job.workspace = this.idleWorkspaces.take();
+        job.imgMetaDatas = this.model.preprocess(job.workspace, Collections.singletonList(job.image), 0, 1);
+    }
+
+    private void infer(Job job) throws Exception {
+        job.output = this.model.run(job.workspace, 1);
+    }
+
+    private void postprocess(Job job) throws Exception {
+        job.poses = this.model.postprocess(job.workspace, job.output, job.imgMetaDatas, this.confThreshold, this.suppression).get(0);
+        this.releaseResources(job);
+    }
+
+    private void render(Job job) {
+        this.renderer.accept(job.image, job.poses);
+    }
+
+    /**
+     * 释放图片占用的模型输出和工作区
+     */
+    private void releaseResources(Job job) {
+        if (job.output != null) {
+            job.output.close();
+            job.output = null;
+        }
+        if (job.workspace != null) {
+            this.idleWorkspaces.add(job.workspace);
+            job.workspace = null;
+        }
+    }
+
+    /**
+     * 图片处理完成（或失败），释放资源并完成 future
+     */
+    private void finish(Job job) {
+        this.releaseResources(job);
+        if (job.ownsImage && job.image != null) {
+            job.image.release();
+        }
+        job.image = null;
+
+        if (!this.ordered) {
+            complete(job);
+            return;
+        }
+
+        // 按序号交付：同一时刻只有一个线程在完成 future，保证回调按提交顺序执行
+        synchronized (this.completed) {
+            this.completed.put(job.sequence, job);
+            Job next;
+            while ((next = this.completed.remove(this.nextDelivery)) != null) {
+                this.deliverable.add(next);
+                this.nextDelivery++;
+            }
+            if (this.delivering) {
+                return;
+            }
+            this.delivering = true;
+        }
+        while (true) {
+            Job next;
+            synchronized (this.completed) {
+                next = this.deliverable.poll();
+                if (next == null) {
+                    this.delivering = false;
+                    return;
+                }
+            }
+            complete(next);
+        }
+    }
+
+    private static void complete(Job job) {
+        if (job.error != null) {
+            job.future.completeExceptionally(job.error instanceof AiException ? job.error : new AiException(job.error));
+        } else {
+            job.future.complete(job.poses);
+        }
+    }
+
+    /**
+     * 停止接受新的图片，等待已提交的图片处理完成后停止所有线程并释放工作区
+     */
+    @Override
+    public void close() {
+        this.closeLock.writeLock().lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+        } finally {
+            this.closeLock.writeLock().unlock();
+        }
+
+        // 按顺序停止各个阶段，上游停止后其队列中的图片都已进入下游
+        for (Stage stage : this.stages) {
+            stage.shutdown();
+        }
+        for (PreprocessWorkspace workspace : this.workspaces) {
+            workspace.close();
+        }
+    }
+
+}
@@ -3,11 +3,16 @@ package com.fh.gdk.ai.yolo;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ai.onnxruntime.*;
 import com.fh.gdk.ai.AiException;
-import com.fh.gdk.ai.util.Letterbox;
+import com.fh.gdk.ai.util.ChwTranspose;
+import com.fh.gdk.ai.util.Suppression;
+import com.fh.gdk.ai.util.WindowLevel;
 import org.opencv.core.*;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
@@ -26,6 +31,8 @@ public class Yolov8 implements AutoCloseable {
     // 根据图像大小按比例控制点大小及线粗
     public static final Integer DOT_RADIUS_RATIO = 268;
     public static final Integer LINE_THICKNESS_RATIO = 333;
+    // 最多保留的空闲工作区数量，即通常的最大并发推理数
+    private static final int MAX_IDLE_WORKSPACES = Runtime.getRuntime().availableProcessors();
 
     protected final OrtEnvironment env;
     protected final OrtSession session;
@@ -43,9 +50,36 @@ public class Yolov8 implements AutoCloseable {
     protected final OnnxJavaType outputType;
     protected final long outputNumElements;
 
-    // 置信度
-    protected float confThreshold;
-    protected float iouThreshold;
+    // 根据 onnx 自定义元数据解析的模型规格
+    protected final ModelSpec spec;
+    // 推理尺寸，动态尺寸的模型可以在运行时修改
+    private volatile int inferWidth;
+    private volatile int inferHeight;
+    // 按图片选择推理尺寸，为 null 时使用固定的推理尺寸
+    private volatile AdaptiveInputSize adaptiveInputSize;
+    // 灰度输入（CV_8UC1、CV_16UC1）的窗宽窗位，为 null 时自动选择
+    private volatile WindowLevel windowLevel;
+    // 空闲的预处理工作区，按推理尺寸分组，键为 (宽 << 32 | 高)。推理时借出、结束后归还，不与线程绑定。
+    // 所有尺寸合计最多保留 MAX_IDLE_WORKSPACES 个，自适应尺寸产生很多种宽高时也不会无限增长
+    private final ConcurrentMap<Long, Queue<PreprocessWorkspace>> idleWorkspaces = new ConcurrentHashMap<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    // 默认置信度，可以在每次调用时单独指定
+    protected volatile float confThreshold;
+    protected volatile float iouThreshold;
+    // 非极大值抑制前最多保留的候选框数量，<=0 表示不限制
+    protected volatile int nmsTopK = 0;
+
+    private final OutputDecoder<PosePredictResult> poseDecoder = this::decodePose;
+
+    /**
+     * 解析单张图片的模型输出 [n, 锚点]，过滤低置信度并进行非极大值抑制
+     */
+    protected interface OutputDecoder<R> {
+        List<R> decode(FloatBuffer outputData, int offset, int anchors, PreprocessWorkspace workspace,
+                       ImageMetaData imgMetaData, float confThreshold, Suppression suppression);
+    }
 
 
     public Yolov8(String modelPath) {
@@ -57,6 +91,19 @@ public class Yolov8 implements AutoCloseable {
     }
 
     public Yolov8(String modelPath, float confThreshold, float iouThreshold, int gpuDeviceId) {
+        this(modelPath, null, confThreshold, iouThreshold, gpuDeviceId, 0);
+    }
+
+    /**
+     * 从已加载到内存的模型数据创建，用于多个实例共享同一份模型文件（见 {@link Yolov8Pool}）
+     * @param modelBytes 模型文件内容
+     * @param intraOpNumThreads 单个算子内部的并行线程数，&lt;=0 表示使用 onnxruntime 的默认值
+     */
+    public Yolov8(byte[] modelBytes, float confThreshold, float iouThreshold, int gpuDeviceId, int intraOpNumThreads) {
+        this(null, modelBytes, confThreshold, iouThreshold, gpuDeviceId, intraOpNumThreads);
+    }
+
+    private Yolov8(String modelPath, byte[] modelBytes, float confThreshold, float iouThreshold, int gpuDeviceId, int intraOpNumThreads) {
         this.confThreshold = confThreshold;
         this.iouThreshold = iouThreshold;
 
@@ -71,7 +118,16 @@ public class Yolov8 implements AutoCloseable {
                 sessionOptions.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
             }
 
-            this.session = this.env.createSession(modelPath, sessionOptions);
+            // 多个 session 并存时，限制每个 session 的线程数，避免线程过度竞争
+            if (intraOpNumThreads > 0) {
+                sessionOptions.setIntraOpNumThreads(intraOpNumThreads);
+                sessionOptions.setInterOpNumThreads(1);
+                sessionOptions.setExecutionMode(OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL);
+            }
+
+            this.session = modelBytes != null
+                    ? this.env.createSession(modelBytes, sessionOptions)
+                    : this.env.createSession(modelPath, sessionOptions);
 
             // 解析模型输入参数元数据信息
             this.inputName = this.session.getInputNames().iterator().next();
@@ -93,6 +149,10 @@ public class Yolov8 implements AutoCloseable {
             this.outputType = ouputTensorInfo.type;
             this.outputNumElements = ouputTensorInfo.getNumElements();
 
+            this.spec = ModelSpec.parse(this.session.getMetadata().getCustomMetadata(), this.inputShape, this.outputShape);
+            this.inferWidth = this.spec.getWidth();
+            this.inferHeight = this.spec.getHeight();
+
         } catch (Exception e) {
             throw new AiException("Failed to init YOLO-onnx model environment!", e);
         }
@@ -113,27 +173,112 @@ public class Yolov8 implements AutoCloseable {
      * @return 预处理后的图像
      */
     protected float[] preprocessImage(Mat inputImage) {
-        Mat image = inputImage.clone();
-        // 1.转换 BGR -> RGB
-        Imgproc.cvtColor(image, image, Imgproc.COLOR_BGR2RGB);
+        PreprocessWorkspace workspace = this.borrowWorkspace(this.inferWidth, this.inferHeight);
+        try {
+            workspace.ensureCapacity(1);
+            workspace.preprocess(0, inputImage, this.windowLevel, new ImageMetaData());
+
+            float[] imageData = new float[this.spec.getChannels() * workspace.getHeight() * workspace.getWidth()];
+            if (OnnxJavaType.FLOAT == this.inputType) {
+                FloatBuffer chw = workspace.getInputBuffer().asFloatBuffer();
+                chw.get(imageData);
+            } else {
+                // UINT8 模型的输入内存中是未归一化的字节
+                ByteBuffer chw = workspace.getInputBuffer();
+                for (int i = 0; i < imageData.length; i++) {
+                    imageData[i] = (chw.get(i) & 0xFF) / 255f;
+                }
+            }
+            return imageData;
+        } finally {
+            this.returnWorkspace(workspace);
+        }
+    }
 
-        // 2.调整图像大小 inputShape=(1,3,640,640)
-        final int netw = (int) this.inputShape[2];
-        final int neth = (int) this.inputShape[3];
-        Letterbox letterbox = new Letterbox(netw, neth);
-        letterbox.setStride(32);
-        image = letterbox.letterbox(image);
+    /**
+     * 创建一个与当前模型输入匹配的预处理工作区，由调用方负责关闭。
+     * 适用于由调用方自己管理线程与工作区对应关系的场景，例如池化的 session。
+     */
+    public PreprocessWorkspace createWorkspace() {
+        return this.createWorkspace(this.inferWidth, this.inferHeight);
+    }
 
-        // 3.归一化: 确保图像的RGB值被正确归一化到[0, 1]或[-1, 1]范围
-        image.convertTo(image, CvType.CV_32FC3, 1.0 / 255.0);
+    /**
+     * 创建指定推理尺寸的预处理工作区，由调用方负责关闭，关闭模型时不会关闭。固定尺寸的模型只能使用模型的尺寸
+     */
+    public PreprocessWorkspace createWorkspace(int width, int height) {
+        this.spec.checkInputSize(width, height);
+        PreprocessWorkspace workspace = new PreprocessWorkspace(this.env, this.inputName, this.inputType,
+                this.spec.getChannels(), height, width, this.spec.getStride());
+        // 输出形状可以确定时（batch 维度除外），预先分配输出内存，由 onnxruntime 直接写入
+        if (OnnxJavaType.FLOAT == this.outputType && this.outputShape.length == 3) {
+            final int anchors = this.spec.isDynamicSize() || this.outputShape[2] <= 0
+                    ? this.spec.anchors(width, height) : (int) this.outputShape[2];
+            workspace.bindOutput(this.outputName, this.spec.getOutputChannels(), anchors);
+        }
+        return workspace;
+    }
 
-        // 4.将图像数据展平为一维数组
-        float[] imageData = new float[(int) (image.total() * image.channels())];
-        image.get(0, 0, imageData);
+    /**
+     * 借出一个指定推理尺寸的工作区，没有空闲的工作区时创建。使用完后必须调用 {@link #returnWorkspace} 归还
+     */
+    protected PreprocessWorkspace borrowWorkspace(int width, int height) {
+        Queue<PreprocessWorkspace> idle = this.idleWorkspaces.get(workspaceKey(width, height));
+        PreprocessWorkspace workspace = idle == null ? null : idle.poll();
+        if (workspace == null) {
+            return this.createWorkspace(width, height);
+        }
+        this.idleCount.decrementAndGet();
+        return workspace;
+    }
 
-        // 5.调整图片中的 [宽度,高度,通道] -> [通道,宽度,高度]
-        imageData = hwc2chw(imageData);
-        return imageData;
+    /**
+     * 归还 {@link #borrowWorkspace} 借出的工作区。空闲的工作区已满时先释放其它尺寸的一个，
+     * 没有其它尺寸的空闲工作区或模型已关闭时释放归还的工作区
+     */
+    protected void returnWorkspace(PreprocessWorkspace workspace) {
+        if (this.closed) {
+            workspace.close();
+            return;
+        }
+        Queue<PreprocessWorkspace> idle = this.idleWorkspaces.computeIfAbsent(
+                workspaceKey(workspace.getWidth(), workspace.getHeight()), k -> new ConcurrentLinkedQueue<>());
+        if (this.idleCount.incrementAndGet() > MAX_IDLE_WORKSPACES && !this.evictIdle(idle)) {
+            this.idleCount.decrementAndGet();
+            workspace.close();
+            return;
+        }
+        idle.offer(workspace);
+        // 归还的同时模型被关闭，close() 可能已经清理过这一组
+        if (this.closed) {
+            closeAll(idle);
+        }
+    }
+
+    /**
+     * 释放 except 以外的任意一组中的一个空闲工作区
+     */
+    private boolean evictIdle(Queue<PreprocessWorkspace> except) {
+        for (Queue<PreprocessWorkspace> idle : this.idleWorkspaces.values()) {
+            PreprocessWorkspace workspace;
+            if (idle != except && (workspace = idle.poll()) != null) {
+                this.idleCount.decrementAndGet();
+                workspace.close();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long workspaceKey(int width, int height) {
+        return ((long) width << 32) | height;
+    }
+
+    private static void closeAll(Queue<PreprocessWorkspace> workspaces) {
+        PreprocessWorkspace workspace;
+        while ((workspace = workspaces.poll()) != null) {
+            workspace.close();
+        }
     }
 
     /**
@@ -147,142 +292,241 @@ public class Yolov8 implements AutoCloseable {
     }
 
     public List<PosePredictResult> predictPose(Mat inputImg) throws AiException {
+        return this.predictPose(inputImg, this.confThreshold, this.iouThreshold);
+    }
+
+    /**
+     * 使用本次调用指定的阈值进行姿态推理，多线程共享同一个实例时应使用此方法，而不是修改实例的默认阈值
+     * @param inputImg 输入图像
+     * @param confThreshold 置信度阈值
+     * @param iouThreshold 非极大值抑制的IOU阈值
+     * @return 推理结果
+     * @throws AiException
+     */
+    public List<PosePredictResult> predictPose(Mat inputImg, float confThreshold, float iouThreshold) throws AiException {
+        return this.predictPose(inputImg, confThreshold, Suppression.hard(iouThreshold));
+    }
+
+    /**
+     * 使用指定的非极大值抑制策略进行姿态推理，例如人群密集时使用 {@link Suppression#oks(float)} 或 {@link Suppression#softGaussian()}
+     * @param inputImg 输入图像
+     * @param confThreshold 置信度阈值
+     * @param suppression 非极大值抑制策略
+     * @return 推理结果
+     * @throws AiException
+     */
+    public List<PosePredictResult> predictPose(Mat inputImg, float confThreshold, Suppression suppression) throws AiException {
+        return this.predict(inputImg, confThreshold, suppression, this.poseDecoder);
+    }
+
+    /**
+     * 单张图片推理，启用 {@link AdaptiveInputSize} 时按图片选择推理尺寸
+     */
+    protected <R> List<R> predict(Mat inputImg, float confThreshold, Suppression suppression,
+                                  OutputDecoder<R> decoder) throws AiException {
+        AdaptiveInputSize adaptive = this.adaptiveInputSize;
+        if (adaptive == null) {
+            return this.predictBatch(Collections.singletonList(inputImg), this.inferWidth, this.inferHeight,
+                    confThreshold, suppression, decoder).get(0);
+        }
+
+        final int level = adaptive.select(inputImg.width(), inputImg.height());
+        final int[] shape = adaptive.shape(level, inputImg.width(), inputImg.height(), this.spec.getStride());
+        final long start = System.nanoTime();
+        List<R> results = this.predictBatch(Collections.singletonList(inputImg), shape[0], shape[1],
+                confThreshold, suppression, decoder).get(0);
+        adaptive.record(level, System.nanoTime() - start);
+        return results;
+    }
+
+    /**
+     * 批量姿态推理：将多张图片预处理到同一个 [N,C,H,W] 输入张量中，一次 session.run 完成推理。
+     * <p>对于动态 batch 的模型（inputShape[0] = -1），所有图片在一次推理中完成；
+     * 对于固定 batch 的模型（如导出时 batch=1），按模型的 batch 大小分块推理。</p>
+     *
+     * @param inputImgs 输入图像列表
+     * @return 与输入图像一一对应的推理结果
+     * @throws AiException
+     */
+    public List<List<PosePredictResult>> predictPoseBatch(List<Mat> inputImgs) throws AiException {
+        return this.predictPoseBatch(inputImgs, this.confThreshold, this.iouThreshold);
+    }
+
+    public List<List<PosePredictResult>> predictPoseBatch(List<Mat> inputImgs, float confThreshold, float iouThreshold) throws AiException {
+        return this.predictPoseBatch(inputImgs, confThreshold, Suppression.hard(iouThreshold));
+    }
+
+    public List<List<PosePredictResult>> predictPoseBatch(List<Mat> inputImgs, float confThreshold, Suppression suppression) throws AiException {
+        return this.predictBatch(inputImgs, this.inferWidth, this.inferHeight, confThreshold, suppression, this.poseDecoder);
+    }
+
+    /**
+     * 使用指定的预处理工作区进行批量姿态推理，工作区不能同时被其它线程使用
+     */
+    public List<List<PosePredictResult>> predictPoseBatch(List<Mat> inputImgs, PreprocessWorkspace workspace,
+                                                          float confThreshold, float iouThreshold) throws AiException {
+        return this.predictPoseBatch(inputImgs, workspace, confThreshold, Suppression.hard(iouThreshold));
+    }
+
+    public List<List<PosePredictResult>> predictPoseBatch(List<Mat> inputImgs, PreprocessWorkspace workspace,
+                                                          float confThreshold, Suppression suppression) throws AiException {
+        return this.predictBatch(inputImgs, workspace, confThreshold, suppression, this.poseDecoder);
+    }
+
+    /**
+     * 借出指定推理尺寸的工作区进行批量推理
+     */
+    protected <R> List<List<R>> predictBatch(List<Mat> inputImgs, int width, int height, float confThreshold,
+                                             Suppression suppression, OutputDecoder<R> decoder) throws AiException {
+        PreprocessWorkspace workspace = this.borrowWorkspace(width, height);
         try {
-            // 预处理图像
-            Mat image = inputImg.clone();
-            // 1.转换 BGR -> RGB
-            Imgproc.cvtColor(image, image, Imgproc.COLOR_BGR2RGB);
-
-            // 2.调整图像大小 inputShape=(1,3,640,640)
-            Letterbox letterbox = new Letterbox((int) this.inputShape[2], (int) this.inputShape[3]);
-            letterbox.setStride(32);
-            image = letterbox.letterbox(image);
-
-            // 保存下输入图片预处理后的相关元数据，可以用于自定义绘图
-            final double ratio = letterbox.getRatio();
-            final double dw = letterbox.getDw();
-            final double dh = letterbox.getDh();
-            //final int rows = letterbox.getHeight();
-            //final int cols = letterbox.getWidth();
-            ImageMetaData imgMetaData = new ImageMetaData();
-            imgMetaData.setDw(dw);
-            imgMetaData.setDh(dh);
-            imgMetaData.setRatio(ratio);
-            imgMetaData.setSrcWith(inputImg.width());
-            imgMetaData.setSrcHeight(inputImg.height());
-
-            // 创建输入 OnnxTensor 对象
-            OnnxTensor inputTensor;
-            if (OnnxJavaType.UINT8 == this.inputType) {
-                byte[] whc = new byte[(int) this.inputNumElements];
-                image.get(0, 0, whc);
-                // 调整图片中的 [宽度,高度,通道] -> [通道,宽度,高度]
-                byte[] chw = hwc2chw(whc);
-                inputTensor = OnnxTensor.createTensor(this.env, ByteBuffer.wrap(chw), this.inputShape, this.inputType);
-            }
-            else if (OnnxJavaType.FLOAT == this.inputType) {
-                // 归一化: 确保图像的RGB值被正确归一化到[0, 1]或[-1, 1]范围
-                image.convertTo(image, CvType.CV_32FC1, 1. / 255);
-                float[] whc = new float[(int) this.inputNumElements];
-                image.get(0, 0, whc);
-                // 调整图片中的 [宽度,高度,通道] -> [通道,宽度,高度]
-                float[] chw = hwc2chw(whc);
-                inputTensor = OnnxTensor.createTensor(this.env, FloatBuffer.wrap(chw), this.inputShape);
-            }
-            else {
-                throw new AiException("Unsupported onnx-input-type: "+ this.inputType);
-            }
+            return this.predictBatch(inputImgs, workspace, confThreshold, suppression, decoder);
+        } finally {
+            this.returnWorkspace(workspace);
+        }
+    }
 
-            HashMap<String, OnnxTensor> inputs = new HashMap<>();
-            inputs.put(this.inputName, inputTensor);
-
-            // 运行模型
-            OrtSession.Result output = session.run(inputs);
-            // 得到结果 float32[1, n, 8400]
-            float[][] outputData = ((float[][][]) output.get(0).getValue())[0];
-            // 转换矩阵，将 [n, 8400] 转换为 [8400, n]
-            outputData = transposeMatrix(outputData);
-
-            List<PosePredictResult> poseResults = new ArrayList<>();
-
-            // 先使用预置的置信度过滤掉一批低置信度的
-            float[] res;
-            for (int i = 0, len = outputData.length; i < len; i++) {
-                res = outputData[i];
-                // (bbox.x, bbox.y, bbox.w, bbox.h, conf, ...)
-                // res[4] = 当前框的置信度
-                if (res[4] > this.confThreshold) {
-                    poseResults.add(new PosePredictResult(res, 0).setImageMetaData(imgMetaData));
+    /**
+     * 批量推理，decoder 负责解析每张图片的输出
+     */
+    protected <R> List<List<R>> predictBatch(List<Mat> inputImgs, PreprocessWorkspace workspace, float confThreshold,
+                                             Suppression suppression, OutputDecoder<R> decoder) throws AiException {
+        final int total = inputImgs.size();
+        List<List<R>> batchResults = new ArrayList<>(total);
+        if (total == 0) {
+            return batchResults;
+        }
+
+        // 模型固定的 batch 大小，<=0 表示动态 batch
+        final int modelBatch = (int) this.inputShape[0];
+        final int chunkSize = modelBatch > 0 ? modelBatch : total;
+
+        try {
+            for (int from = 0; from < total; from += chunkSize) {
+                final int count = Math.min(chunkSize, total - from);
+                ImageMetaData[] imgMetaDatas = this.preprocess(workspace, inputImgs, from, count);
+                try (OrtSession.Result output = this.run(workspace, count)) {
+                    batchResults.addAll(this.postprocess(workspace, output, imgMetaDatas, confThreshold, suppression, decoder));
                 }
             }
-
-            // 对结果进行非极大值抑制：从剩下的一组存在重叠的边界框中选择最佳的边界框
-            poseResults = nms(poseResults, this.iouThreshold);
-            return poseResults;
+            return batchResults;
+        } catch (AiException e) {
+            throw e;
         } catch (Exception e) {
             throw new AiException(e);
         }
     }
 
     /**
-     * 调整 src中的 [宽度,高度,通道] ->[通道,宽度,高度]
-     * @param src 待调整的数组
-     * @return 调整后的结果
+     * 推理的第一步：将 inputImgs 中从 from 开始的 count 张图片预处理到工作区中。
+     * <p>{@link #preprocess}、{@link #run}、{@link #postprocess} 三个步骤可以在不同的线程中执行（例如流水线），
+     * 但同一个工作区在三个步骤完成之前不能用于其它推理。</p>
+     *
+     * @return 每张图片的元数据
      */
-    public static float[] hwc2chw(float[] src) {
-        float[] chw = new float[src.length];
-        int j = 0;
-        for (int ch = 0; ch < 3; ++ch) {
-            for (int i = ch; i < src.length; i += 3) {
-                chw[j] = src[i];
-                j++;
-            }
+    public ImageMetaData[] preprocess(PreprocessWorkspace workspace, List<Mat> inputImgs, int from, int count) {
+        workspace.ensureCapacity(this.batchSize(count));
+        ImageMetaData[] imgMetaDatas = new ImageMetaData[count];
+        final WindowLevel window = this.windowLevel;
+        for (int b = 0; b < count; b++) {
+            imgMetaDatas[b] = new ImageMetaData();
+            workspace.preprocess(b, inputImgs.get(from + b), window, imgMetaDatas[b]);
         }
-        return chw;
+        return imgMetaDatas;
     }
 
-    public static byte[] hwc2chw(byte[] src) {
-        byte[] chw = new byte[src.length];
-        int j = 0;
-        for (int ch = 0; ch < 3; ++ch) {
-            for (int i = ch; i < src.length; i += 3) {
-                chw[j] = src[i];
-                j++;
-            }
+    /**
+     * 推理的第二步：运行模型，输入为工作区中已预处理的 count 张图片。返回的结果在 {@link #postprocess} 之后必须关闭
+     */
+    public OrtSession.Result run(PreprocessWorkspace workspace, int count) throws OrtException {
+        // 固定 batch 的模型，图片数量不足时其余槽位的数据不会被使用，无需清理
+        final int batchSize = this.batchSize(count);
+        if (workspace.hasBoundOutput()) {
+            return this.session.run(workspace.inputs(batchSize), workspace.outputs(batchSize));
         }
-        return chw;
+        return this.session.run(workspace.inputs(batchSize));
     }
 
     /**
-     * 矩阵行列转换
+     * 同 {@link #run(PreprocessWorkspace, int)}，可以通过 runOptions 在其它线程中终止本次运行
      */
-    private static float[][] transposeMatrix(float[][] input) {
-        final int rows = input.length;
-        final int cols = input[0].length;
-        float[][] transposed = new float[cols][rows];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                transposed[j][i] = input[i][j];
-            }
+    public OrtSession.Result run(PreprocessWorkspace workspace, int count, OrtSession.RunOptions runOptions) throws OrtException {
+        final int batchSize = this.batchSize(count);
+        if (workspace.hasBoundOutput()) {
+            return this.session.run(workspace.inputs(batchSize), Collections.<String>emptySet(), workspace.outputs(batchSize), runOptions);
         }
-        return transposed;
+        return this.session.run(workspace.inputs(batchSize), runOptions);
     }
 
     /**
-     * 进行非最大抑制
+     * 推理的第三步：解析模型输出，过滤低置信度并进行非极大值抑制
+     *
+     * @return 与 imgMetaDatas 一一对应的推理结果
      */
-    private static List<PosePredictResult> nms(List<PosePredictResult> poses, final float iouThreshold) {
-        List<PosePredictResult> bestPoses = new ArrayList<>();
-        // 先按照置信度 confidence 降序排序
-        poses.sort(Comparator.comparing(a -> a.score));
-        // standard nms
-        while (!poses.isEmpty()) {
-            PosePredictResult bestPose = poses.remove(poses.size() - 1);  // 弹出当前置信度最高的框
-            bestPoses.add(bestPose);
-            poses = poses.stream().filter(a -> Yolov8.computeIOU(a.bbox, bestPose.bbox) < iouThreshold).collect(Collectors.toList());
+    public List<List<PosePredictResult>> postprocess(PreprocessWorkspace workspace, OrtSession.Result output,
+                                                     ImageMetaData[] imgMetaDatas, float confThreshold,
+                                                     Suppression suppression) throws OrtException {
+        return this.postprocess(workspace, output, imgMetaDatas, confThreshold, suppression, this.poseDecoder);
+    }
+
+    protected <R> List<List<R>> postprocess(PreprocessWorkspace workspace, OrtSession.Result output,
+                                            ImageMetaData[] imgMetaDatas, float confThreshold,
+                                            Suppression suppression, OutputDecoder<R> decoder) throws OrtException {
+        // 得到结果 float32[N, n, 8400]，直接按原始的 [n, 8400] 布局解析，不再转换为 Java 多维数组
+        FloatBuffer outputData;
+        int channels;
+        int anchors;
+        if (workspace.hasBoundOutput()) {
+            outputData = workspace.getOutputBuffer();
+            channels = workspace.getOutputChannels();
+            anchors = workspace.getOutputAnchors();
+        } else {
+            OnnxTensor outputTensor = (OnnxTensor) output.get(0);
+            outputData = outputTensor.getFloatBuffer();
+            long[] shape = outputTensor.getInfo().getShape();
+            channels = (int) shape[1];
+            anchors = (int) shape[2];
         }
+        List<List<R>> results = new ArrayList<>(imgMetaDatas.length);
+        for (int b = 0; b < imgMetaDatas.length; b++) {
+            results.add(decoder.decode(outputData, b * channels * anchors, anchors,
+                    workspace, imgMetaDatas[b], confThreshold, suppression));
+        }
+        return results;
+    }
 
-        return bestPoses;
+    /**
+     * count 张图片推理时实际使用的 batch 大小：固定 batch 的模型为模型的 batch 大小
+     */
+    private int batchSize(int count) {
+        final int modelBatch = (int) this.inputShape[0];
+        return modelBatch > 0 ? modelBatch : count;
+    }
+
+    /**
+     * 解析单张图片的模型输出 [n, 8400]，过滤低置信度并进行非极大值抑制
+     */
+    private List<PosePredictResult> decodePose(FloatBuffer outputData, int offset, int anchors,
+                                               PreprocessWorkspace workspace, ImageMetaData imgMetaData,
+                                               float confThreshold, Suppression suppression) {
+        if (!this.spec.isPose()) {
+            throw new AiException("Model task is " + this.spec.getTask() + ", not " + ModelSpec.TASK_POSE);
+        }
+        return workspace.decoder.decode(outputData, offset, anchors, this.spec.getNumClasses(), this.spec.getNumKeypoints(),
+                this.spec.getKeypointDims(), imgMetaData, confThreshold, suppression, this.nmsTopK);
+    }
+
+    /**
+     * 调整 src中的 [宽度,高度,通道] ->[通道,宽度,高度]
+     * @param src 待调整的数组
+     * @return 调整后的结果
+     */
+    public static float[] hwc2chw(float[] src) {
+        return ChwTranspose.hwc2chw(src);
+    }
+
+    public static byte[] hwc2chw(byte[] src) {
+        return ChwTranspose.hwc2chw(src);
     }
 
     /*protected static List<float[]> nonMaxSuppression(List<float[]> bboxes, float iouThreshold) {
@@ -327,28 +571,100 @@ public class Yolov8 implements AutoCloseable {
         bbox[3] = y + h * 0.5f;
     }
 
-    static int argmax(float[] a) {
-        float re = -Float.MAX_VALUE;
-        int arg = -1;
-        for (int i = 0; i < a.length; i++) {
-            if (a[i] >= re) {
-                re = a[i];
-                arg = i;
+    public ModelSpec getModelSpec() {
+        return this.spec;
+    }
+
+    /**
+     * 修改默认的推理尺寸，只适用于输入高宽为动态维度的模型。
+     * 较小的尺寸（例如 320、480）可以大幅降低推理耗时，但小目标的精度会下降
+     *
+     * @param width 宽度，必须是 {@link ModelSpec#getStride()} 的倍数
+     * @param height 高度，必须是 {@link ModelSpec#getStride()} 的倍数
+     */
+    public void setInferenceSize(int width, int height) {
+        this.spec.checkInputSize(width, height);
+        this.inferWidth = width;
+        this.inferHeight = height;
+    }
+
+    /**
+     * 单张图片推理（{@link #predictPose(Mat, float, Suppression)} 等）时按图片选择推理尺寸，只适用于输入高宽为动态维度的模型。
+     * 批量推理仍然使用 {@link #setInferenceSize(int, int)} 设置的尺寸
+     *
+     * @param adaptiveInputSize 为 null 时关闭
+     */
+    public void setAdaptiveInputSize(AdaptiveInputSize adaptiveInputSize) {
+        if (adaptiveInputSize != null) {
+            if (!this.spec.isDynamicSize()) {
+                throw new AiException("Adaptive input size requires a model with dynamic input height and width");
+            }
+            for (int size : adaptiveInputSize.getSizes()) {
+                this.spec.checkInputSize(size, size);
             }
         }
-        return arg;
+        this.adaptiveInputSize = adaptiveInputSize;
+    }
+
+    /**
+     * 灰度输入（例如 16 位的 X 光片，CV_16UC1）的窗宽窗位，对之后的所有推理生效，BGR 输入不受影响
+     *
+     * @param windowLevel 为 null 时自动选择：8 位图像使用 [0, 255]，16 位图像使用每张图片的最小值与最大值
+     */
+    public void setWindowLevel(WindowLevel windowLevel) {
+        this.windowLevel = windowLevel;
     }
 
+    public WindowLevel getWindowLevel() {
+        return this.windowLevel;
+    }
+
+    public int getInferenceWidth() {
+        return this.inferWidth;
+    }
+
+    public int getInferenceHeight() {
+        return this.inferHeight;
+    }
+
+    public float getConfidenceThreshold() {
+        return this.confThreshold;
+    }
+
+    public float getIouThreshold() {
+        return this.iouThreshold;
+    }
+
+    /**
+     * 设置默认置信度阈值，只影响未指定阈值的调用
+     */
     public void setConfidenceThreshold(float confThreshold) {
         this.confThreshold = confThreshold;
     }
 
+    /**
+     * 设置默认IOU阈值，只影响未指定阈值的调用
+     */
     public void setIouThreshold(float iouThreshold) {
         this.iouThreshold = iouThreshold;
     }
 
+    /**
+     * 设置非极大值抑制前最多保留的候选框数量（按置信度从高到低），<=0 表示不限制。
+     * 置信度阈值较低、候选框很多时可以减少非极大值抑制的耗时
+     */
+    public void setNmsTopK(int nmsTopK) {
+        this.nmsTopK = nmsTopK;
+    }
+
     @Override
     public void close() throws Exception {
+        // 借出中的工作区在归还时释放
+        this.closed = true;
+        for (Queue<PreprocessWorkspace> idle : this.idleWorkspaces.values()) {
+            closeAll(idle);
+        }
+
         if (this.session != null) {
             this.session.close();
         }
@@ -0,0 +1,325 @@
+package com.fh.gdk.ai.yolo;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.fh.gdk.ai.AiException;
+import com.fh.gdk.ai.AiTimeoutException;
+import com.fh.gdk.ai.util.Suppression;
+import org.opencv.core.Mat;
+
+/**
+ * 带截止时间的异步推理接口。
+ * <p>推理在固定数量的平台线程中执行，调用方（包括虚拟线程）只等待返回的 future，
+ * 不会因为阻塞在 native 的 session.run 中而占住载体线程。</p>
+ * <ul>
+ *     <li>每个请求指定截止时间。开始执行时如果剩余时间已经不足一次推理的平均耗时，直接以 {@link AiTimeoutException} 失败，
+ *     过载时不再浪费时间处理注定超时的请求</li>
+ *     <li>到达截止时间时 future 以 {@link AiTimeoutException} 失败：仍在队列中的请求从队列中移除并立即失败；
+ *     已开始执行的请求通过 {@link OrtSession.RunOptions#setTerminate(boolean)} 终止 session.run，
+ *     推理线程不再使用输入图像之后 future 才失败</li>
+ *     <li>future 被取消时与到达截止时间的处理相同，已开始执行的请求在推理线程结束后才变为已取消</li>
+ *     <li>等待队列已满时立即以 {@link AiException} 失败</li>
+ * </ul>
+ * <p>不负责关闭模型。</p>
+ */
+public class Yolov8Async implements AutoCloseable {
+
+    private static final AtomicInteger POOL_ID = new AtomicInteger();
+
+    private final Yolov8 model;
+    private final ThreadPoolExecutor executor;
+    // 到达截止时间时移除排队中的请求或终止运行中的推理
+    private final ScheduledThreadPoolExecutor terminator;
+    // 每个推理线程固定使用一个工作区，关闭时统一释放
+    private final ThreadLocal<PreprocessWorkspace> workspace;
+    private final Queue<PreprocessWorkspace> workspaces = new ConcurrentLinkedQueue<>();
+    // 最近的请求处理耗时（纳秒）的指数移动平均
+    private final AtomicLong averageNanos = new AtomicLong();
+
+    /**
+     * @param model 模型
+     * @param threads 推理线程数
+     * @param queueCapacity 等待队列的容量
+     */
+    public Yolov8Async(Yolov8 model, int threads, int queueCapacity) {
+        this.model = model;
+        this.workspace = ThreadLocal.withInitial(() -> {
+            PreprocessWorkspace workspace = model.createWorkspace();
+            this.workspaces.add(workspace);
+            return workspace;
+        });
+
+        final int poolId = POOL_ID.incrementAndGet();
+        final AtomicInteger threadId = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "yolo-async-" + poolId + "-" + threadId.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.terminator = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "yolo-async-" + poolId + "-terminator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 按时完成的请求取消定时器后立即从队列中移除
+        this.terminator.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * 使用模型的默认阈值进行姿态推理
+     */
+    public CompletableFuture<List<PosePredictResult>> predictPose(Mat inputImg, long timeout, TimeUnit unit) {
+        return this.predictPose(inputImg, this.model.getConfidenceThreshold(),
+                Suppression.hard(this.model.getIouThreshold()), timeout, unit);
+    }
+
+    /**
+     * 异步姿态推理。在返回的 future 完成之前（包括超时和取消），调用方不能修改或释放 inputImg。
+     * 只能通过 timeout 参数和 cancel 提前结束，不要对返回的 future 调用 complete、orTimeout 等方法
+     *
+     * @param timeout 从调用时开始计算的超时时间
+     * @return 超时时以 {@link AiTimeoutException} 失败，可以通过 cancel 取消
+     */
+    public CompletableFuture<List<PosePredictResult>> predictPose(Mat inputImg, float confThreshold, Suppression suppression,
+                                                                  long timeout, TimeUnit unit) {
+        final long timeoutNanos = unit.toNanos(timeout);
+        Request request = new Request(inputImg, confThreshold, suppression, System.nanoTime() + timeoutNanos);
+        try {
+            this.executor.execute(request);
+        } catch (RejectedExecutionException e) {
+            request.future.completeExceptionally(new AiException("Yolov8Async queue is full or closed", e));
+            return request.future;
+        }
+        try {
+            request.deadlineTimer = this.terminator.schedule(request::expire, timeoutNanos, TimeUnit.NANOSECONDS);
+            if (request.future.isDone()) {
+                request.deadlineTimer.cancel(false);
+            }
+        } catch (RejectedExecutionException ignored) {
+            // 正在关闭，请求仍会被处理
+        }
+        return request.future;
+    }
+
+    /**
+     * 等待队列中的请求数
+     */
+    public int getQueueSize() {
+        return this.executor.getQueue().size();
+    }
+
+    private final class Request implements Runnable {
+        final Mat inputImg;
+        final float confThreshold;
+        final Suppression suppression;
+        final long deadline;
+        final RequestFuture future = new RequestFuture(this);
+
+        // 推理线程已从队列中取出该请求
+        private boolean started;
+        // 到达截止时间或被取消，推理线程不再开始新的步骤
+        private boolean stopped;
+        private boolean cancelled;
+        // 正在运行的 session.run 的参数，为 null 表示不在运行中
+        private OrtSession.RunOptions runOptions;
+        // 截止时间定时器，请求完成后取消
+        volatile ScheduledFuture<?> deadlineTimer;
+
+        Request(Mat inputImg, float confThreshold, Suppression suppression, long deadline) {
+            this.inputImg = inputImg;
+            this.confThreshold = confThreshold;
+            this.suppression = suppression;
+            this.deadline = deadline;
+            this.future.whenComplete((poses, e) -> {
+                ScheduledFuture<?> timer = this.deadlineTimer;
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+            });
+        }
+
+        /**
+         * 到达截止时间
+         */
+        void expire() {
+            this.stop(false);
+        }
+
+        /**
+         * 到达截止时间或被取消。仍在队列中的请求从队列中移除并立即完成；
+         * 已开始执行的请求只终止 session.run，由推理线程在不再使用 inputImg 之后完成 future
+         */
+        void stop(boolean cancel) {
+            synchronized (this) {
+                if (this.stopped || this.future.isDone()) {
+                    return;
+                }
+                this.stopped = true;
+                this.cancelled = cancel;
+                if (this.runOptions != null) {
+                    try {
+                        this.runOptions.setTerminate(true);
+                    } catch (OrtException ignored) {
+                    }
+                }
+                if (this.started) {
+                    return;
+                }
+            }
+            // 移除成功时推理线程不会再执行该请求；失败说明刚被取出，由 run() 开头的检查完成
+            if (Yolov8Async.this.executor.remove(this)) {
+                this.finishStopped("while waiting in queue", null);
+            }
+        }
+
+        @Override
+        public void run() {
+            final boolean stoppedInQueue;
+            synchronized (this) {
+                this.started = true;
+                stoppedInQueue = this.stopped;
+            }
+            if (stoppedInQueue) {
+                this.finishStopped("while waiting in queue", null);
+                return;
+            }
+            final long start = System.nanoTime();
+            final long remaining = this.deadline - start;
+            if (remaining <= 0 || remaining < Yolov8Async.this.averageNanos.get()) {
+                this.future.completeExceptionally(new AiTimeoutException("Deadline exceeded while waiting in queue, remaining "
+                        + TimeUnit.NANOSECONDS.toMillis(remaining) + "ms"));
+                return;
+            }
+
+            PreprocessWorkspace workspace = Yolov8Async.this.workspace.get();
+            try (OrtSession.RunOptions runOptions = new OrtSession.RunOptions()) {
+                // 预处理之后不再使用 inputImg
+                ImageMetaData[] imgMetaDatas = Yolov8Async.this.model.preprocess(workspace, Collections.singletonList(this.inputImg), 0, 1);
+                synchronized (this) {
+                    if (!this.stopped) {
+                        this.runOptions = runOptions;
+                    }
+                }
+                if (!this.isRunning()) {
+                    this.finishStopped("before inference", null);
+                    return;
+                }
+                try (OrtSession.Result output = Yolov8Async.this.model.run(workspace, 1, runOptions)) {
+                    List<PosePredictResult> poses = Yolov8Async.this.model.postprocess(workspace, output, imgMetaDatas,
+                            this.confThreshold, this.suppression).get(0);
+                    Yolov8Async.this.record(System.nanoTime() - start);
+                    if (this.isStopped()) {
+                        this.finishStopped("during inference", null);
+                    } else {
+                        this.future.complete(poses);
+                    }
+                } catch (OrtException e) {
+                    if (this.isStopped()) {
+                        this.finishStopped("during inference", e);
+                    } else {
+                        this.future.completeExceptionally(new AiException(e));
+                    }
+                } finally {
+                    synchronized (this) {
+                        this.runOptions = null;
+                    }
+                }
+            } catch (Throwable e) {
+                if (this.isStopped()) {
+                    this.finishStopped("during inference", e);
+                } else {
+                    this.future.completeExceptionally(e instanceof AiException ? e : new AiException(e));
+                }
+            }
+        }
+
+        /**
+         * 推理线程不会再使用 inputImg 之后，按停止的原因完成 future
+         */
+        private void finishStopped(String stage, Throwable cause) {
+            final boolean cancelled;
+            synchronized (this) {
+                cancelled = this.cancelled;
+            }
+            if (cancelled) {
+                this.future.cancelNow();
+            } else {
+                this.future.completeExceptionally(new AiTimeoutException("Deadline exceeded " + stage, cause));
+            }
+        }
+
+        private synchronized boolean isRunning() {
+            return this.runOptions != null;
+        }
+
+        private synchronized boolean isStopped() {
+            return this.stopped;
+        }
+    }
+
+    /**
+     * cancel 与截止时间相同：推理线程仍可能使用 inputImg 时只终止推理，推理线程结束后 future 才变为已取消，
+     * 此时 cancel 返回 false
+     */
+    private static final class RequestFuture extends CompletableFuture<List<PosePredictResult>> {
+        private final Request request;
+
+        RequestFuture(Request request) {
+            this.request = request;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            this.request.stop(true);
+            return this.isCancelled();
+        }
+
+        void cancelNow() {
+            super.cancel(false);
+        }
+    }
+
+    private void record(long nanos) {
+        // 权重 1/8 的指数移动平均
+        this.averageNanos.updateAndGet(avg -> avg == 0 ? nanos : avg + (nanos - avg) / 8);
+    }
+
+    /**
+     * 停止接受新的请求，等待已提交的请求处理完成，然后释放工作区
+     */
+    @Override
+    public void close() {
+        this.executor.shutdown();
+        try {
+            while (!this.executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // 继续等待
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.terminator.shutdownNow();
+        // 被中断时推理线程可能仍在使用工作区，不能释放
+        if (this.executor.isTerminated()) {
+            PreprocessWorkspace workspace;
+            while ((workspace = this.workspaces.poll()) != null) {
+                workspace.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,258 @@
+package com.fh.gdk.ai.yolo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.fh.gdk.ai.AiException;
+import com.fh.gdk.ai.util.Suppression;
+import org.opencv.core.Mat;
+
+/**
+ * 动态批处理：把并发提交的单张图片请求合并为一个 batch 推理。
+ * <p>工作线程取到第一个请求后，继续收集后续的请求，直到达到最大 batch 大小，或者第一个请求已经等待了 maxWait，
+ * 然后一次 session.run 完成这一批图片的推理，再分别完成每个请求的 future。
+ * 每个结果中的 {@link PosePredictResult#getImageMetaData()} 对应各自的图片。</p>
+ * <p>模型需要支持动态 batch 或者导出时使用了固定的 batch 大小，否则合并没有意义。
+ * 固定 batch 的模型，最大 batch 大小不会超过模型的 batch 大小。</p>
+ */
+public class Yolov8BatchScheduler implements AutoCloseable {
+
+    private static final class Request {
+        final Mat inputImg;
+        final long enqueuedAt;
+        final CompletableFuture<List<PosePredictResult>> future = new CompletableFuture<>();
+
+        Request(Mat inputImg) {
+            this.inputImg = inputImg;
+            this.enqueuedAt = System.nanoTime();
+        }
+    }
+
+    // 通知工作线程退出
+    private static final Request POISON = new Request(null);
+
+    private final Yolov8 model;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final float confThreshold;
+    private final Suppression suppression;
+
+    private final BlockingQueue<Request> queue;
+    private final Thread[] workers;
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed = false;
+
+    // 统计：batch 数量、图片数量、各个 batch 大小出现的次数
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong images = new AtomicLong();
+    private final AtomicLongArray batchSizeHistogram;
+
+    /**
+     * 使用模型默认的阈值，一个工作线程
+     *
+     * @param maxBatchSize 最大 batch 大小
+     * @param maxWait 第一个请求最多等待多久以凑满一个 batch，例如 2~5 毫秒
+     */
+    public Yolov8BatchScheduler(Yolov8 model, int maxBatchSize, long maxWait, TimeUnit unit) {
+        this(model, maxBatchSize, maxWait, unit, 1, Integer.MAX_VALUE,
+                model.getConfidenceThreshold(), Suppression.hard(model.getIouThreshold()));
+    }
+
+    /**
+     * @param workers 工作线程数，每个线程独立组 batch 并推理
+     * @param queueCapacity 等待队列的容量，队列已满时提交的请求立即失败
+     */
+    public Yolov8BatchScheduler(Yolov8 model, int maxBatchSize, long maxWait, TimeUnit unit, int workers, int queueCapacity,
+                                float confThreshold, Suppression suppression) {
+        if (maxBatchSize <= 0 || workers <= 0) {
+            throw new IllegalArgumentException("maxBatchSize and workers must be > 0");
+        }
+        this.model = model;
+        final int modelBatch = (int) model.inputShape[0];
+        this.maxBatchSize = modelBatch > 0 ? Math.min(maxBatchSize, modelBatch) : maxBatchSize;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.confThreshold = confThreshold;
+        this.suppression = suppression;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.batchSizeHistogram = new AtomicLongArray(this.maxBatchSize + 1);
+
+        this.workers = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            this.workers[i] = new Thread(this::work, "yolo-batch-scheduler-" + i);
+            this.workers[i].setDaemon(true);
+            this.workers[i].start();
+        }
+    }
+
+    /**
+     * 提交一张图片。在返回的 future 完成之前，调用方不能修改或释放该图片
+     */
+    public CompletableFuture<List<PosePredictResult>> submit(Mat inputImg) {
+        Request request = new Request(inputImg);
+        this.closeLock.readLock().lock();
+        try {
+            if (this.closed) {
+                request.future.completeExceptionally(new AiException("Yolov8BatchScheduler is closed"));
+            } else if (!this.queue.offer(request)) {
+                request.future.completeExceptionally(new AiException("Yolov8BatchScheduler queue is full"));
+            }
+        } finally {
+            this.closeLock.readLock().unlock();
+        }
+        return request.future;
+    }
+
+    private void work() {
+        try (PreprocessWorkspace workspace = this.model.createWorkspace()) {
+            this.work(workspace);
+        }
+    }
+
+    private void work(PreprocessWorkspace workspace) {
+        List<Request> batch = new ArrayList<>(this.maxBatchSize);
+        List<Mat> inputImgs = new ArrayList<>(this.maxBatchSize);
+        boolean running = true;
+        while (running) {
+            batch.clear();
+            try {
+                Request first = this.queue.take();
+                if (first == POISON) {
+                    break;
+                }
+                batch.add(first);
+
+                // 从第一个请求入队开始计算等待时间
+                final long deadline = first.enqueuedAt + this.maxWaitNanos;
+                while (batch.size() < this.maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Request next = remaining > 0 ? this.queue.poll(remaining, TimeUnit.NANOSECONDS) : this.queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == POISON) {
+                        running = false;
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            this.process(batch, inputImgs, workspace);
+        }
+    }
+
+    private void process(List<Request> batch, List<Mat> inputImgs, PreprocessWorkspace workspace) {
+        // 跳过已取消的请求
+        batch.removeIf(request -> request.future.isDone());
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        inputImgs.clear();
+        for (Request request : batch) {
+            inputImgs.add(request.inputImg);
+        }
+        this.batches.incrementAndGet();
+        this.images.addAndGet(batch.size());
+        this.batchSizeHistogram.incrementAndGet(batch.size());
+
+        try {
+            List<List<PosePredictResult>> results = this.model.predictPoseBatch(inputImgs, workspace, this.confThreshold, this.suppression);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(results.get(i));
+            }
+        } catch (Throwable e) {
+            AiException error = e instanceof AiException ? (AiException) e : new AiException(e);
+            for (Request request : batch) {
+                request.future.completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * 当前等待中的请求数
+     */
+    public int getQueueDepth() {
+        return this.queue.size();
+    }
+
+    /**
+     * 已执行的 batch 数
+     */
+    public long getBatchCount() {
+        return this.batches.get();
+    }
+
+    /**
+     * 实际的平均 batch 大小
+     */
+    public double getAverageBatchSize() {
+        long count = this.batches.get();
+        return count == 0 ? 0 : (double) this.images.get() / count;
+    }
+
+    /**
+     * 各个 batch 大小出现的次数，下标为 batch 大小
+     */
+    public long[] getBatchSizeHistogram() {
+        long[] histogram = new long[this.batchSizeHistogram.length()];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = this.batchSizeHistogram.get(i);
+        }
+        return histogram;
+    }
+
+    public int getMaxBatchSize() {
+        return this.maxBatchSize;
+    }
+
+    /**
+     * 停止接受新的请求，等待已提交的请求处理完成
+     */
+    @Override
+    public void close() {
+        this.closeLock.writeLock().lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+        } finally {
+            this.closeLock.writeLock().unlock();
+        }
+
+        boolean interrupted = false;
+        for (int i = 0; i < this.workers.length; i++) {
+            while (true) {
+                try {
+                    this.queue.put(POISON);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        for (Thread worker : this.workers) {
+            while (worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
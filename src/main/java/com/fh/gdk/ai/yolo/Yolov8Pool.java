@@ -0,0 +1,212 @@
+package com.fh.gdk.ai.yolo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.fh.gdk.ai.AiException;
+import com.fh.gdk.ai.util.Suppression;
+import org.opencv.core.Mat;
+
+/**
+ * Yolo 模型实例池，用于多线程共享同一个模型。
+ * <p>模型文件只读取一次，池中每个实例持有一个独立的 OrtSession，
+ * 同时进行推理的线程数不会超过池的大小，超出的调用会阻塞等待空闲实例。</p>
+ * <p>阈值按每次调用传入，不要通过池中实例的 setter 修改。</p>
+ */
+public class Yolov8Pool<T extends Yolov8> implements AutoCloseable {
+
+    private final List<T> models;
+    // 每个实例同一时刻只会被一个线程使用，因此每个实例固定对应一个预处理工作区
+    private final Map<T, PreprocessWorkspace> workspaces;
+    private final ConcurrentLinkedQueue<T> idleModels = new ConcurrentLinkedQueue<>();
+    private final Semaphore permits;
+
+    private volatile boolean closed = false;
+
+    /**
+     * @param modelPath 模型文件路径
+     * @param poolSize 池中 session 的数量，即最大并发推理数
+     * @param modelFactory 根据模型数据创建实例，例如 {@code bytes -> new Yolov8(bytes, 0.7f, 0.5f, -1, 4)}
+     */
+    public Yolov8Pool(String modelPath, int poolSize, Function<byte[], T> modelFactory) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("poolSize must be > 0");
+        }
+
+        byte[] modelBytes;
+        try {
+            modelBytes = Files.readAllBytes(Paths.get(modelPath));
+        } catch (IOException e) {
+            throw new AiException("Failed to read YOLO-onnx model: " + modelPath, e);
+        }
+
+        this.models = new ArrayList<>(poolSize);
+        this.workspaces = new IdentityHashMap<>(poolSize);
+        try {
+            for (int i = 0; i < poolSize; i++) {
+                T model = modelFactory.apply(modelBytes);
+                this.models.add(model);
+                this.workspaces.put(model, model.createWorkspace());
+                this.idleModels.offer(model);
+            }
+        } catch (RuntimeException e) {
+            this.closeModels();
+            throw e;
+        }
+        this.permits = new Semaphore(poolSize, true);
+    }
+
+    /**
+     * 创建一个普通 Yolov8 实例池，CPU 核数在各个 session 之间平均分配
+     */
+    public static Yolov8Pool<Yolov8> create(String modelPath, int poolSize) {
+        final int intraOpNumThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / poolSize);
+        return new Yolov8Pool<>(modelPath, poolSize, bytes -> new Yolov8(bytes,
+                Yolov8.CONFIDENCE_THRESHOLD_DEFAULT, Yolov8.IOU_THRESHOLD_DEFAULT, -1, intraOpNumThreads));
+    }
+
+    /**
+     * 借出一个空闲实例，没有空闲实例时阻塞等待。使用完后必须调用 {@link #release(Yolov8)} 归还。
+     */
+    public T borrow() throws InterruptedException {
+        this.checkOpen();
+        this.permits.acquire();
+        return this.pollIdle();
+    }
+
+    /**
+     * 在指定时间内借出一个空闲实例，超时返回 null
+     */
+    public T tryBorrow(long timeout, TimeUnit unit) throws InterruptedException {
+        this.checkOpen();
+        if (!this.permits.tryAcquire(timeout, unit)) {
+            return null;
+        }
+        return this.pollIdle();
+    }
+
+    /**
+     * 已取得许可后取出一个空闲实例。等待期间池被关闭时归还许可并抛出异常
+     */
+    private T pollIdle() {
+        if (this.closed) {
+            this.permits.release();
+            throw new AiException("Yolov8Pool is closed");
+        }
+        return this.idleModels.poll();
+    }
+
+    public void release(T model) {
+        if (model == null) {
+            return;
+        }
+        this.idleModels.offer(model);
+        this.permits.release();
+    }
+
+    public List<PosePredictResult> predictPose(Mat inputImg, float confThreshold, float iouThreshold) throws AiException {
+        return this.predictPose(inputImg, confThreshold, Suppression.hard(iouThreshold));
+    }
+
+    public List<List<PosePredictResult>> predictPoseBatch(List<Mat> inputImgs, float confThreshold, float iouThreshold) throws AiException {
+        return this.predictPoseBatch(inputImgs, confThreshold, Suppression.hard(iouThreshold));
+    }
+
+    public List<PosePredictResult> predictPose(Mat inputImg, float confThreshold, Suppression suppression) throws AiException {
+        return this.predictPoseBatch(Collections.singletonList(inputImg), confThreshold, suppression).get(0);
+    }
+
+    public List<List<PosePredictResult>> predictPoseBatch(List<Mat> inputImgs, float confThreshold, Suppression suppression) throws AiException {
+        T model = this.borrowUninterruptibly();
+        try {
+            return model.predictPoseBatch(inputImgs, this.workspaces.get(model), confThreshold, suppression);
+        } finally {
+            this.release(model);
+        }
+    }
+
+    /**
+     * 获取池中实例对应的预处理工作区，只能在借出该实例期间使用
+     */
+    public PreprocessWorkspace workspaceOf(T model) {
+        return this.workspaces.get(model);
+    }
+
+    /**
+     * 池中模型的规格
+     */
+    public ModelSpec getModelSpec() {
+        return this.models.get(0).getModelSpec();
+    }
+
+    /**
+     * 池的大小
+     */
+    public int size() {
+        return this.models.size();
+    }
+
+    /**
+     * 当前空闲的实例数
+     */
+    public int available() {
+        return this.permits.availablePermits();
+    }
+
+    private T borrowUninterruptibly() {
+        try {
+            return this.borrow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AiException("Interrupted while waiting for an idle YOLO session", e);
+        }
+    }
+
+    private void checkOpen() {
+        if (this.closed) {
+            throw new AiException("Yolov8Pool is closed");
+        }
+    }
+
+    private void closeModels() {
+        for (T model : this.models) {
+            try {
+                PreprocessWorkspace workspace = this.workspaces.get(model);
+                if (workspace != null) {
+                    workspace.close();
+                }
+                model.close();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    /**
+     * 停止借出实例，等待所有借出的实例归还后再关闭，避免 session 在推理过程中被释放
+     */
+    @Override
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.permits.acquireUninterruptibly(this.models.size());
+        try {
+            this.closeModels();
+        } finally {
+            // 唤醒仍在等待的 borrow，它们会发现池已关闭并抛出异常
+            this.permits.release(this.models.size());
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.fh.gdk.ai.yolo.spine;
+
+import com.fh.gdk.ai.AiException;
+
+/**
+ * 根据椎骨四角关键点计算 Cobb 角，移植自 spine-docs/cobb_angle_cal.py。
+ * <ul>
+ *     <li>每节椎骨左右两边中点的连线为中线，任意两条中线的最大夹角为最大 Cobb 角</li>
+ *     <li>上下边中点连成的曲线全部位于首尾连线的同一侧时为 C 形，否则为 S 形</li>
+ *     <li>S 形按最大角所在位置（上半部或下半部）继续在其上方或下方寻找另外两个角</li>
+ * </ul>
+ * <p>只使用原始数组，夹角比较在余弦上进行，每个角度只调用一次 acos。
+ * 端椎索引与 Python 版本完全一致（包括上半部 S 形时 TL 下端椎减 1 的处理）。线程安全。</p>
+ */
+public final class CobbAngleCalculator {
+
+    // 每节椎骨 4 个角点：左上、右上、左下、右下，每个点 (x, y)
+    private static final int POINTS_PER_VERTEBRA = 4;
+    private static final int VALUES_PER_VERTEBRA = POINTS_PER_VERTEBRA * 2;
+
+    private CobbAngleCalculator() {}
+
+    /**
+     * @param points 所有椎骨的角点 [左上x, 左上y, 右上x, 右上y, 左下x, 左下y, 右下x, 右下y, ...]，
+     *               与 {@link Vertebrae} 的 cornerPoints 相同，坐标为原图坐标
+     * @param numVertebrae 椎骨个数
+     * @param imageHeight 原图高度，用于判断 S 形的最大角位于上半部还是下半部
+     */
+    public static CobbAngleResult calculate(double[] points, int numVertebrae, double imageHeight) {
+        if (numVertebrae < 2 || points.length < numVertebrae * VALUES_PER_VERTEBRA) {
+            throw new AiException("At least 2 vertebrae with 4 corner points are required");
+        }
+        final int n = numVertebrae;
+        // 中线向量及其长度
+        final double[] vx = new double[n];
+        final double[] vy = new double[n];
+        final double[] norms = new double[n];
+        final double[] midLines = new double[n * 4];
+        for (int v = 0, p = 0; v < n; v++, p += VALUES_PER_VERTEBRA) {
+            // 左边中点 (P0 + P2) / 2，右边中点 (P3 + P1) / 2
+            final double lx = (points[p] + points[p + 4]) / 2;
+            final double ly = (points[p + 1] + points[p + 5]) / 2;
+            final double rx = (points[p + 6] + points[p + 2]) / 2;
+            final double ry = (points[p + 7] + points[p + 3]) / 2;
+            midLines[v * 4] = lx;
+            midLines[v * 4 + 1] = ly;
+            midLines[v * 4 + 2] = rx;
+            midLines[v * 4 + 3] = ry;
+            vx[v] = rx - lx;
+            vy[v] = ry - ly;
+            norms[v] = Math.sqrt(vx[v] * vx[v] + vy[v] * vy[v]);
+        }
+
+        // 最大夹角：按列扫描，取第一个最大值所在的列 pos2 与行 pos1，与 numpy 的 argmax 顺序一致
+        int pos2 = 0;
+        int pos1 = 0;
+        double minCos = Double.MAX_VALUE;
+        for (int j = 0; j < n; j++) {
+            for (int i = 0; i < n; i++) {
+                final double cos = cosine(vx, vy, norms, i, j);
+                if (cos < minCos) {
+                    minCos = cos;
+                    pos2 = j;
+                    pos1 = i;
+                }
+            }
+        }
+        final double pt = degrees(minCos);
+        final double[] cobbAngles = {pt, 0, 0};
+
+        if (!isS(points, n)) {
+            final double mt = angle(vx, vy, norms, 0, pos2);
+            final double tl = angle(vx, vy, norms, n - 1, pos1);
+            cobbAngles[1] = mt;
+            cobbAngles[2] = tl;
+            return new CobbAngleResult(CobbAngleResult.CURVE_C,
+                    new CobbAngleResult.CobbAngle(mt, 0, pos2),
+                    new CobbAngleResult.CobbAngle(pt, pos2, pos1),
+                    new CobbAngleResult.CobbAngle(tl, pos1, n - 1),
+                    cobbAngles, midLines);
+        }
+
+        // 最大角上方：pos2 与其上方各节的最大夹角，pos2 为第一节时（Python 版本会抛出异常）角度为 0
+        final int upper = argminCosine(vx, vy, norms, pos2, 0, pos2);
+        final double mt = upper < 0 ? 0 : angle(vx, vy, norms, pos2, upper);
+        final int pos11 = Math.max(upper, 0);
+        cobbAngles[1] = mt;
+
+        if (topMidY(points, pos2) + topMidY(points, pos1) < imageHeight) {
+            // 最大角位于上半部：再在 pos1 及其下方寻找
+            final int lower = argminCosine(vx, vy, norms, pos1, pos1, n);
+            final double tl = angle(vx, vy, norms, pos1, lower);
+            cobbAngles[2] = tl;
+            return new CobbAngleResult(CobbAngleResult.CURVE_S,
+                    new CobbAngleResult.CobbAngle(mt, pos11, pos2),
+                    new CobbAngleResult.CobbAngle(pt, pos2, pos1),
+                    // 与 Python 版本一致：argmax + pos1 - 1
+                    new CobbAngleResult.CobbAngle(tl, pos1, lower - 1),
+                    cobbAngles, midLines);
+        }
+
+        // 最大角位于下半部：再在 pos11 及其上方寻找
+        final int top = argminCosine(vx, vy, norms, pos11, 0, pos11 + 1);
+        final double tl = angle(vx, vy, norms, pos11, top);
+        cobbAngles[2] = tl;
+        return new CobbAngleResult(CobbAngleResult.CURVE_S,
+                new CobbAngleResult.CobbAngle(tl, top, pos11),
+                new CobbAngleResult.CobbAngle(mt, pos11, pos2),
+                new CobbAngleResult.CobbAngle(pt, pos2, pos1),
+                cobbAngles, midLines);
+    }
+
+    /**
+     * 上下边中点（每节椎骨 2 个，共 2n 个）是否分布在首尾两点连线的两侧，即 S 形
+     */
+    static boolean isS(double[] points, int numVertebrae) {
+        final int num = numVertebrae * 2;
+        final double lastX = edgeMidX(points, num - 1);
+        final double lastY = edgeMidY(points, num - 1);
+        final double dx = edgeMidX(points, 0) - lastX;
+        final double dy = edgeMidY(points, 0) - lastY;
+        boolean positive = false;
+        boolean negative = false;
+        for (int i = 0; i < num - 2; i++) {
+            final double l = (edgeMidY(points, i) - lastY) / dy - (edgeMidX(points, i) - lastX) / dx;
+            if (l > 0) {
+                positive = true;
+            } else if (l < 0) {
+                negative = true;
+            } else if (l != l) {
+                // NaN：Python 版本中 sum 的比较结果为不相等
+                return true;
+            }
+        }
+        return positive && negative;
+    }
+
+    /**
+     * 第 k 个上/下边中点：偶数为第 k/2 节椎骨的上边，奇数为下边
+     */
+    private static double edgeMidX(double[] points, int k) {
+        final int p = k * POINTS_PER_VERTEBRA;
+        return (points[p] + points[p + 2]) / 2;
+    }
+
+    private static double edgeMidY(double[] points, int k) {
+        final int p = k * POINTS_PER_VERTEBRA;
+        return (points[p + 1] + points[p + 3]) / 2;
+    }
+
+    private static double topMidY(double[] points, int vertebra) {
+        return edgeMidY(points, vertebra * 2);
+    }
+
+    /**
+     * 第 i、j 节中线夹角的余弦，截断到 [-1, 1]
+     */
+    private static double cosine(double[] vx, double[] vy, double[] norms, int i, int j) {
+        final double cos = (vx[i] * vx[j] + vy[i] * vy[j]) / (norms[i] * norms[j]);
+        return Math.min(Math.max(cos, -1), 1);
+    }
+
+    private static double angle(double[] vx, double[] vy, double[] norms, int i, int j) {
+        return degrees(cosine(vx, vy, norms, i, j));
+    }
+
+    private static double degrees(double cos) {
+        return Math.acos(cos) * 180 / Math.PI;
+    }
+
+    /**
+     * 在 [from, to) 中寻找与第 i 节夹角最大的一节，区间为空时返回 -1
+     */
+    private static int argminCosine(double[] vx, double[] vy, double[] norms, int i, int from, int to) {
+        int best = -1;
+        double minCos = Double.MAX_VALUE;
+        for (int k = from; k < to; k++) {
+            final double cos = cosine(vx, vy, norms, i, k);
+            if (cos < minCos) {
+                minCos = cos;
+                best = k;
+            }
+        }
+        return best;
+    }
+
+}
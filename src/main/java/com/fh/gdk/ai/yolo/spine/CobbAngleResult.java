@@ -0,0 +1,123 @@
+package com.fh.gdk.ai.yolo.spine;
+
+/**
+ * Cobb 角计算结果，见 {@link CobbAngleCalculator}
+ */
+public final class CobbAngleResult {
+
+    public static final String CURVE_S = "S";
+    public static final String CURVE_C = "C";
+
+    private final String curveType;
+    // 近胸角(PT)、主胸角(MT)、胸腰角(TL)
+    private final CobbAngle pt;
+    private final CobbAngle mt;
+    private final CobbAngle tl;
+    // 与 cobb_angle_cal.py 返回的 cobb_angles_list 相同：最大角，以及与其相邻的两个角
+    private final double[] cobbAngles;
+    // 每节椎骨的中线 [左中点x, 左中点y, 右中点x, 右中点y]，每 4 个值一节
+    private final double[] midLines;
+
+    CobbAngleResult(String curveType, CobbAngle pt, CobbAngle mt, CobbAngle tl, double[] cobbAngles, double[] midLines) {
+        this.curveType = curveType;
+        this.pt = pt;
+        this.mt = mt;
+        this.tl = tl;
+        this.cobbAngles = cobbAngles;
+        this.midLines = midLines;
+    }
+
+    /**
+     * 侧弯类型：{@link #CURVE_S} 或 {@link #CURVE_C}
+     */
+    public String getCurveType() {
+        return curveType;
+    }
+
+    public boolean isS() {
+        return CURVE_S.equals(this.curveType);
+    }
+
+    public CobbAngle getPt() {
+        return pt;
+    }
+
+    public CobbAngle getMt() {
+        return mt;
+    }
+
+    public CobbAngle getTl() {
+        return tl;
+    }
+
+    /**
+     * 用于与标注数据比较的三个角度，顺序与 cobb_angle_cal.py 的 cobb_angles_list 相同
+     */
+    public double[] getCobbAngles() {
+        return cobbAngles.clone();
+    }
+
+    public int getVertebraeCount() {
+        return midLines.length / 4;
+    }
+
+    /**
+     * 第 index 节椎骨的中线
+     *
+     * @return [[左中点x, 左中点y], [右中点x, 右中点y]]
+     */
+    public double[][] getMidLine(int index) {
+        final int i = index * 4;
+        return new double[][] {
+                { midLines[i], midLines[i + 1] },
+                { midLines[i + 2], midLines[i + 3] }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "CobbAngleResult {" +
+                "curveType='" + curveType + '\'' +
+                ", pt=" + pt +
+                ", mt=" + mt +
+                ", tl=" + tl +
+                '}';
+    }
+
+    /**
+     * 一个 Cobb 角及其上下端椎的索引（0 为 T1）
+     */
+    public static final class CobbAngle {
+
+        private final double angle;
+        private final int upperVertebra;
+        private final int lowerVertebra;
+
+        CobbAngle(double angle, int upperVertebra, int lowerVertebra) {
+            this.angle = angle;
+            this.upperVertebra = upperVertebra;
+            this.lowerVertebra = lowerVertebra;
+        }
+
+        /**
+         * 角度（度）
+         */
+        public double getAngle() {
+            return angle;
+        }
+
+        public int getUpperVertebra() {
+            return upperVertebra;
+        }
+
+        public int getLowerVertebra() {
+            return lowerVertebra;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f [%d, %d]", angle, upperVertebra, lowerVertebra);
+        }
+    }
+
+}
@@ -51,17 +51,6 @@ public class Spine {
             if ((currSlopeAngle > prevSlopeAngle && currSlopeAngle > nextSlopeAngle) ||
                     (currSlopeAngle < prevSlopeAngle && currSlopeAngle < nextSlopeAngle)) {
                 inflectionVertebraes.add(i);
-                System.out.println("拐点椎骨A："+ this.vertebraes.get(i).getLabel());
-            }
-        }
-
-        for (int i = 1; i < this.vertebraes.size(); i++) {
-            double prevSlopeAngle = this.vertebraes.get(i-1).getSlopeAngle();
-            double currSlopeAngle = this.vertebraes.get(i).getSlopeAngle();
-            if ((currSlopeAngle > 0 && prevSlopeAngle < 0)
-                    || (currSlopeAngle < 0 && prevSlopeAngle > 0)
-            ) {
-                System.out.println("拐点椎骨B："+ this.vertebraes.get(i).getLabel());
             }
         }
 
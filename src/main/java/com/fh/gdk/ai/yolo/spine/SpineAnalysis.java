@@ -0,0 +1,70 @@
+package com.fh.gdk.ai.yolo.spine;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 脊柱分析结果，见 {@link SpineYolov8#analyzeSpine(org.opencv.core.Mat)}。所有坐标均为原图坐标
+ */
+public class SpineAnalysis {
+
+    // 脊柱的矩形边界区域坐标：[x_min, y_min, x_max, y_max]
+    private final double[] bbox;
+    private final float score;
+    // 17节椎骨：T1~T12、L1~L5
+    private final List<Vertebrae> vertebraes;
+    private final CobbAngleResult cobbAngleResult;
+    // 原图尺寸
+    private final int imageWidth;
+    private final int imageHeight;
+
+    SpineAnalysis(double[] bbox, float score, List<Vertebrae> vertebraes, CobbAngleResult cobbAngleResult,
+                  int imageWidth, int imageHeight) {
+        this.bbox = bbox;
+        this.score = score;
+        this.vertebraes = Collections.unmodifiableList(vertebraes);
+        this.cobbAngleResult = cobbAngleResult;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+    }
+
+    public double[] getBbox() {
+        return bbox.clone();
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    public List<Vertebrae> getVertebraes() {
+        return vertebraes;
+    }
+
+    /**
+     * 侧弯类型：{@link CobbAngleResult#CURVE_S} 或 {@link CobbAngleResult#CURVE_C}
+     */
+    public String getCurveType() {
+        return cobbAngleResult.getCurveType();
+    }
+
+    public CobbAngleResult getCobbAngleResult() {
+        return cobbAngleResult;
+    }
+
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    @Override
+    public String toString() {
+        return "SpineAnalysis {" +
+                "vertebraes=" + vertebraes.size() +
+                ", " + cobbAngleResult +
+                '}';
+    }
+
+}
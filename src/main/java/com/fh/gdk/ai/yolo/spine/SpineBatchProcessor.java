@@ -0,0 +1,741 @@
+package com.fh.gdk.ai.yolo.spine;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fh.gdk.ai.AiException;
+import com.fh.gdk.ai.util.Suppression;
+import com.fh.gdk.ai.yolo.PosePredictResult;
+import com.fh.gdk.ai.yolo.Yolov8Pool;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * 批量脊柱分析：遍历目录或清单文件中的 X 光片，多线程解码，在 {@link Yolov8Pool} 的多个 session 上并行分析，
+ * 每张图片的 {@link SpineAnalysis} 写为输出文件中的一行（CSV 或 JSONL）。
+ * <ul>
+ *     <li>解码线程、分析线程、写入线程之间通过有界队列连接，解码不会无限领先于分析</li>
+ *     <li>输出文件同时是进度记录：每写入 {@link #setFlushEvery(int) flushEvery} 行刷新一次，
+ *     重新运行时跳过输出文件中已成功的图片，失败的图片重新分析并追加新的一行（同一图片以最后一行为准），
+ *     中断时写了一半的最后一行会被截掉</li>
+ *     <li>单张图片失败（无法解码、未检测到脊柱等）写为 status=error 的行，不会中断整批</li>
+ * </ul>
+ * <p>处理器不负责关闭模型池。同一个实例不能同时执行多批。</p>
+ */
+public class SpineBatchProcessor {
+
+    /**
+     * 输出格式
+     */
+    public enum Format {
+        /**
+         * 每张图片一行：路径、状态、置信度、边界框、侧弯类型、PT/MT/TL 的角度与上下端椎、错误信息
+         */
+        CSV,
+        /**
+         * 每张图片一个 JSON 对象，除 CSV 的列外还包含 17 节椎骨的四角坐标
+         */
+        JSONL
+    }
+
+    private static final String CSV_HEADER = "path,status,score,bbox_x0,bbox_y0,bbox_x1,bbox_y1,curve_type,"
+            + "pt,pt_upper,pt_lower,mt,mt_upper,mt_lower,tl,tl_upper,tl_lower,error";
+    private static final String STATUS_OK = "ok";
+    private static final String STATUS_ERROR = "error";
+    private static final String JSON_PATH_PREFIX = "{\"path\":";
+    private static final Set<String> IMAGE_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "jpg", "jpeg", "png", "bmp", "tif", "tiff", "jp2", "webp", "pgm"));
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * 队列中的一张图片
+     */
+    private static final class Study {
+        final Path path;
+        final String key;
+        Mat image;
+        String row;
+
+        Study(Path path, String key) {
+            this.path = path;
+            this.key = key;
+        }
+    }
+
+    // 通知下游线程退出
+    private static final Study POISON = new Study(null, null);
+
+    private final Yolov8Pool<SpineYolov8> pool;
+    private int decodeThreads = 2;
+    // 队列容量，<=0 表示模型池大小的 2 倍
+    private int queueCapacity = 0;
+    private Format format = Format.CSV;
+    private int flushEvery = 100;
+    private float confThreshold = 0.7f;
+    private float iouThreshold = 0.5f;
+    private int readFlags = Imgcodecs.IMREAD_COLOR;
+    private boolean cascade = false;
+
+    public SpineBatchProcessor(Yolov8Pool<SpineYolov8> pool) {
+        this.pool = pool;
+    }
+
+    public SpineBatchProcessor setDecodeThreads(int decodeThreads) {
+        if (decodeThreads <= 0) {
+            throw new IllegalArgumentException("decodeThreads must be > 0");
+        }
+        this.decodeThreads = decodeThreads;
+        return this;
+    }
+
+    public SpineBatchProcessor setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    public SpineBatchProcessor setFormat(Format format) {
+        this.format = format;
+        return this;
+    }
+
+    /**
+     * 每写入多少行刷新一次输出文件，即崩溃后最多需要重做的图片数量，默认 100
+     */
+    public SpineBatchProcessor setFlushEvery(int flushEvery) {
+        this.flushEvery = Math.max(1, flushEvery);
+        return this;
+    }
+
+    public SpineBatchProcessor setConfThreshold(float confThreshold) {
+        this.confThreshold = confThreshold;
+        return this;
+    }
+
+    public SpineBatchProcessor setIouThreshold(float iouThreshold) {
+        this.iouThreshold = iouThreshold;
+        return this;
+    }
+
+    /**
+     * 按单通道灰度读取图片，16 位的 PNG/TIFF 保持 16 位（CV_16UC1），不需要先导出为 8 位图像。
+     * 窗宽窗位见 {@link com.fh.gdk.ai.yolo.Yolov8#setWindowLevel}
+     */
+    public SpineBatchProcessor setGrayscale(boolean grayscale) {
+        this.readFlags = grayscale ? Imgcodecs.IMREAD_ANYDEPTH : Imgcodecs.IMREAD_COLOR;
+        return this;
+    }
+
+    /**
+     * 使用 {@link SpineYolov8#analyzeSpineCascade(Mat, float, float)} 两阶段分析，每张图片推理两次
+     */
+    public SpineBatchProcessor setCascade(boolean cascade) {
+        this.cascade = cascade;
+        return this;
+    }
+
+    /**
+     * 分析目录（含子目录）中的所有图片
+     */
+    public Report processDirectory(Path directory, Path output) throws IOException {
+        return this.process(listImages(directory), output);
+    }
+
+    /**
+     * 分析清单文件中列出的图片，见 {@link #readManifest(Path)}
+     */
+    public Report processManifest(Path manifest, Path output) throws IOException {
+        return this.process(readManifest(manifest), output);
+    }
+
+    /**
+     * 分析指定的图片，结果追加到 output，output 中已成功的图片会被跳过
+     *
+     * @throws AiException 解码或分析线程异常退出（例如内存不足）时，已完成的行仍会写入 output
+     */
+    public Report process(List<Path> images, Path output) throws IOException {
+        final long start = System.nanoTime();
+        Set<String> completed = this.recover(output);
+        List<Study> pending = new ArrayList<>(images.size());
+        for (Path image : images) {
+            String key = image.toAbsolutePath().normalize().toString();
+            if (!completed.contains(key)) {
+                pending.add(new Study(image, key));
+            }
+        }
+
+        Report report = new Report();
+        report.total = images.size();
+        report.skipped = images.size() - pending.size();
+        final boolean writeHeader = this.format == Format.CSV && (!Files.exists(output) || Files.size(output) == 0);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(output,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.UTF_8), WRITE_BUFFER_SIZE)) {
+            if (writeHeader) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            this.run(pending, writer, report);
+        }
+        report.wallNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    /**
+     * 解码线程 -> 分析线程（每个线程固定借用池中的一个模型）-> 当前线程写入
+     */
+    private void run(List<Study> pending, Writer writer, Report report) throws IOException {
+        final int workers = this.pool.size();
+        final int capacity = this.queueCapacity > 0 ? this.queueCapacity : workers * 2;
+        final BlockingQueue<Study> decoded = new ArrayBlockingQueue<>(capacity);
+        final BlockingQueue<Study> analyzed = new ArrayBlockingQueue<>(capacity);
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger decodersLeft = new AtomicInteger(this.decodeThreads);
+        // 解码或分析线程异常退出的原因，整批失败
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        List<Thread> threads = new ArrayList<>(this.decodeThreads + workers);
+        for (int i = 0; i < this.decodeThreads; i++) {
+            threads.add(new Thread(() -> this.decode(pending, next, decoded, decodersLeft, workers, report, failure),
+                    "spine-batch-decode-" + i));
+        }
+        for (int i = 0; i < workers; i++) {
+            threads.add(new Thread(() -> this.analyze(decoded, analyzed, report, failure), "spine-batch-analyze-" + i));
+        }
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        try {
+            int finishedWorkers = 0;
+            int unflushed = 0;
+            while (finishedWorkers < workers) {
+                Study study = analyzed.take();
+                if (study == POISON) {
+                    finishedWorkers++;
+                    continue;
+                }
+                final long t0 = System.nanoTime();
+                writer.write(study.row);
+                writer.write('\n');
+                if (++unflushed >= this.flushEvery) {
+                    writer.flush();
+                    unflushed = 0;
+                }
+                report.writeNanos.add(System.nanoTime() - t0);
+            }
+            writer.flush();
+            if (failure.get() != null) {
+                throw new AiException("Spine batch thread failed", failure.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AiException("Interrupted while processing spine studies", e);
+        } finally {
+            // 正常结束时线程均已退出；写入失败时中断其余线程，等待退出后释放队列中已解码的图片
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            joinQuietly(threads);
+            Study study;
+            while ((study = decoded.poll()) != null) {
+                if (study != POISON) {
+                    study.image.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * 等待线程退出，被中断时不再等待
+     */
+    private static void joinQuietly(List<Thread> threads) {
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 最后一个退出的解码线程（包括异常退出）通知所有分析线程结束
+     */
+    private void decode(List<Study> pending, AtomicInteger next, BlockingQueue<Study> decoded,
+                        AtomicInteger decodersLeft, int workers, Report report, AtomicReference<Throwable> failure) {
+        try {
+            int i;
+            while ((i = next.getAndIncrement()) < pending.size()) {
+                Study study = pending.get(i);
+                final long t0 = System.nanoTime();
+                study.image = Imgcodecs.imread(study.path.toString(), this.readFlags);
+                report.decodeNanos.add(System.nanoTime() - t0);
+                try {
+                    decoded.put(study);
+                } catch (InterruptedException e) {
+                    study.image.release();
+                    throw e;
+                }
+            }
+        } catch (InterruptedException ignored) {
+        } catch (RuntimeException | Error e) {
+            failure.compareAndSet(null, e);
+            // 其余解码线程不再继续领取图片
+            next.set(pending.size());
+        } finally {
+            if (decodersLeft.decrementAndGet() == 0) {
+                for (int w = 0; w < workers; w++) {
+                    if (!putQuietly(decoded, POISON)) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 每个分析线程退出时（包括异常退出）都通知写入线程
+     */
+    private void analyze(BlockingQueue<Study> decoded, BlockingQueue<Study> analyzed, Report report,
+                         AtomicReference<Throwable> failure) {
+        SpineYolov8 model = null;
+        try {
+            model = this.pool.borrow();
+            final Suppression suppression = Suppression.hard(this.iouThreshold);
+            while (true) {
+                Study study = decoded.take();
+                if (study == POISON) {
+                    return;
+                }
+                try {
+                    if (study.image.empty()) {
+                        throw new AiException("Failed to decode image");
+                    }
+                    final long t0 = System.nanoTime();
+                    SpineAnalysis analysis;
+                    long t1;
+                    if (this.cascade) {
+                        // 两阶段分析的 Cobb 角计算计入推理耗时
+                        analysis = model.analyzeSpineCascade(study.image, this.confThreshold, this.iouThreshold);
+                        t1 = System.nanoTime();
+                        report.inferenceNanos.add(t1 - t0);
+                    } else {
+                        List<PosePredictResult> poses = model.predictPoseBatch(Collections.singletonList(study.image),
+                                this.pool.workspaceOf(model), this.confThreshold, suppression).get(0);
+                        t1 = System.nanoTime();
+                        report.inferenceNanos.add(t1 - t0);
+                        if (poses.isEmpty()) {
+                            throw new AiException("未检测到脊柱");
+                        }
+                        analysis = SpineYolov8.analyze(poses.get(0));
+                    }
+                    study.row = this.format == Format.CSV ? csvRow(study.key, analysis) : jsonRow(study.key, analysis);
+                    report.analysisNanos.add(System.nanoTime() - t1);
+                    report.succeeded.increment();
+                } catch (Exception e) {
+                    String message = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+                    study.row = this.format == Format.CSV ? csvError(study.key, message) : jsonError(study.key, message);
+                    report.failed.increment();
+                } finally {
+                    study.image.release();
+                    study.image = null;
+                }
+                analyzed.put(study);
+            }
+        } catch (InterruptedException ignored) {
+        } catch (RuntimeException | Error e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            this.pool.release(model);
+            putQuietly(analyzed, POISON);
+        }
+    }
+
+    /**
+     * 放入队列，被中断（整批已中止）时返回 false
+     */
+    private static boolean putQuietly(BlockingQueue<Study> queue, Study study) {
+        try {
+            queue.put(study);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 截掉输出文件中写了一半的最后一行，返回已成功的图片
+     */
+    private Set<String> recover(Path output) throws IOException {
+        Set<String> completed = new HashSet<>();
+        if (!Files.exists(output)) {
+            return completed;
+        }
+        truncateIncompleteLine(output);
+        try (BufferedReader reader = Files.newBufferedReader(output, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.equals(CSV_HEADER)) {
+                    continue;
+                }
+                final boolean json = line.startsWith(JSON_PATH_PREFIX);
+                String key = json ? parseJsonString(line, JSON_PATH_PREFIX.length()) : parseCsvField(line);
+                if (key == null) {
+                    continue;
+                }
+                // 同一图片以最后一行为准，之前成功、之后失败的图片也重新分析
+                if (json ? isJsonOk(line, key) : isCsvOk(line, key)) {
+                    completed.add(key);
+                } else {
+                    completed.remove(key);
+                }
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * 路径之后的 status 列是否为 ok，路径按写入时的方式重新转义后定位
+     */
+    private static boolean isCsvOk(String line, String key) {
+        final int offset = appendCsv(new StringBuilder(), key).length();
+        return line.startsWith("," + STATUS_OK + ",", offset);
+    }
+
+    private static boolean isJsonOk(String line, String key) {
+        final int offset = JSON_PATH_PREFIX.length() + appendJson(new StringBuilder(), key).length();
+        return line.startsWith(",\"status\":\"" + STATUS_OK + "\"", offset);
+    }
+
+    private static void truncateIncompleteLine(Path output) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(output.toFile(), "rw")) {
+            long end = file.length();
+            byte[] chunk = new byte[8192];
+            while (end > 0) {
+                final int length = (int) Math.min(chunk.length, end);
+                file.seek(end - length);
+                file.readFully(chunk, 0, length);
+                for (int i = length - 1; i >= 0; i--) {
+                    if (chunk[i] == '\n') {
+                        file.setLength(end - length + i + 1);
+                        return;
+                    }
+                }
+                end -= length;
+            }
+            file.setLength(0);
+        }
+    }
+
+    /**
+     * 目录（含子目录）中的所有图片，按路径排序
+     */
+    public static List<Path> listImages(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        int dot = name.lastIndexOf('.');
+                        return dot > 0 && IMAGE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * 读取清单文件：每行一个图片路径，相对路径相对于清单文件所在的目录，忽略空行和 # 开头的行
+     */
+    public static List<Path> readManifest(Path manifest) throws IOException {
+        Path base = manifest.toAbsolutePath().getParent();
+        List<Path> images = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                images.add(base.resolve(line));
+            }
+        }
+        return images;
+    }
+
+    private static String csvRow(String key, SpineAnalysis analysis) {
+        StringBuilder row = new StringBuilder(256);
+        appendCsv(row, key).append(',').append(STATUS_OK).append(',');
+        row.append(format(analysis.getScore(), 4));
+        for (double v : analysis.getBbox()) {
+            row.append(',').append(format(v, 1));
+        }
+        CobbAngleResult cobb = analysis.getCobbAngleResult();
+        row.append(',').append(cobb.getCurveType());
+        for (CobbAngleResult.CobbAngle angle : new CobbAngleResult.CobbAngle[] {cobb.getPt(), cobb.getMt(), cobb.getTl()}) {
+            row.append(',').append(format(angle.getAngle(), 2))
+                    .append(',').append(angle.getUpperVertebra())
+                    .append(',').append(angle.getLowerVertebra());
+        }
+        return row.append(',').toString();
+    }
+
+    private static String csvError(String key, String message) {
+        StringBuilder row = new StringBuilder(128);
+        appendCsv(row, key).append(',').append(STATUS_ERROR).append(",,,,,,,,,,,,,,,,");
+        return appendCsv(row, message).toString();
+    }
+
+    private static String jsonRow(String key, SpineAnalysis analysis) {
+        StringBuilder row = new StringBuilder(1024);
+        row.append(JSON_PATH_PREFIX);
+        appendJson(row, key).append(",\"status\":\"").append(STATUS_OK).append("\",\"score\":")
+                .append(format(analysis.getScore(), 4)).append(",\"bbox\":[");
+        double[] bbox = analysis.getBbox();
+        for (int i = 0; i < bbox.length; i++) {
+            row.append(i > 0 ? "," : "").append(format(bbox[i], 1));
+        }
+        CobbAngleResult cobb = analysis.getCobbAngleResult();
+        row.append("],\"curveType\":\"").append(cobb.getCurveType()).append('"');
+        appendJson(row, "pt", cobb.getPt());
+        appendJson(row, "mt", cobb.getMt());
+        appendJson(row, "tl", cobb.getTl());
+        row.append(",\"vertebrae\":[");
+        List<Vertebrae> vertebraes = analysis.getVertebraes();
+        for (int v = 0; v < vertebraes.size(); v++) {
+            Vertebrae vert = vertebraes.get(v);
+            row.append(v > 0 ? ",[" : "[");
+            double[][] corners = {vert.getLeftTopPoint(), vert.getRightTopPoint(), vert.getLeftBottomPoint(), vert.getRightBottomPoint()};
+            for (int c = 0; c < corners.length; c++) {
+                row.append(c > 0 ? "," : "").append(format(corners[c][0], 1)).append(',').append(format(corners[c][1], 1));
+            }
+            row.append(']');
+        }
+        return row.append("]}").toString();
+    }
+
+    private static String jsonError(String key, String message) {
+        StringBuilder row = new StringBuilder(128);
+        row.append(JSON_PATH_PREFIX);
+        appendJson(row, key).append(",\"status\":\"").append(STATUS_ERROR).append("\",\"error\":");
+        return appendJson(row, message).append('}').toString();
+    }
+
+    private static void appendJson(StringBuilder row, String name, CobbAngleResult.CobbAngle angle) {
+        row.append(",\"").append(name).append("\":{\"angle\":").append(format(angle.getAngle(), 2))
+                .append(",\"upper\":").append(angle.getUpperVertebra())
+                .append(",\"lower\":").append(angle.getLowerVertebra()).append('}');
+    }
+
+    private static String format(double value, int decimals) {
+        return String.format(Locale.ROOT, "%." + decimals + "f", value);
+    }
+
+    private static StringBuilder appendCsv(StringBuilder row, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return row.append(value);
+        }
+        return row.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private static StringBuilder appendJson(StringBuilder row, String value) {
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    row.append("\\\"");
+                    break;
+                case '\\':
+                    row.append("\\\\");
+                    break;
+                case '\n':
+                    row.append("\\n");
+                    break;
+                case '\r':
+                    row.append("\\r");
+                    break;
+                case '\t':
+                    row.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        row.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        row.append(c);
+                    }
+            }
+        }
+        return row.append('"');
+    }
+
+    /**
+     * CSV 行的第一列
+     */
+    private static String parseCsvField(String line) {
+        if (!line.startsWith("\"")) {
+            final int comma = line.indexOf(',');
+            return comma < 0 ? line : line.substring(0, comma);
+        }
+        StringBuilder value = new StringBuilder();
+        for (int i = 1; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (c == '"') {
+                if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    return value.toString();
+                }
+            } else {
+                value.append(c);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从 start 处（引号）开始的 JSON 字符串
+     */
+    private static String parseJsonString(String line, int start) {
+        if (start >= line.length() || line.charAt(start) != '"') {
+            return null;
+        }
+        StringBuilder value = new StringBuilder();
+        for (int i = start + 1; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c == '\\' && i + 1 < line.length()) {
+                c = line.charAt(++i);
+                switch (c) {
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'u':
+                        if (i + 4 >= line.length()) {
+                            return null;
+                        }
+                        c = (char) Integer.parseInt(line.substring(i + 1, i + 5), 16);
+                        i += 4;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            value.append(c);
+        }
+        return null;
+    }
+
+    /**
+     * 一批的处理统计。各阶段耗时为所有线程的累计值
+     */
+    public static final class Report {
+        private int total;
+        private int skipped;
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private long wallNanos;
+        private final LongAdder decodeNanos = new LongAdder();
+        private final LongAdder inferenceNanos = new LongAdder();
+        private final LongAdder analysisNanos = new LongAdder();
+        private final LongAdder writeNanos = new LongAdder();
+
+        /**
+         * 输入的图片总数
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * 输出文件中已成功、本次跳过的图片数
+         */
+        public int getSkipped() {
+            return skipped;
+        }
+
+        public long getSucceeded() {
+            return succeeded.sum();
+        }
+
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getDecodeNanos() {
+            return decodeNanos.sum();
+        }
+
+        /**
+         * 模型推理（预处理、session.run、后处理）
+         */
+        public long getInferenceNanos() {
+            return inferenceNanos.sum();
+        }
+
+        /**
+         * Cobb 角计算与结果格式化
+         */
+        public long getAnalysisNanos() {
+            return analysisNanos.sum();
+        }
+
+        public long getWriteNanos() {
+            return writeNanos.sum();
+        }
+
+        /**
+         * 本次处理的图片数（含失败的）除以总耗时
+         */
+        public double getImagesPerSecond() {
+            return wallNanos == 0 ? 0 : (getSucceeded() + getFailed()) * 1e9 / wallNanos;
+        }
+
+        private double perImageMillis(long nanos, long count) {
+            return count == 0 ? 0 : nanos / 1e6 / count;
+        }
+
+        @Override
+        public String toString() {
+            final long processed = getSucceeded() + getFailed();
+            return String.format(Locale.ROOT,
+                    "total=%d, skipped=%d, succeeded=%d, failed=%d, %.2f s, %.2f images/s, "
+                            + "per image: decode %.2f ms, inference %.2f ms, analysis %.3f ms, write %.3f ms",
+                    total, skipped, getSucceeded(), getFailed(), wallNanos / 1e9, getImagesPerSecond(),
+                    perImageMillis(getDecodeNanos(), processed), perImageMillis(getInferenceNanos(), getSucceeded()),
+                    perImageMillis(getAnalysisNanos(), getSucceeded()), perImageMillis(getWriteNanos(), processed));
+        }
+    }
+
+}
@@ -3,8 +3,10 @@ package com.fh.gdk.ai.yolo.spine;
 import java.util.*;
 
 import com.fh.gdk.ai.AiException;
+import com.fh.gdk.ai.util.Suppression;
 import com.fh.gdk.ai.yolo.ImageMetaData;
 import com.fh.gdk.ai.yolo.PosePredictResult;
+import com.fh.gdk.ai.yolo.PreprocessWorkspace;
 import com.fh.gdk.ai.yolo.Yolov8;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfPoint;
@@ -19,21 +21,164 @@ import org.opencv.imgproc.Imgproc;
  */
 public class SpineYolov8 extends Yolov8 {
 
+    // 17节椎骨 * 4个角顶点
+    private static final int KEYPOINT_COUNT = Spine.VERTEBRAE_NAMES.length * 4;
+
+    // 两阶段分析时 ROI 四周扩展的比例（相对于边界框的宽、高）
+    public static final double ROI_PADDING_DEFAULT = 0.1;
+
+    private volatile double roiPadding = ROI_PADDING_DEFAULT;
+    // 两阶段分析第一阶段的推理尺寸，<=0 表示使用默认的推理尺寸
+    private volatile int coarseInferenceSize = 0;
+
     public SpineYolov8(String modelPath) {
         super(modelPath, 0.7f, 0.5f);
     }
 
+    /**
+     * 从已加载到内存的模型数据创建，用于 {@link com.fh.gdk.ai.yolo.Yolov8Pool}，
+     * 例如 {@code new Yolov8Pool<>(modelPath, 4, bytes -> new SpineYolov8(bytes, 0.7f, 0.5f, -1, 2))}
+     */
+    public SpineYolov8(byte[] modelBytes, float confThreshold, float iouThreshold, int gpuDeviceId, int intraOpNumThreads) {
+        super(modelBytes, confThreshold, iouThreshold, gpuDeviceId, intraOpNumThreads);
+    }
+
+    /**
+     * 推理并绘制结果，写入 test_out_spine_cobb.jpg
+     */
     public void predictSpine(String imagePath) {
-        List<PosePredictResult> posePredictResults = this.predictPose(imagePath);
+        Mat inputImg = Imgcodecs.imread(imagePath);
+        SpineAnalysis analysis = this.analyzeSpine(inputImg);
+        this.render(inputImg, analysis);
+
+        // 保存图像
+        Imgproc.cvtColor(inputImg, inputImg, Imgproc.COLOR_RGB2BGR);
+        Imgcodecs.imwrite("test_out_spine_cobb.jpg", inputImg);
+    }
+
+    /**
+     * 分析脊柱：椎骨位置与 Cobb 角。不读写文件，也不修改 inputImg
+     *
+     * @param inputImg 已解码的图像
+     * @return 分析结果，坐标均为原图坐标
+     * @throws AiException 未检测到脊柱或关键点个数不是 68
+     */
+    public SpineAnalysis analyzeSpine(Mat inputImg) throws AiException {
+        return this.analyzeSpine(inputImg, this.confThreshold, this.iouThreshold);
+    }
+
+    /**
+     * 使用本次调用指定的阈值分析脊柱，多线程共享同一个实例时应使用此方法
+     */
+    public SpineAnalysis analyzeSpine(Mat inputImg, float confThreshold, float iouThreshold) throws AiException {
+        List<PosePredictResult> posePredictResults = this.predictPose(inputImg, confThreshold, iouThreshold);
+        if (posePredictResults.isEmpty()) {
+            throw new AiException("未检测到脊柱");
+        }
         // 脊柱X-Ray影像上只会有一个
-        PosePredictResult posResult = posePredictResults.get(0);
+        return analyze(posePredictResults.get(0));
+    }
+
+    /**
+     * 两阶段分析：先在整张图片上推理得到脊柱的边界框，再在原图中扩展后的 ROI 上推理一次。
+     * <p>整张 X 光片缩放到 640 时椎骨角点的精度较低，ROI 只包含脊柱，第二次推理的缩放比例更大，保留更多细节。
+     * ROI 是原图的 submat，不复制像素；两次推理使用同一个 session。
+     * 第二次推理的关键点通过组合后的 {@link ImageMetaData} 映射回原图坐标。</p>
+     * <p>ROI 上未检测到脊柱时返回第一阶段的结果。</p>
+     *
+     * @see #setRoiPadding(double)
+     * @see #setCoarseInferenceSize(int)
+     */
+    public SpineAnalysis analyzeSpineCascade(Mat inputImg) throws AiException {
+        return this.analyzeSpineCascade(inputImg, this.confThreshold, this.iouThreshold);
+    }
+
+    /**
+     * 使用本次调用指定的阈值进行两阶段分析，见 {@link #analyzeSpineCascade(Mat)}
+     */
+    public SpineAnalysis analyzeSpineCascade(Mat inputImg, float confThreshold, float iouThreshold) throws AiException {
+        final Suppression suppression = Suppression.hard(iouThreshold);
+        final int coarseSize = this.coarseInferenceSize;
+        List<PosePredictResult> coarse;
+        if (coarseSize > 0) {
+            PreprocessWorkspace workspace = this.borrowWorkspace(coarseSize, coarseSize);
+            try {
+                coarse = this.predictPoseBatch(Collections.singletonList(inputImg), workspace, confThreshold, suppression).get(0);
+            } finally {
+                this.returnWorkspace(workspace);
+            }
+        } else {
+            coarse = this.predictPose(inputImg, confThreshold, suppression);
+        }
+        if (coarse.isEmpty()) {
+            throw new AiException("未检测到脊柱");
+        }
+        PosePredictResult first = coarse.get(0);
+
+        // 边界框映射回原图并向四周扩展
+        ImageMetaData meta = first.getImageMetaData();
+        final double x0 = (first.bbox[0] - meta.getDw()) / meta.getRatio();
+        final double y0 = (first.bbox[1] - meta.getDh()) / meta.getRatio();
+        final double x1 = (first.bbox[2] - meta.getDw()) / meta.getRatio();
+        final double y1 = (first.bbox[3] - meta.getDh()) / meta.getRatio();
+        final double padX = (x1 - x0) * this.roiPadding;
+        final double padY = (y1 - y0) * this.roiPadding;
+        final int left = Math.max(0, (int) Math.floor(x0 - padX));
+        final int top = Math.max(0, (int) Math.floor(y0 - padY));
+        final int right = Math.min(inputImg.width(), (int) Math.ceil(x1 + padX));
+        final int bottom = Math.min(inputImg.height(), (int) Math.ceil(y1 + padY));
+        if (right - left < 2 || bottom - top < 2) {
+            return analyze(first);
+        }
+
+        Mat roi = inputImg.submat(top, bottom, left, right);
+        try {
+            List<PosePredictResult> fine = this.predictPose(roi, confThreshold, suppression);
+            if (fine.isEmpty()) {
+                return analyze(first);
+            }
+            PosePredictResult best = fine.get(0);
+            best.setImageMetaData(best.getImageMetaData().compose(left, top, inputImg.width(), inputImg.height()));
+            return analyze(best);
+        } finally {
+            // 只释放 ROI 头，像素属于原图
+            roi.release();
+        }
+    }
+
+    /**
+     * 两阶段分析时 ROI 四周扩展的比例（相对于第一阶段边界框的宽、高），默认 {@link #ROI_PADDING_DEFAULT}
+     */
+    public void setRoiPadding(double roiPadding) {
+        if (roiPadding < 0) {
+            throw new IllegalArgumentException("roiPadding must be >= 0");
+        }
+        this.roiPadding = roiPadding;
+    }
+
+    /**
+     * 两阶段分析第一阶段使用较小的推理尺寸（例如 320），只适用于输入高宽为动态维度的模型
+     *
+     * @param size 推理尺寸（正方形），<=0 时使用默认的推理尺寸
+     */
+    public void setCoarseInferenceSize(int size) {
+        if (size > 0) {
+            this.spec.checkInputSize(size, size);
+        }
+        this.coarseInferenceSize = size;
+    }
+
+    /**
+     * 根据推理结果分析脊柱
+     */
+    public static SpineAnalysis analyze(PosePredictResult posResult) throws AiException {
         // 边界框 [x_min, y_min, x_max, y_max]
         float[] bbox = posResult.bbox;
         // 关键点，应该是：68 个点(17节椎骨 * 4个角顶点)
         // [68][x,y,conf]
         float[][] keypoints = posResult.keypoints;
 
-        if (keypoints.length != 68) {
+        if (keypoints.length != KEYPOINT_COUNT) {
             throw new AiException("未检测到有效的 68 个关键点");
         }
 
@@ -43,146 +188,53 @@ public class SpineYolov8 extends Yolov8 {
         final double dh = imgMetaData.getDh();
         final double ratio = imgMetaData.getRatio();
 
-        // 将tensor点位转换为用于绘图的UI点位
+        // 将tensor点位转换为原图坐标
         // 矩形区域坐标
         double[] uiBboxCoord = {
                 (bbox[0] - dw) / ratio, (bbox[1] - dh) / ratio,
                 (bbox[2] - dw) / ratio, (bbox[3] - dh) / ratio
         };
 
-        Spine spine = new Spine(uiBboxCoord);
-
         // 17节椎骨的四个边角坐标: [[lft_top_x, lft_top_y, rgt_top_x, rgt_top.y, lft_btm_x, lft_btm_y, rgt_btm_x, rgt_btm_y], ]
-        List<Vertebrae> vertebraes = new ArrayList<>(24);
-        // 椎骨索引号
-        int vertebraIndex = 0;
-        for (int p = 0; p < keypoints.length; p += 4) {
-            double[] cornerPoints = {
-                    (keypoints[p][0] - dw) / ratio, (keypoints[p][1] - dh) / ratio,
-                    (keypoints[p + 1][0] - dw) / ratio, (keypoints[p + 1][1] - dh) / ratio,
-                    (keypoints[p + 2][0] - dw) / ratio, (keypoints[p + 2][1] - dh) / ratio,
-                    (keypoints[p + 3][0] - dw) / ratio, (keypoints[p + 3][1] - dh) / ratio
-            };
-            vertebraes.add(new Vertebrae(cornerPoints).setLabel(Spine.VERTEBRAE_NAMES[vertebraIndex]));
-            vertebraIndex++;
-        }
-
-        spine.setVertebraes(vertebraes);
-
-
-        final int vertesCount = vertebraes.size();
-
-        // 参照 coronal_plane_cobb.py 计算
-        /*List<Map<String, Object>> vertebrae_information = new ArrayList<>();
-        for (int i = 0; i < vertesCount; i++) {
-            // 判断定点01的位置，是横着的还是竖着的
-            Vertebrae verte = vertebraes.get(i);
-            // 0 1
-            // 3 2
-            double[][] box = verte.getCornerPoints();
-
-            double[] point0 = {box[0][0], box[0][1]};
-            double[] point1 = {box[1][0], box[1][1]};
-            double[] point2 = {box[2][0], box[2][1]};
-            double distance_01 = Math.sqrt(Math.pow(point0[0] - point1[0], 2) + Math.pow(point0[1] - point1[1], 2));
-            double distance_12 =  Math.sqrt(Math.pow(point1[0] - point2[0], 2) +  Math.pow(point1[1] - point2[1], 2));
-
-            double[] center = {
-                    (point0[0] + point1[0]) / 2,
-                    (point1[1] + point2[1]) / 2
-            };
-            if (distance_01 > distance_12) {
-                // up_slope = (box[3][1] - box[2][1]) / (box[3][0] - box[2][0])
-                // down_slope = (box[0][1] - box[1][1]) / (box[0][0] - box[1][0])
-                double up_slope = SpineUtils.lineSlope(box[2][0], box[2][1], box[3][0], box[3][1]);
-                double down_slope = SpineUtils.lineSlope(box[1][0], box[1][1], box[0][0], box[0][1]);
-                Map<String, Object> info = new HashMap<>();
-                info.put("index", i);
-                info.put("location", true);
-                info.put("vertexes", box);
-                info.put("center", center);
-                info.put("up_slope", up_slope);
-                info.put("down_slope", down_slope);
-
-                vertebrae_information.add(info);
-            }
-            else {
-                // up_slope = (box[2][1] - box[1][1]) / (box[2][0] - box[1][0])
-                // down_slope = (box[3][1] - box[0][1]) / (box[3][0] - box[0][0])
-                double up_slope = SpineUtils.lineSlope(box[1][0], box[1][1], box[2][0], box[2][1]);
-                double down_slope = SpineUtils.lineSlope(box[0][0], box[0][1], box[3][0], box[3][1]);
-                Map<String, Object> info = new HashMap<>();
-                info.put("index", i);
-                info.put("location", false);
-                info.put("vertexes", box);
-                info.put("center", center);
-                info.put("up_slope", up_slope);
-                info.put("down_slope", down_slope);
-
-                vertebrae_information.add(info);
-            }
-
+        List<Vertebrae> vertebraes = new ArrayList<>(Spine.VERTEBRAE_NAMES.length);
+        // 所有椎骨的四角坐标，用于计算 Cobb 角
+        double[] points = new double[keypoints.length * 2];
+        for (int p = 0, v = 0; p < keypoints.length; p++) {
+            points[v++] = (keypoints[p][0] - dw) / ratio;
+            points[v++] = (keypoints[p][1] - dh) / ratio;
         }
-
-        // 找出拐点
-        double[] flag_index = {-1, -1};
-        List<Map<String, Object>> turning_location = new ArrayList<>();
-        for (int i = 0; i < vertesCount; i++) {
-            if (i + 1 < vertesCount) {
-                boolean location1 = (boolean) vertebrae_information.get(i).get("location");
-                boolean location2 = (boolean) vertebrae_information.get(i+1).get("location");
-                if (!location1 && location2) {
-                    if (flag_index[1] != i) {
-                        flag_index = new double[]{ i, i + 1 };
-                        Map<String, Object> turning_index = new HashMap<>();
-                        turning_index.put("previous", i);
-                        turning_index.put("last", i + 1);
-                        turning_location.add(turning_index);
-                    }
-                }
-                if (location1 && !location2) {
-                    if (flag_index[1] != i) {
-                        flag_index = new double[]{ i, i + 1 };
-                        Map<String, Object> turning_index = new HashMap<>();
-                        turning_index.put("previous", i);
-                        turning_index.put("last", i + 1);
-                        turning_location.add(turning_index);
-                    }
-                }
-            }
+        for (int i = 0; i < Spine.VERTEBRAE_NAMES.length; i++) {
+            double[] cornerPoints = Arrays.copyOfRange(points, i * 8, i * 8 + 8);
+            vertebraes.add(new Vertebrae(cornerPoints).setLabel(Spine.VERTEBRAE_NAMES[i]));
         }
 
-        // 找出上下端锥绝对值最大的椎骨
-        // 并计算最大cobb角
-        List<Map<String, Object>> slope_decline = new ArrayList<>(vertebrae_information);
-        slope_decline.sort((a, b) -> {
-            return Double.compare((double)b.get("up_slope"), (double)a.get("up_slope"));
-        });*/
+        CobbAngleResult cobbAngleResult = CobbAngleCalculator.calculate(points, vertebraes.size(), imgMetaData.getSrcHeight());
+        return new SpineAnalysis(uiBboxCoord, posResult.score, vertebraes, cobbAngleResult,
+                imgMetaData.getSrcWith(), imgMetaData.getSrcHeight());
+    }
 
-        // ================================================================================
-        // 测试绘图
+    /**
+     * 在图像上绘制分析结果：边界框、椎骨、Cobb 角度线与角度。直接修改并返回 image，颜色按 BGR
+     *
+     * @param image 分析时使用的原图（或与其尺寸相同的图像）
+     */
+    public Mat render(Mat image, SpineAnalysis analysis) {
         // 在这里先定义下线的粗细、关键的半径(按比例设置大小粗细比较好一些)
-        int minDwDh = Math.min(imgMetaData.getSrcWith(), imgMetaData.getSrcHeight());
-        int thickness = minDwDh / LINE_THICKNESS_RATIO;
+        int minDwDh = Math.min(image.width(), image.height());
         int radius = minDwDh / DOT_RADIUS_RATIO;
-
-        Mat inputImg = Imgcodecs.imread(imagePath);
+        double[] bbox = analysis.getBbox();
 
         // 画边界框
         // 颜色 Scalar(Blue, Green, Red) BGR格式
-        Imgproc.rectangle(inputImg, new Point(uiBboxCoord[0], uiBboxCoord[1]), new Point(uiBboxCoord[2], uiBboxCoord[3]), new Scalar(0,0,255), 2);
+        Imgproc.rectangle(image, new Point(bbox[0], bbox[1]), new Point(bbox[2], bbox[3]), new Scalar(0,0,255), 2);
 
-        List<Double> allX = new ArrayList<>();
-        List<Double> allY = new ArrayList<>();
-        for (int v = 0; v < vertesCount; v++) {
-            Vertebrae vert = vertebraes.get(v);
-            System.out.println(vert);
+        for (Vertebrae vert : analysis.getVertebraes()) {
             // 绘制68个关键点，每块椎骨4个关键点
-            Imgproc.circle(inputImg, new Point(vert.getLeftTopPoint()), radius, new Scalar( 255, 0, 0 ), -1); //-1表示实心
-            Imgproc.circle(inputImg, new Point(vert.getRightTopPoint()), radius, new Scalar( 255, 0, 0 ), -1);
-            Imgproc.circle(inputImg, new Point(vert.getLeftBottomPoint()), radius, new Scalar( 255, 0, 0 ), -1);
-            Imgproc.circle(inputImg, new Point(vert.getRightBottomPoint()), radius, new Scalar( 255, 0, 0 ), -1);
-            
+            Imgproc.circle(image, new Point(vert.getLeftTopPoint()), radius, new Scalar( 255, 0, 0 ), -1); //-1表示实心
+            Imgproc.circle(image, new Point(vert.getRightTopPoint()), radius, new Scalar( 255, 0, 0 ), -1);
+            Imgproc.circle(image, new Point(vert.getLeftBottomPoint()), radius, new Scalar( 255, 0, 0 ), -1);
+            Imgproc.circle(image, new Point(vert.getRightBottomPoint()), radius, new Scalar( 255, 0, 0 ), -1);
+
             // 连接四个点，顺时针绘制矩形
             // 0 1
             // 3 2
@@ -191,79 +243,39 @@ public class SpineYolov8 extends Yolov8 {
             boxPoints[1] = new Point(vert.getRightTopPoint());
             boxPoints[2] = new Point(vert.getRightBottomPoint());
             boxPoints[3] = new Point(vert.getLeftBottomPoint());
-            Imgproc.polylines(inputImg, Arrays.asList(new MatOfPoint(boxPoints)), true, new Scalar(0, 255, 0));
+            Imgproc.polylines(image, Arrays.asList(new MatOfPoint(boxPoints)), true, new Scalar(0, 255, 0));
             // 绘制椎骨名称
             Point vertMidPoint = new Point(vert.getCenterPoint());
-            Imgproc.putText(inputImg, vert.getLabel(), vertMidPoint, Imgproc.FONT_HERSHEY_SIMPLEX, 0.6, new Scalar(255, 0, 0), 2);
-            Imgproc.circle(inputImg, vertMidPoint, radius + 2, new Scalar(0, 255, 0), -1);
-
-            allX.add(boxPoints[0].x);
-            allX.add(boxPoints[1].x);
-            allX.add(boxPoints[3].x);
-            allX.add(boxPoints[2].x);
-
-            allY.add(boxPoints[0].y);
-            allY.add(boxPoints[1].y);
-            allY.add(boxPoints[3].y);
-            allY.add(boxPoints[2].y);
+            Imgproc.putText(image, vert.getLabel(), vertMidPoint, Imgproc.FONT_HERSHEY_SIMPLEX, 0.6, new Scalar(255, 0, 0), 2);
+            Imgproc.circle(image, vertMidPoint, radius + 2, new Scalar(0, 255, 0), -1);
         }
 
-        allX.addAll(allY);
-        System.out.println(allX);
-
-
-        // 测试绘制cobb角度线，spine2.jpg的测试数据
-        double[][][] midLines = {
-                {{464, 536}, {560, 537}},
-                {{471, 591}, {560, 594}},
-                {{482, 655}, {569, 649}},
-                {{494, 721}, {576, 708}},
-                {{509, 783}, {591, 765}},
-                {{529, 846}, {609, 828}},
-                {{538, 905}, {624, 897}},
-                {{537, 967}, {631, 969}},
-                {{528, 1027}, {626, 1038}},
-                {{509, 1091}, {610, 1115}},
-                {{484, 1165}, {591, 1194}},
-                {{455, 1253}, {570, 1273}},
-                {{439, 1351}, {555, 1355}},
-                {{438, 1455}, {554, 1440}},
-                {{450, 1562}, {578, 1533}},
-                {{474, 1672}, {612, 1636}},
-                {{494, 1767}, {654, 1741}}
-        } ;
-
-        double[] pt = {27.5, 4, 10};
-        double[] mt = {29.6, 10, 15};
-        double[] tl = {5.2, 15, 15};
-
-        double[][] cobbAngles = {pt, mt};
+        // 绘制cobb角度线：近胸角(PT)、主胸角(MT)、胸腰角(TL)
+        CobbAngleResult cobbAngleResult = analysis.getCobbAngleResult();
+        CobbAngleResult.CobbAngle[] cobbAngles = {cobbAngleResult.getPt(), cobbAngleResult.getMt(), cobbAngleResult.getTl()};
         Scalar[] colors = {new Scalar(0, 255, 255), new Scalar(255, 0, 255), new Scalar(0, 0, 255)};
-        int c = 0;
-        for (double[] cobb : cobbAngles) {
+        for (int c = 0; c < cobbAngles.length; c++) {
+            CobbAngleResult.CobbAngle cobb = cobbAngles[c];
+            int line1 = cobb.getUpperVertebra();
+            int line2 = cobb.getLowerVertebra();
+            if (line1 == line2 || line2 < 0) {
+                continue;
+            }
             // 角度，保留一位小数
-            String angle = String.format("%.1f", cobb[0]); // + "°";
-
-            int line1 = (int) cobb[1];
-            int line2 = (int) cobb[2];
-
-            //Point[] vert1Points = vertebraUIPoints.get(line1);
-            //Point[] vert2Points = vertebraUIPoints.get(line2);
+            String angle = String.format("%.1f", cobb.getAngle()); // + "°";
+            double[][] topMidLine = cobbAngleResult.getMidLine(line1);
+            double[][] bottomMidLine = cobbAngleResult.getMidLine(line2);
 
             // 绘制夹角线
-            double[][] topLine = SpineUtils.createLongLine(midLines[line1][0][0], midLines[line1][0][1], midLines[line1][1][0], midLines[line1][1][1], imgMetaData.getSrcWith());
-            //double[][] topLine = SpineUtils.createLongLine(vert1Points[0].x, vert1Points[0].y, vert1Points[1].x, vert1Points[1].y, imgMetaData.getSrcWith());
+            double[][] topLine = SpineUtils.createLongLine(topMidLine[0][0], topMidLine[0][1], topMidLine[1][0], topMidLine[1][1], image.width());
             Point tp1 = new Point(topLine[0]);
             Point tp2 = new Point(topLine[1]);
-            Imgproc.line(inputImg, tp1, tp2, colors[c], 3);
+            Imgproc.line(image, tp1, tp2, colors[c], 3);
 
-            double[][] bottomLine = SpineUtils.createLongLine(midLines[line2][0][0], midLines[line2][0][1], midLines[line2][1][0], midLines[line2][1][1], imgMetaData.getSrcWith());
-            //double[][] bottomLine = SpineUtils.createLongLine(vert2Points[2].x, vert2Points[2].y, vert2Points[3].x, vert2Points[3].y, imgMetaData.getSrcWith());
+            double[][] bottomLine = SpineUtils.createLongLine(bottomMidLine[0][0], bottomMidLine[0][1], bottomMidLine[1][0], bottomMidLine[1][1], image.width());
             Point bp1 = new Point(bottomLine[0]);
             Point bp2 = new Point(bottomLine[1]);
-            Imgproc.line(inputImg, bp1, bp2, colors[c], 3);
-
-            //System.out.println("夹角： "+ SpineUtils.getDegress(vert1Points[0].x, vert1Points[0].y, vert1Points[1].x, vert1Points[1].y,vert2Points[3].x, vert2Points[3].y, vert2Points[2].x, vert2Points[2].y));
+            Imgproc.line(image, bp1, bp2, colors[c], 3);
 
             // 绘制角度文本
             // 判断文本是在脊柱左侧？还是右侧？根据上下线的夹角是在左边还是右边
@@ -278,17 +290,10 @@ public class SpineYolov8 extends Yolov8 {
             }
 
             if (anglePoint != null) {
-                Imgproc.putText(inputImg, angle, anglePoint, Imgproc.FONT_HERSHEY_SIMPLEX, 2, new Scalar(255, 0, 0), 2);
+                Imgproc.putText(image, angle, anglePoint, Imgproc.FONT_HERSHEY_SIMPLEX, 2, new Scalar(255, 0, 0), 2);
             }
-
-            c++;
         }
-
-        // 保存图像
-        Imgproc.cvtColor(inputImg, inputImg, Imgproc.COLOR_RGB2BGR);
-        Imgcodecs.imwrite("test_out_spine_cobb.jpg", inputImg);
-
-
+        return image;
     }
 
 }
@@ -0,0 +1,80 @@
+package com.fh.gdk;
+
+import java.util.Arrays;
+
+import com.fh.gdk.ai.util.ChwTranspose;
+
+/**
+ * 使用逐元素的朴素实现校验 {@link ChwTranspose}：1、3、4 通道，源数据与目标数组都从非 0 的位置开始。
+ */
+public class ChwTransposeTest {
+
+    private static final int[] CHANNELS = {1, 3, 4};
+    // 17 * 13，不是 4 或 8 的倍数
+    private static final int PIXELS = 221;
+    private static final int SRC_OFFSET = 5;
+    private static final int DST_OFFSET = 7;
+    // 目标数组中不应被写入的位置保留的值
+    private static final float GUARD = -1f;
+
+    public static void main(String[] args) {
+        for (int channels : CHANNELS) {
+            final int elements = PIXELS * channels;
+
+            float[] srcFloats = new float[SRC_OFFSET + elements + 3];
+            byte[] srcBytes = new byte[srcFloats.length];
+            for (int i = 0; i < srcFloats.length; i++) {
+                srcFloats[i] = i * 0.5f;
+                srcBytes[i] = (byte) (i * 31);
+            }
+
+            float[] dstFloats = new float[DST_OFFSET + elements + 3];
+            byte[] dstBytes = new byte[dstFloats.length];
+            Arrays.fill(dstFloats, GUARD);
+            Arrays.fill(dstBytes, (byte) GUARD);
+            ChwTranspose.hwc2chw(srcFloats, SRC_OFFSET, PIXELS, channels, dstFloats, DST_OFFSET);
+            ChwTranspose.hwc2chw(srcBytes, SRC_OFFSET, PIXELS, channels, dstBytes, DST_OFFSET);
+
+            for (int i = 0; i < dstFloats.length; i++) {
+                final int k = i - DST_OFFSET;
+                if (k < 0 || k >= elements) {
+                    check(channels + " channels guard " + i, dstFloats[i] == GUARD && dstBytes[i] == (byte) GUARD);
+                    continue;
+                }
+                // 目标位置 [c, p] 对应源位置 [p, c]
+                final int c = k / PIXELS;
+                final int p = k % PIXELS;
+                final int s = SRC_OFFSET + p * channels + c;
+                check(channels + " channels float " + k, dstFloats[i] == srcFloats[s]);
+                check(channels + " channels byte " + k, dstBytes[i] == srcBytes[s]);
+            }
+            System.out.println(channels + " channels: ok");
+        }
+
+        // 3 通道返回新数组的版本
+        float[] hwc = {1, 2, 3, 4, 5, 6};
+        check("3 channels new array", Arrays.equals(ChwTranspose.hwc2chw(hwc), new float[] {1, 4, 2, 5, 3, 6}));
+
+        // 越界与不支持的通道数
+        expectThrows("src out of bounds", () -> ChwTranspose.hwc2chw(new float[10], 2, 3, 3, new float[10], 0));
+        expectThrows("dst out of bounds", () -> ChwTranspose.hwc2chw(new byte[10], 0, 3, 3, new byte[10], 2));
+        expectThrows("2 channels", () -> ChwTranspose.hwc2chw(new float[10], 0, 5, 2, new float[10], 0));
+        System.out.println("bounds: ok");
+    }
+
+    private static void check(String what, boolean ok) {
+        if (!ok) {
+            throw new AssertionError("Mismatch: " + what);
+        }
+    }
+
+    private static void expectThrows(String what, Runnable call) {
+        try {
+            call.run();
+        } catch (IllegalArgumentException | IndexOutOfBoundsException expected) {
+            return;
+        }
+        throw new AssertionError("Expected exception: " + what);
+    }
+
+}
@@ -0,0 +1,228 @@
+package com.fh.gdk;
+
+import com.fh.gdk.ai.yolo.spine.CobbAngleCalculator;
+import com.fh.gdk.ai.yolo.spine.CobbAngleResult;
+
+/**
+ * 使用 spine-docs/cobb_angle_cal.py 在同一组关键点上的输出校验 {@link CobbAngleCalculator}。
+ * <p>关键点为 17 节椎骨的四角坐标 [左上, 右上, 左下, 右下]，spine2 为 spine2.jpg 的中线数据上下各偏移 22 像素。</p>
+ */
+public class CobbAngleCalculatorTest {
+
+    private static final double EPSILON = 1e-9;
+
+    private static final Fixture[] FIXTURES = {
+            new Fixture("noisy arc", 2000, "S",
+                    new double[] {52.619633384802206, 1.274321211286216, 1.2074182697257333e-06},
+                    new double[][] {{1.274321211286216, 0, 1}, {52.619633384802206, 1, 16}, {1.2074182697257333e-06, 16, 15}},
+                    new double[] {
+                    470.0, 257.1, 553.5, 293.8, 447.5, 305.0, 529.2, 345.5,
+                    482.2, 334.8, 569.2, 376.2, 460.5, 386.3, 543.3, 428.9,
+                    493.7, 420.1, 584.2, 455.2, 469.1, 472.5, 560.5, 510.6,
+                    502.8, 500.3, 594.2, 535.6, 481.4, 557.3, 572.8, 592.5,
+                    509.8, 583.4, 607.0, 613.5, 492.6, 643.6, 588.7, 674.0,
+                    517.3, 668.7, 615.6, 692.6, 500.2, 731.1, 602.8, 755.9,
+                    518.5, 752.5, 622.8, 770.7, 507.3, 819.3, 612.2, 836.7,
+                    514.5, 836.2, 628.2, 846.6, 509.0, 906.2, 621.7, 916.4,
+                    512.5, 923.1, 627.0, 924.4, 513.1, 993.9, 627.0, 992.4,
+                    505.4, 1010.8, 625.7, 1000.1, 513.2, 1081.3, 630.1, 1074.3,
+                    500.2, 1097.0, 618.8, 1075.2, 512.0, 1172.6, 630.5, 1150.0,
+                    488.2, 1184.0, 610.1, 1151.4, 509.3, 1259.7, 628.9, 1228.9,
+                    478.5, 1270.5, 597.2, 1230.7, 500.2, 1346.9, 622.0, 1304.8,
+                    464.1, 1356.4, 583.6, 1308.7, 493.8, 1432.4, 614.2, 1384.5,
+                    447.8, 1440.6, 569.1, 1388.7, 484.6, 1518.8, 605.1, 1465.5,
+                    433.5, 1527.1, 557.2, 1466.4, 468.8, 1600.6, 593.9, 1543.9,
+                    417.4, 1609.0, 542.6, 1546.7, 455.4, 1686.9, 579.7, 1625.9
+                    }),
+            new Fixture("s lower, tl at T1", 2000, "S",
+                    new double[] {56.988921296181125, 55.12891186211609, 0.0},
+                    new double[][] {{0.0, 0, 0}, {55.12891186211609, 0, 7}, {56.988921296181125, 7, 15}},
+                    new double[] {
+                    474.5, 256.7, 550.8, 294.6, 448.7, 304.7, 528.0, 344.3,
+                    487.2, 338.9, 573.3, 372.0, 465.1, 390.9, 552.4, 428.2,
+                    497.3, 425.1, 588.7, 446.2, 480.0, 480.4, 575.1, 503.8,
+                    497.7, 515.9, 597.2, 519.1, 494.3, 573.3, 593.5, 578.4,
+                    495.0, 607.8, 596.5, 589.5, 505.8, 669.3, 606.0, 654.7,
+                    487.2, 698.5, 585.3, 666.4, 508.4, 757.7, 607.3, 727.0,
+                    472.1, 787.1, 569.8, 742.4, 500.9, 848.8, 597.9, 802.8,
+                    455.5, 872.5, 551.7, 821.3, 487.7, 933.2, 583.3, 879.6,
+                    433.9, 952.2, 535.9, 900.2, 467.3, 1015.8, 568.8, 965.0,
+                    413.0, 1029.4, 522.0, 985.7, 439.6, 1095.8, 548.8, 1054.8,
+                    398.1, 1099.2, 515.6, 1074.1, 416.6, 1172.6, 532.7, 1144.4,
+                    391.2, 1169.4, 512.4, 1166.1, 392.6, 1247.3, 518.4, 1240.5,
+                    392.3, 1241.4, 517.8, 1259.3, 380.0, 1317.5, 505.2, 1337.3,
+                    403.6, 1313.7, 525.9, 1353.3, 377.9, 1387.8, 503.6, 1427.9,
+                    421.5, 1388.0, 541.6, 1441.9, 389.2, 1460.8, 504.7, 1518.1,
+                    442.3, 1466.7, 558.9, 1529.5, 399.4, 1540.2, 520.9, 1605.8,
+                    460.3, 1548.3, 582.7, 1611.6, 418.6, 1623.5, 541.9, 1687.3
+                    }),
+            new Fixture("s upper", 2000, "S",
+                    new double[] {41.582311442681075, 18.71782956373975, 27.841212261254963},
+                    new double[][] {{18.71782956373975, 0, 3}, {41.582311442681075, 3, 8}, {27.841212261254963, 8, 14}},
+                    new double[] {
+                    457.6, 271.6, 546.3, 273.8, 451.7, 325.9, 543.5, 330.8,
+                    477.0, 348.3, 568.5, 362.3, 469.9, 403.2, 561.1, 418.2,
+                    496.6, 423.3, 591.3, 448.7, 482.8, 480.5, 575.2, 505.7,
+                    511.3, 501.6, 606.1, 536.9, 488.7, 555.8, 582.8, 592.9,
+                    515.4, 584.6, 609.8, 615.0, 494.4, 646.2, 594.1, 674.6,
+                    503.9, 674.0, 608.8, 687.7, 493.7, 737.2, 600.2, 749.5,
+                    487.7, 763.4, 596.5, 756.5, 491.1, 832.5, 599.6, 822.0,
+                    468.8, 855.3, 575.3, 830.8, 486.8, 921.7, 594.6, 894.2,
+                    449.5, 947.3, 557.3, 904.7, 474.7, 1011.7, 580.4, 974.0,
+                    432.3, 1023.3, 546.9, 988.6, 457.6, 1092.3, 569.4, 1060.3,
+                    423.1, 1098.9, 540.3, 1077.2, 437.0, 1171.2, 553.8, 1150.5,
+                    415.7, 1170.8, 539.6, 1161.7, 422.1, 1250.3, 543.5, 1237.4,
+                    414.5, 1249.1, 541.4, 1247.8, 415.8, 1329.4, 541.0, 1327.4,
+                    424.0, 1326.7, 550.3, 1333.9, 417.5, 1405.7, 545.9, 1414.1,
+                    435.9, 1404.4, 566.6, 1420.1, 428.1, 1487.1, 558.1, 1500.1,
+                    450.4, 1485.0, 586.1, 1502.9, 439.8, 1567.4, 574.5, 1583.8,
+                    466.8, 1567.3, 604.2, 1583.6, 457.7, 1654.3, 596.7, 1667.3
+                    }),
+            new Fixture("s lower", 1600, "S",
+                    new double[] {33.95180933811936, 29.656616946921627, 0.0},
+                    new double[][] {{0.0, 0, 0}, {29.656616946921627, 0, 11}, {33.95180933811936, 11, 16}},
+                    new double[] {
+                    456.9, 268.3, 547.0, 277.5, 453.0, 321.1, 540.1, 333.2,
+                    474.3, 325.4, 569.9, 334.2, 471.7, 383.2, 563.6, 389.8,
+                    489.2, 387.7, 584.6, 391.1, 486.9, 443.4, 583.1, 449.5,
+                    495.2, 445.3, 596.4, 444.7, 498.3, 509.6, 597.3, 507.5,
+                    498.6, 505.0, 600.8, 505.5, 500.5, 565.2, 599.5, 565.7,
+                    493.2, 565.5, 596.6, 556.9, 496.4, 630.1, 600.4, 622.8,
+                    477.5, 629.0, 584.8, 613.9, 488.0, 695.7, 594.2, 677.1,
+                    459.7, 689.9, 569.0, 667.9, 471.8, 754.7, 581.4, 735.8,
+                    436.2, 745.4, 550.2, 726.4, 449.5, 817.9, 562.6, 792.7,
+                    413.1, 814.2, 526.5, 774.6, 437.2, 880.6, 548.7, 845.1,
+                    396.4, 878.2, 506.0, 832.8, 422.6, 944.0, 534.8, 898.3,
+                    381.0, 935.2, 495.9, 886.3, 410.3, 1007.9, 524.7, 960.4,
+                    378.9, 989.9, 495.5, 947.3, 404.9, 1065.0, 523.0, 1021.9,
+                    383.1, 1041.2, 506.2, 1010.6, 400.1, 1118.9, 528.2, 1088.3,
+                    394.8, 1087.3, 525.5, 1075.6, 401.5, 1172.2, 535.2, 1156.0,
+                    416.1, 1136.3, 551.2, 1142.7, 412.1, 1222.3, 544.2, 1226.5,
+                    441.7, 1186.7, 575.3, 1212.1, 424.1, 1269.4, 558.4, 1296.8
+                    }),
+            new Fixture("mild", 1800, "S",
+                    new double[] {10.34689277550203, 1.300899234604106, 9.533975039139616},
+                    new double[][] {{1.300899234604106, 0, 1}, {10.34689277550203, 1, 6}, {9.533975039139616, 6, 11}},
+                    new double[] {
+                    455.9, 267.9, 546.3, 274.2, 451.5, 324.0, 544.7, 331.7,
+                    459.9, 337.4, 551.7, 345.0, 453.0, 393.7, 545.8, 404.4,
+                    460.9, 409.8, 556.6, 413.7, 455.0, 468.0, 552.4, 475.2,
+                    460.7, 478.2, 558.5, 483.4, 457.4, 539.5, 556.2, 542.1,
+                    459.4, 553.2, 559.9, 549.2, 460.4, 615.0, 562.3, 614.4,
+                    455.7, 623.2, 560.9, 617.2, 458.1, 687.6, 565.5, 680.5,
+                    451.5, 694.9, 560.1, 686.0, 458.5, 760.5, 568.3, 751.5,
+                    450.6, 762.6, 562.2, 754.7, 455.4, 833.6, 566.0, 824.7,
+                    450.2, 830.1, 560.7, 825.7, 452.7, 903.1, 564.5, 897.0,
+                    445.0, 898.5, 561.4, 899.7, 447.7, 973.5, 564.1, 973.7,
+                    441.8, 964.8, 565.5, 972.3, 439.9, 1042.4, 560.7, 1047.4,
+                    439.7, 1032.3, 563.0, 1041.2, 434.4, 1112.1, 556.8, 1117.5,
+                    434.6, 1101.4, 563.2, 1112.0, 429.4, 1179.9, 557.8, 1191.1,
+                    430.3, 1171.9, 558.5, 1179.5, 427.7, 1253.1, 554.0, 1261.6,
+                    425.3, 1247.8, 556.8, 1247.8, 426.2, 1328.4, 559.0, 1330.6,
+                    420.6, 1318.1, 554.7, 1313.9, 423.3, 1405.0, 560.6, 1399.1,
+                    416.4, 1389.7, 554.9, 1380.2, 423.0, 1478.9, 560.3, 1466.4
+                    }),
+            new Fixture("spine2", 2200, "S",
+                    new double[] {29.78533488837009, 27.844844391558258, 14.610970932986781},
+                    new double[][] {{14.610970932986781, 1, 5}, {27.844844391558258, 5, 10}, {29.78533488837009, 10, 15}},
+                    new double[] {
+                    464.0, 514.0, 560.0, 515.0, 464.0, 558.0, 560.0, 559.0,
+                    471.0, 569.0, 560.0, 572.0, 471.0, 613.0, 560.0, 616.0,
+                    482.0, 633.0, 569.0, 627.0, 482.0, 677.0, 569.0, 671.0,
+                    494.0, 699.0, 576.0, 686.0, 494.0, 743.0, 576.0, 730.0,
+                    509.0, 761.0, 591.0, 743.0, 509.0, 805.0, 591.0, 787.0,
+                    529.0, 824.0, 609.0, 806.0, 529.0, 868.0, 609.0, 850.0,
+                    538.0, 883.0, 624.0, 875.0, 538.0, 927.0, 624.0, 919.0,
+                    537.0, 945.0, 631.0, 947.0, 537.0, 989.0, 631.0, 991.0,
+                    528.0, 1005.0, 626.0, 1016.0, 528.0, 1049.0, 626.0, 1060.0,
+                    509.0, 1069.0, 610.0, 1093.0, 509.0, 1113.0, 610.0, 1137.0,
+                    484.0, 1143.0, 591.0, 1172.0, 484.0, 1187.0, 591.0, 1216.0,
+                    455.0, 1231.0, 570.0, 1251.0, 455.0, 1275.0, 570.0, 1295.0,
+                    439.0, 1329.0, 555.0, 1333.0, 439.0, 1373.0, 555.0, 1377.0,
+                    438.0, 1433.0, 554.0, 1418.0, 438.0, 1477.0, 554.0, 1462.0,
+                    450.0, 1540.0, 578.0, 1511.0, 450.0, 1584.0, 578.0, 1555.0,
+                    474.0, 1650.0, 612.0, 1614.0, 474.0, 1694.0, 612.0, 1658.0,
+                    494.0, 1745.0, 654.0, 1719.0, 494.0, 1789.0, 654.0, 1763.0
+                    }),
+            new Fixture("c arc", 2000, "C",
+                    new double[] {34.37391976238853, 0.0, 0.0},
+                    new double[][] {{0.0, 0, 0}, {34.37391976238853, 0, 16}, {0.0, 16, 16}},
+                    new double[] {
+                    448.9, 287.0, 534.9, 260.4, 465.1, 339.6, 551.1, 313.0,
+                    478.3, 369.1, 564.5, 343.0, 494.3, 421.7, 580.4, 395.6,
+                    507.1, 450.6, 593.7, 425.9, 522.2, 503.5, 608.7, 478.8,
+                    534.5, 531.5, 621.7, 509.3, 548.0, 584.8, 635.2, 562.6,
+                    559.6, 612.0, 647.6, 593.1, 571.2, 665.8, 659.2, 646.8,
+                    582.0, 692.1, 670.8, 677.2, 591.1, 746.3, 679.9, 731.4,
+                    601.0, 772.0, 690.4, 761.6, 607.3, 826.6, 696.7, 816.3,
+                    616.2, 851.6, 706.0, 846.4, 619.4, 906.6, 709.3, 901.3,
+                    627.2, 931.3, 717.2, 931.3, 627.2, 986.3, 717.2, 986.3,
+                    633.7, 1011.1, 723.5, 1016.4, 630.4, 1066.0, 720.3, 1071.3,
+                    635.6, 1091.1, 725.0, 1101.4, 629.3, 1145.7, 718.7, 1156.0,
+                    632.9, 1171.3, 721.6, 1186.2, 623.7, 1225.5, 712.5, 1240.5,
+                    625.7, 1251.9, 713.7, 1270.8, 614.1, 1305.6, 702.1, 1324.6,
+                    614.3, 1332.8, 701.5, 1355.0, 600.7, 1386.1, 687.9, 1408.3,
+                    599.1, 1414.2, 685.7, 1438.8, 584.1, 1467.1, 670.6, 1491.7,
+                    580.6, 1495.9, 666.8, 1522.0, 564.7, 1548.6, 650.8, 1574.7,
+                    559.5, 1578.1, 645.5, 1604.7, 543.2, 1630.6, 629.2, 1657.2
+                    })
+    };
+
+    public static void main(String[] args) {
+        for (Fixture fixture : FIXTURES) {
+            CobbAngleResult result = CobbAngleCalculator.calculate(fixture.points, fixture.points.length / 8, fixture.imageHeight);
+            check(fixture.name + " curveType", fixture.curveType.equals(result.getCurveType()));
+            double[] cobbAngles = result.getCobbAngles();
+            for (int i = 0; i < 3; i++) {
+                check(fixture.name + " cobbAngles[" + i + "]", Math.abs(cobbAngles[i] - fixture.cobbAngles[i]) < EPSILON);
+            }
+            CobbAngleResult.CobbAngle[] regions = {result.getPt(), result.getMt(), result.getTl()};
+            for (int i = 0; i < 3; i++) {
+                double[] expected = fixture.regions[i];
+                check(fixture.name + " region " + i, Math.abs(regions[i].getAngle() - expected[0]) < EPSILON
+                        && regions[i].getUpperVertebra() == (int) expected[1]
+                        && regions[i].getLowerVertebra() == (int) expected[2]);
+            }
+            System.out.println(fixture.name + ": " + result);
+        }
+
+        // 单次计算耗时
+        final int iterations = 100_000;
+        double sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += CobbAngleCalculator.calculate(FIXTURES[0].points, 17, FIXTURES[0].imageHeight).getPt().getAngle();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += CobbAngleCalculator.calculate(FIXTURES[0].points, 17, FIXTURES[0].imageHeight).getPt().getAngle();
+        }
+        System.out.printf("%.2f us/op (%s)%n", (System.nanoTime() - start) / 1000.0 / iterations, sink > 0);
+    }
+
+    private static void check(String what, boolean ok) {
+        if (!ok) {
+            throw new AssertionError("Mismatch with cobb_angle_cal.py: " + what);
+        }
+    }
+
+    private static class Fixture {
+        final String name;
+        final double imageHeight;
+        final String curveType;
+        // 与 Python 返回的 cobb_angles_list 相同
+        final double[] cobbAngles;
+        // pt、mt、tl 各 {angle, idxTop, idxBottom}
+        final double[][] regions;
+        final double[] points;
+
+        Fixture(String name, double imageHeight, String curveType, double[] cobbAngles, double[][] regions, double[] points) {
+            this.name = name;
+            this.imageHeight = imageHeight;
+            this.curveType = curveType;
+            this.cobbAngles = cobbAngles;
+            this.regions = regions;
+            this.points = points;
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.fh.gdk;
+
+import java.lang.management.ManagementFactory;
+
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import com.fh.gdk.ai.yolo.ImageMetaData;
+import com.fh.gdk.ai.yolo.PreprocessWorkspace;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * 验证预处理工作区在稳定运行时不会在 Java 堆上分配对象。
+ * <p>使用 HotSpot 的线程分配计数器统计预热之后若干次预处理所分配的字节数，期望为 0。</p>
+ */
+public class PreprocessWorkspaceAllocTest {
+
+    static {
+        System.load(PreprocessWorkspaceAllocTest.class.getClassLoader().getResource("libopencv_java4100.so").getFile());
+    }
+
+    private static final int WARMUP_ITERATIONS = 5_000;
+    private static final int MEASURE_ITERATIONS = 1_000;
+
+    public static void main(String[] args) throws OrtException {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+
+        Mat img = Imgcodecs.imread("pose2.jpg");
+        ImageMetaData imgMetaData = new ImageMetaData();
+
+        try (PreprocessWorkspace workspace = new PreprocessWorkspace(OrtEnvironment.getEnvironment(),
+                "images", OnnxJavaType.FLOAT, 3, 640, 640)) {
+            workspace.ensureCapacity(1);
+
+            // 预热，让 JIT 完成编译和逃逸分析
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                workspace.preprocess(0, img, imgMetaData);
+                workspace.inputs(1);
+            }
+
+            long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+                workspace.preprocess(0, img, imgMetaData);
+                workspace.inputs(1);
+            }
+            long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+            System.out.println(">> " + MEASURE_ITERATIONS + " 次预处理共分配: " + allocated + " bytes");
+            if (allocated != 0) {
+                throw new AssertionError("预处理在稳定运行时不应分配 Java 堆内存，实际分配: " + allocated + " bytes");
+            }
+        }
+    }
+
+}
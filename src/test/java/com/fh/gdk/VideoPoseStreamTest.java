@@ -0,0 +1,41 @@
+package com.fh.gdk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fh.gdk.ai.yolo.PersonPoseYolov8;
+import com.fh.gdk.ai.yolo.VideoPoseStream;
+
+/**
+ * 读取本地视频文件：视频读取完毕时最后一帧也必须被推理线程处理，即最后回调的帧序号等于读取的帧数 - 1
+ */
+public class VideoPoseStreamTest {
+
+    public static void main(String[] args) throws Exception {
+        String modelPath = "yolov8n-pose.onnx";
+        String videoPath = args.length > 0 ? args[0] : "person.mp4";
+
+        PersonPoseYolov8 yolo = new PersonPoseYolov8(modelPath);
+        AtomicLong frames = new AtomicLong();
+        AtomicLong lastIndex = new AtomicLong(-1);
+        VideoPoseStream stream = VideoPoseStream.open(yolo, videoPath, (frameIndex, frame, poses, inferred) -> {
+            frames.incrementAndGet();
+            lastIndex.set(frameIndex);
+        });
+        try {
+            stream.start();
+            stream.await();
+        } finally {
+            stream.close();
+            yolo.close();
+        }
+
+        System.out.println("read: " + stream.getReadFrames() + ", dropped: " + stream.getDroppedFrames()
+                + ", inferred: " + stream.getInferredFrames() + ", callbacks: " + frames.get());
+        if (stream.getReadFrames() == 0 || lastIndex.get() != stream.getReadFrames() - 1) {
+            throw new AssertionError("Last frame was not processed: last index " + lastIndex.get()
+                    + ", read " + stream.getReadFrames());
+        }
+        System.out.println("last frame: ok");
+    }
+
+}